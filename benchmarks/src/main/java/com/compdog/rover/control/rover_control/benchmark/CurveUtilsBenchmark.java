@@ -0,0 +1,29 @@
+package com.compdog.rover.control.rover_control.benchmark;
+
+import com.compdog.rover.control.rover_control.util.CurveUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CurveUtilsBenchmark {
+
+    public double avg = 87;
+    public double gap = 3;
+
+    @Benchmark
+    public double inverseCurve() {
+        return CurveUtils.InverseCurve(avg, 100, 50, 1.2);
+    }
+
+    /* Both curves, as computed for every connection update */
+    @Benchmark
+    public double quality() {
+        return CurveUtils.InverseCurve(avg, 100, 50, 1.2) + CurveUtils.InverseCurve(gap, 1, 50, 0.2);
+    }
+}
@@ -0,0 +1,66 @@
+package com.compdog.rover.control.rover_control.benchmark;
+
+import com.compdog.rover.control.rover_control.Drivetrain;
+import com.compdog.rover.control.rover_control.packet.CharacteristicsPacket;
+import com.compdog.rover.control.rover_control.packet.ManualDrivePacket;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one {@link Drivetrain} update on the send path, with the stick sweeping so the outputs keep
+ * ramping. Run with <code>-prof gc</code> to confirm it allocates nothing.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DrivetrainBenchmark {
+
+    /* Updates 1 ms apart, as at 1 kHz */
+    private static final long STEP = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final int POSITIONS = 1024;
+
+    private final Drivetrain drivetrain = new Drivetrain();
+    private final CharacteristicsPacket characteristics = new CharacteristicsPacket();
+    private final ManualDrivePacket command = new ManualDrivePacket(0, 0);
+    private final double[] xs = new double[POSITIONS];
+    private final double[] ys = new double[POSITIONS];
+
+    private long now = 0;
+    private int index = 0;
+
+    @Setup
+    public void setup() {
+        characteristics.wheelDiameter = 0.12;
+        for (int i = 0; i < CharacteristicsPacket.WHEELS; i++) {
+            characteristics.wheelLocations[i * 3] = 0.2 - (i / 2) * 0.2;
+            characteristics.wheelLocations[i * 3 + 1] = i % 2 == 0 ? 0.22 : -0.22;
+            characteristics.wheelLocations[i * 3 + 2] = -0.1;
+        }
+        drivetrain.configure(characteristics);
+
+        for (int i = 0; i < POSITIONS; i++) {
+            double angle = 2 * Math.PI * i / POSITIONS;
+            xs[i] = Math.sin(angle * 3);
+            ys[i] = Math.cos(angle);
+        }
+    }
+
+    @Benchmark
+    public ManualDrivePacket update() {
+        int i = index = (index + 1) & (POSITIONS - 1);
+        now += STEP;
+        drivetrain.update(xs[i], ys[i], now, command);
+        return command;
+    }
+
+    /* Precomputing the coefficients, done once per rover */
+    @Benchmark
+    public Drivetrain configure() {
+        drivetrain.configure(characteristics);
+        return drivetrain;
+    }
+}
@@ -0,0 +1,30 @@
+package com.compdog.rover.control.rover_control.benchmark;
+
+import java.io.InputStream;
+
+/**
+ * Endless stream that repeats the same bytes, so readers can be benchmarked without allocating new input
+ */
+class LoopingInputStream extends InputStream {
+    private final byte[] data;
+    private int position = 0;
+
+    LoopingInputStream(byte[] data) {
+        this.data = data;
+    }
+
+    @Override
+    public int read() {
+        int value = data[position] & 0xFF;
+        position = (position + 1) % data.length;
+        return value;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        int count = Math.min(len, data.length - position);
+        System.arraycopy(data, position, b, off, count);
+        position = (position + count) % data.length;
+        return count;
+    }
+}
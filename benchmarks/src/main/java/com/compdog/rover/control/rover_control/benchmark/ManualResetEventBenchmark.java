@@ -0,0 +1,67 @@
+package com.compdog.rover.control.rover_control.benchmark;
+
+import com.compdog.rover.control.rover_control.util.ManualResetEvent;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the receive handshake between the client socket and timeout threads
+ */
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ManualResetEventBenchmark {
+
+    @State(Scope.Thread)
+    public static class Uncontended {
+        final ManualResetEvent event = new ManualResetEvent(false);
+    }
+
+    @State(Scope.Group)
+    public static class PingPong {
+        final ManualResetEvent ping = new ManualResetEvent(false);
+        final ManualResetEvent pong = new ManualResetEvent(false);
+    }
+
+    /* What the socket thread pays for every line when nobody is waiting */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void set(Uncontended state) {
+        state.event.set();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void setReset(Uncontended state) {
+        state.event.set();
+        state.event.reset();
+    }
+
+    /* Round trip of two set/wait handoffs, the timeouts only keep teardown from hanging */
+    @Benchmark
+    @Group("handoff")
+    @GroupThreads(1)
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public boolean ping(PingPong state) throws InterruptedException {
+        state.ping.set();
+        boolean received = state.pong.waitOne(10);
+        state.pong.reset();
+        return received;
+    }
+
+    @Benchmark
+    @Group("handoff")
+    @GroupThreads(1)
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public boolean pong(PingPong state) throws InterruptedException {
+        boolean received = state.ping.waitOne(10);
+        state.ping.reset();
+        state.pong.set();
+        return received;
+    }
+}
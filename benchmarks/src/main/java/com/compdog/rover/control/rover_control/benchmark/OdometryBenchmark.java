@@ -0,0 +1,59 @@
+package com.compdog.rover.control.rover_control.benchmark;
+
+import com.compdog.rover.control.rover_control.Odometry;
+import com.compdog.rover.control.rover_control.packet.CharacteristicsPacket;
+import com.compdog.rover.control.rover_control.packet.DrivetrainPacket;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of integrating one DRIVE frame into the {@link Odometry} on the receiving thread, and of reading the
+ * latest pose as the UI does every frame. Run with <code>-prof gc</code> to confirm neither allocates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OdometryBenchmark {
+
+    /* Frames 10 ms apart, as at 100 Hz telemetry */
+    private static final long STEP = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final Odometry odometry = new Odometry();
+    private final DrivetrainPacket packet = new DrivetrainPacket();
+    private final Odometry.Pose pose = new Odometry.Pose();
+
+    private long now = 0;
+
+    @Setup
+    public void setup() {
+        CharacteristicsPacket characteristics = new CharacteristicsPacket();
+        characteristics.wheelDiameter = 0.12;
+        for (int i = 0; i < CharacteristicsPacket.WHEELS; i++) {
+            characteristics.wheelLocations[i * 3] = 0.2 - (i / 2) * 0.2;
+            characteristics.wheelLocations[i * 3 + 1] = i % 2 == 0 ? 0.22 : -0.22;
+            characteristics.wheelLocations[i * 3 + 2] = -0.1;
+        }
+        odometry.configure(characteristics);
+
+        for (int i = 0; i < DrivetrainPacket.MOTORS; i++) {
+            packet.motors[i] = i % 2 == 0 ? 0.4 : 0.6;
+        }
+        odometry.update(now, packet);
+    }
+
+    @Benchmark
+    public boolean update() {
+        now += STEP;
+        return odometry.update(now, packet);
+    }
+
+    @Benchmark
+    public double getPose() {
+        odometry.getPose(pose);
+        return pose.heading;
+    }
+}
@@ -0,0 +1,74 @@
+package com.compdog.rover.control.rover_control.benchmark;
+
+import com.compdog.rover.control.rover_control.packet.CodecRegistry;
+import com.compdog.rover.control.rover_control.packet.PacketCodec;
+import com.compdog.rover.control.rover_control.packet.PacketType;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of identifying a text line, perfect hash lookup in the {@link CodecRegistry} compared with the chain of
+ * prefix comparisons it replaced. The chain got slower the further down a prefix was listed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PacketCodecBenchmark {
+
+    private static final byte[][] PREFIXES = {
+            "HEALTH:".getBytes(StandardCharsets.US_ASCII), "DRIVE:".getBytes(StandardCharsets.US_ASCII),
+            "WHISKR:".getBytes(StandardCharsets.US_ASCII), "CHARS:".getBytes(StandardCharsets.US_ASCII),
+            "PONG:".getBytes(StandardCharsets.US_ASCII), "MDRIVE:".getBytes(StandardCharsets.US_ASCII),
+            "GETHEALTH:".getBytes(StandardCharsets.US_ASCII), "GETCHARS:".getBytes(StandardCharsets.US_ASCII),
+            "SETOPTS:".getBytes(StandardCharsets.US_ASCII), "PING:".getBytes(StandardCharsets.US_ASCII),
+            "SETHRATE:".getBytes(StandardCharsets.US_ASCII)
+    };
+    private static final byte[] TYPES = {
+            PacketType.HEALTH, PacketType.DRIVETRAIN, PacketType.WHISKERS, PacketType.CHARACTERISTICS, PacketType.PONG,
+            PacketType.MANUAL_DRIVE, PacketType.REQUEST_HEALTH, PacketType.REQUEST_CHARACTERISTICS,
+            PacketType.SET_OPTIONS, PacketType.PING, PacketType.SET_HEALTH_RATE
+    };
+
+    @Param({"DRIVE", "PING", "SETHRATE", "UNKNOWN"})
+    public String prefix;
+
+    private final CodecRegistry registry = CodecRegistry.getDefault();
+    private byte[] line;
+
+    @Setup
+    public void setup() {
+        line = (prefix + ":0.512345|-0.250000|0.512345|-0.250000|0.512345|-0.250000").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Benchmark
+    public byte registry() {
+        PacketCodec<?> codec = registry.identify(line, 0, line.length);
+        return codec == null ? PacketType.UNKNOWN : codec.getType();
+    }
+
+    /* The identification PacketReader used before the registry, for reference */
+    @Benchmark
+    public byte prefixChain() {
+        for (int i = 0; i < PREFIXES.length; i++) {
+            if (matches(PREFIXES[i]))
+                return TYPES[i];
+        }
+        return PacketType.UNKNOWN;
+    }
+
+    private boolean matches(byte[] prefix) {
+        if (line.length < prefix.length)
+            return false;
+
+        for (int i = 0; i < prefix.length; i++) {
+            if (line[i] != prefix[i])
+                return false;
+        }
+        return true;
+    }
+}
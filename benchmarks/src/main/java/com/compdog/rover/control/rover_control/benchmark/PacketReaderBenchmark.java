@@ -0,0 +1,107 @@
+package com.compdog.rover.control.rover_control.benchmark;
+
+import com.compdog.rover.control.rover_control.packet.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of receiving one telemetry line of each type, compared with the String.split based parsing it replaced
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PacketReaderBenchmark {
+
+    private static final String HEALTH = "HEALTH:47.250000|183500800|536870912";
+    private static final String DRIVE = "DRIVE:0.512345|-0.250000|0.512345|-0.250000|0.512345|-0.250000";
+    private static final String WHISKR = "WHISKR:512|640|384|1023|0|777";
+    private static final String CHARS = "CHARS:0.500000|0.400000|0.200000|0.120000|" +
+            "0.200000|0.220000|-0.100000|0.200000|-0.220000|-0.100000|" +
+            "0.000000|0.220000|-0.100000|0.000000|-0.220000|-0.100000|" +
+            "-0.200000|0.220000|-0.100000|-0.200000|-0.220000|-0.100000|" +
+            "0.250000|0.150000|0.000000|0.523599|0.250000|-0.150000|0.000000|-0.523599|" +
+            "0.000000|0.200000|0.000000|1.570796|0.000000|-0.200000|0.000000|-1.570796|" +
+            "-0.250000|0.150000|0.000000|2.617994|-0.250000|-0.150000|0.000000|-2.617994";
+
+    @Param({"HEALTH", "DRIVE", "WHISKR", "CHARS"})
+    public String type;
+
+    private String line;
+    private PacketReader reader;
+
+    private final HealthPacket health = new HealthPacket();
+    private final DrivetrainPacket drivetrain = new DrivetrainPacket();
+    private final WhiskersPacket whiskers = new WhiskersPacket();
+    private final CharacteristicsPacket characteristics = new CharacteristicsPacket();
+
+    @Setup
+    public void setup() {
+        switch (type) {
+            case "HEALTH": line = HEALTH; break;
+            case "DRIVE": line = DRIVE; break;
+            case "WHISKR": line = WHISKR; break;
+            default: line = CHARS; break;
+        }
+
+        StringBuilder block = new StringBuilder();
+        for (int i = 0; i < 64; i++) {
+            block.append(line).append('\n');
+        }
+        reader = new PacketReader(new LoopingInputStream(block.toString().getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Benchmark
+    public void packetReader(Blackhole blackhole) throws IOException {
+        reader.next();
+        switch (reader.getType()) {
+            case PacketType.HEALTH:
+                reader.read(health);
+                blackhole.consume(health.memoryUsed);
+                break;
+            case PacketType.DRIVETRAIN:
+                reader.read(drivetrain);
+                blackhole.consume(drivetrain.motors[5]);
+                break;
+            case PacketType.WHISKERS:
+                reader.read(whiskers);
+                blackhole.consume(whiskers.sensors[5]);
+                break;
+            case PacketType.CHARACTERISTICS:
+                reader.read(characteristics);
+                blackhole.consume(characteristics.whiskers[23]);
+                break;
+        }
+    }
+
+    /* The parsing Client used before PacketReader, for reference */
+    @Benchmark
+    public void stringSplit(Blackhole blackhole) {
+        String[] parts = line.substring(line.indexOf(':') + 1).split("\\|");
+        if (line.startsWith("HEALTH:")) {
+            HealthPacket packet = new HealthPacket();
+            packet.temp = Double.parseDouble(parts[0]);
+            packet.memoryUsed = Long.parseLong(parts[1]);
+            packet.memoryTotal = Long.parseLong(parts[2]);
+            blackhole.consume(packet);
+        } else if (line.startsWith("WHISKR:")) {
+            WhiskersPacket packet = new WhiskersPacket();
+            for (int i = 0; i < parts.length; i++) {
+                packet.sensors[i] = Integer.parseInt(parts[i]);
+            }
+            blackhole.consume(packet);
+        } else {
+            DrivetrainPacket packet = new DrivetrainPacket();
+            for (int i = 0; i < parts.length; i++) {
+                packet.motors[i] = Double.parseDouble(parts[i]);
+            }
+            blackhole.consume(packet);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.compdog.rover.control.rover_control.benchmark;
+
+import com.compdog.rover.control.rover_control.packet.ManualDrivePacket;
+import com.compdog.rover.control.rover_control.packet.PacketWriter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of encoding one MDRIVE command, as done by SendPacket, without the socket write itself
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PacketWriterBenchmark {
+
+    private final ManualDrivePacket packet = new ManualDrivePacket(0.123456789, -0.5);
+
+    private PacketWriter textWriter;
+    private PacketWriter binaryWriter;
+    private Writer legacyWriter;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        textWriter = new PacketWriter(data -> blackhole.consume(data.remaining()));
+        binaryWriter = new PacketWriter(data -> blackhole.consume(data.remaining()));
+        binaryWriter.setBinary(true);
+        legacyWriter = new OutputStreamWriter(new NullOutputStream(blackhole));
+    }
+
+    @Benchmark
+    public void text() throws IOException {
+        textWriter.write(packet);
+    }
+
+    @Benchmark
+    public void binary() throws IOException {
+        binaryWriter.write(packet);
+    }
+
+    /* How SendPacket encoded commands before PacketWriter, for reference */
+    @Benchmark
+    public void stringFormat() throws IOException {
+        legacyWriter.write(String.format("%s%f|%f\n", "MDRIVE:", packet.left, packet.right));
+        legacyWriter.flush();
+    }
+
+    private static class NullOutputStream extends java.io.OutputStream {
+        private final Blackhole blackhole;
+
+        NullOutputStream(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void write(int b) {
+            blackhole.consume(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            blackhole.consume(len);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.compdog.rover.control.rover_control.benchmark;
+
+import com.compdog.rover.control.rover_control.util.ManualResetEvent;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Per line cost on the client socket thread, with the timeout thread running next to it.<br>
+ * "event" is the old ManualResetEvent handshake, the timeout thread waits on the event and resets it.
+ * "watchdog" is the volatile receive time, read by the timeout thread at its deadline like Client does.
+ * Here the timeout thread reads it every 10 ms, so the write is contended more often than in Client.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReceiveWatchdogBenchmark {
+
+    @State(Scope.Group)
+    public static class Event {
+        final ManualResetEvent receiveEvent = new ManualResetEvent(false);
+    }
+
+    @State(Scope.Group)
+    public static class Watchdog {
+        volatile long lastReceive;
+    }
+
+    @Benchmark
+    @Group("event")
+    @GroupThreads(1)
+    public void eventReceive(Event state) {
+        state.receiveEvent.set();
+    }
+
+    @Benchmark
+    @Group("event")
+    @GroupThreads(1)
+    public boolean eventTimeout(Event state) throws InterruptedException {
+        boolean received = state.receiveEvent.waitOne(10);
+        if (received)
+            state.receiveEvent.reset();
+        return received;
+    }
+
+    @Benchmark
+    @Group("watchdog")
+    @GroupThreads(1)
+    public void watchdogReceive(Watchdog state) {
+        state.lastReceive = System.nanoTime();
+    }
+
+    @Benchmark
+    @Group("watchdog")
+    @GroupThreads(1)
+    public void watchdogTimeout(Watchdog state, Blackhole bh) {
+        bh.consume(System.nanoTime() - state.lastReceive);
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+    }
+
+    /* Both receive paths without a second thread, the floor for each */
+    @State(Scope.Thread)
+    public static class Uncontended {
+        final ManualResetEvent receiveEvent = new ManualResetEvent(false);
+        volatile long lastReceive;
+    }
+
+    @Benchmark
+    public void eventUncontended(Uncontended state) {
+        state.receiveEvent.set();
+    }
+
+    @Benchmark
+    public void watchdogUncontended(Uncontended state) {
+        state.lastReceive = System.nanoTime();
+    }
+}
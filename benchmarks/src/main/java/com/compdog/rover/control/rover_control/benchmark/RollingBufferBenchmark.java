@@ -0,0 +1,51 @@
+package com.compdog.rover.control.rover_control.benchmark;
+
+import com.compdog.rover.control.rover_control.util.RollingBuffer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RollingBufferBenchmark {
+
+    @Param({"20", "1000", "10000"})
+    public int window;
+
+    private RollingBuffer buffer;
+    private long value = 0;
+
+    @Setup
+    public void setup() {
+        buffer = new RollingBuffer(window);
+        for (int i = 0; i < window; i++) {
+            buffer.push(i % 17);
+        }
+    }
+
+    @Benchmark
+    public void push() {
+        buffer.push(value++ & 0xFF);
+    }
+
+    @Benchmark
+    public long getAverage() {
+        return buffer.getAverage();
+    }
+
+    @Benchmark
+    public long getGap() {
+        return buffer.getGap();
+    }
+
+    /* What the timeout thread does for every received line */
+    @Benchmark
+    public long pushAndSummarize() {
+        buffer.push(value++ & 0xFF);
+        return buffer.getAverage() + buffer.getGap();
+    }
+}
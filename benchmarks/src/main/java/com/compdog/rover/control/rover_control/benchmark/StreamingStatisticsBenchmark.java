@@ -0,0 +1,55 @@
+package com.compdog.rover.control.rover_control.benchmark;
+
+import com.compdog.rover.control.rover_control.util.StreamingStatistics;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StreamingStatisticsBenchmark {
+
+    @Param({"20", "1000", "10000"})
+    public int window;
+
+    private StreamingStatistics single;
+    private StreamingStatistics multi;
+    private long value = 0;
+
+    @Setup
+    public void setup() {
+        single = new StreamingStatistics(window);
+        /* Short, medium and long term view of the same signal */
+        multi = new StreamingStatistics(window / 10 + 1, window, window * 10);
+        for (int i = 0; i < window * 10; i++) {
+            single.push(i % 17);
+            multi.push(i % 17);
+        }
+    }
+
+    @Benchmark
+    public void push() {
+        single.push(value++ & 0xFF);
+    }
+
+    @Benchmark
+    public void pushThreeWindows() {
+        multi.push(value++ & 0xFF);
+    }
+
+    /* Same work as RollingBufferBenchmark.pushAndSummarize, with nanosecond samples */
+    @Benchmark
+    public double pushAndSummarize() {
+        single.push(20_000_000 + (value++ & 0xFFFF));
+        return single.getMean() + single.getRange();
+    }
+
+    @Benchmark
+    public double summarizeAll() {
+        return single.getMean() + single.getStandardDeviation() + single.getMin() + single.getMax();
+    }
+}
@@ -0,0 +1,556 @@
+package com.compdog.rover.control.rover_control;
+
+import com.compdog.rover.control.rover_control.packet.*;
+import com.compdog.rover.control.rover_control.recorder.FlightRecorder;
+import com.compdog.rover.control.rover_control.util.StreamingStatistics;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.EventListener;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Protocol and listener handling shared by the rover client implementations.
+ * Subclasses own the sockets and threads and feed received messages into {@link #handlePacket(PacketReader)}.
+ */
+public abstract class AbstractClient {
+
+    /**
+     * Packet instances are reused by the client, copy any values that are needed after the call returns
+     */
+    public interface UpdatedListener extends EventListener {
+        void updated(DrivetrainPacket packet);
+        void updated(HealthPacket packet);
+        void updated(WhiskersPacket packet);
+    }
+
+    /**
+     * Reacts to one received packet type, see {@link #registerReceiver}
+     */
+    public interface PacketHandler<T> {
+        /**
+         * Called on the receiving thread
+         * @param arrival nanoTime the message was read
+         */
+        void handle(T packet, long arrival);
+    }
+
+    public interface ConnectionUpdatedListener extends EventListener {
+        void updated(boolean statusChanged, long avg, long gap);
+
+        /**
+         * Called for every answered {@link AbstractClient#Ping() ping}
+         * @param rtt Round trip time in nanoseconds
+         * @param jitter Smoothed round trip variation in nanoseconds
+         */
+        default void roundTripUpdated(long rtt, long jitter) {
+        }
+    }
+
+    /* Copy-on-write, dispatching reads the current array without locking or allocating */
+    private final Object listenerLock = new Object();
+    private volatile UpdatedListener[] updated = new UpdatedListener[0];
+    private volatile ConnectionUpdatedListener[] connectionUpdated = new ConnectionUpdatedListener[0];
+
+    /**
+     * Adds a listener called on the receiving thread, it should return quickly. Slow listeners belong in an
+     * {@link AsyncUpdateListener}, see {@link #addUpdateListener(UpdatedListener, AsyncUpdateListener.Backpressure, int)}.
+     */
+    public void addUpdateListener(UpdatedListener listener){
+        synchronized (listenerLock) {
+            updated = add(updated, listener);
+        }
+    }
+
+    /**
+     * Adds a listener called on a dispatch thread of its own, so it can not stall the connection
+     * @param capacity Packets queued before the backpressure applies
+     * @return The wrapper holding the queue and its metrics, close it after removing it
+     */
+    public AsyncUpdateListener addUpdateListener(UpdatedListener listener, AsyncUpdateListener.Backpressure backpressure,
+                                                 int capacity){
+        AsyncUpdateListener async = new AsyncUpdateListener(listener, backpressure, capacity);
+        addUpdateListener(async);
+        return async;
+    }
+
+    public void removeUpdateListener(UpdatedListener listener){
+        synchronized (listenerLock) {
+            updated = remove(updated, listener);
+        }
+    }
+
+    protected void dispatchUpdatedEvent(DrivetrainPacket packet){
+        for(UpdatedListener listener : updated){
+            listener.updated(packet);
+        }
+    }
+
+    protected void dispatchUpdatedEvent(HealthPacket packet){
+        for(UpdatedListener listener : updated){
+            listener.updated(packet);
+        }
+    }
+
+    protected void dispatchUpdatedEvent(WhiskersPacket packet){
+        for(UpdatedListener listener : updated){
+            listener.updated(packet);
+        }
+    }
+
+    public void addConnectionUpdateListener(ConnectionUpdatedListener listener){
+        synchronized (listenerLock) {
+            connectionUpdated = add(connectionUpdated, listener);
+        }
+    }
+
+    public void removeConnectionUpdateListener(ConnectionUpdatedListener listener){
+        synchronized (listenerLock) {
+            connectionUpdated = remove(connectionUpdated, listener);
+        }
+    }
+
+    private static <T> T[] add(T[] listeners, T listener) {
+        T[] copy = Arrays.copyOf(listeners, listeners.length + 1);
+        copy[listeners.length] = listener;
+        return copy;
+    }
+
+    private static <T> T[] remove(T[] listeners, T listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                T[] copy = Arrays.copyOf(listeners, listeners.length - 1);
+                System.arraycopy(listeners, i + 1, copy, i, listeners.length - i - 1);
+                return copy;
+            }
+        }
+        return listeners;
+    }
+
+    protected void dispatchConnectionUpdatedEvent(){
+        for(ConnectionUpdatedListener listener : connectionUpdated){
+            listener.updated(true ,0 ,0);
+        }
+    }
+
+    protected void dispatchConnectionUpdatedEvent(long avg, long gap){
+        for(ConnectionUpdatedListener listener : connectionUpdated){
+            listener.updated(false, avg, gap);
+        }
+    }
+
+    /**
+     * Reports the spacing of received messages
+     * @param intervals Nanoseconds between received messages, converted to the milliseconds listeners expect
+     */
+    protected void dispatchConnectionUpdatedEvent(StreamingStatistics intervals){
+        dispatchConnectionUpdatedEvent(Math.round(intervals.getMean() / 1e6), Math.round(intervals.getRange() / 1e6));
+    }
+
+    protected void dispatchRoundTripEvent(long rtt, long jitter){
+        for(ConnectionUpdatedListener listener : connectionUpdated){
+            listener.roundTripUpdated(rtt, jitter);
+        }
+    }
+
+    /* Pings that were not answered after this many newer ones are forgotten */
+    private static final int PINGS_IN_FLIGHT = 16;
+
+    protected final String host;
+    protected final int port;
+
+    protected @Nullable PacketWriter writer;
+    protected @Nullable PacketWriter driverWriter;
+    protected volatile boolean connected;
+    /* Incremented by every handshake, only by the connecting thread */
+    private volatile long connections = 0;
+    private boolean binaryProtocol = false;
+
+    private volatile @Nullable CharacteristicsPacket characteristics = null;
+
+    /* Decoder and handler of every received type, indexed by type and copied on write like the listeners */
+    private static final class Receiver<T> {
+        private final PacketCodec<T> codec;
+        private final PacketHandler<T> handler;
+        private final boolean reuse;
+        private T packet;
+
+        private Receiver(PacketCodec<T> codec, PacketHandler<T> handler, boolean reuse) {
+            this.codec = codec;
+            this.handler = handler;
+            this.reuse = reuse;
+            packet = codec.create();
+        }
+
+        private void read(PacketReader reader) {
+            if (!reuse)
+                packet = codec.create();
+            codec.read(reader, packet);
+        }
+
+        private void handle(long arrival) {
+            handler.handle(packet, arrival);
+        }
+    }
+
+    private volatile Receiver<?>[] receivers = new Receiver<?>[256];
+
+    private final PingPacket pingPacket = new PingPacket();
+    private final AtomicLongArray pingSendTimes = new AtomicLongArray(PINGS_IN_FLIGHT);
+    private int nextPingId = 0;
+
+    /* Health streaming, an interval of 0 leaves health to RequestHealth polling */
+    private final HealthRatePacket healthRate = new HealthRatePacket();
+    private volatile int healthInterval = 0;
+    private volatile int healthHeartbeat = 0;
+    /* HEALTH frames owed to RequestHealth calls, any other HEALTH frame was pushed */
+    private final AtomicInteger healthRequests = new AtomicInteger();
+    private volatile long lastPushedHealth = 0;
+
+    private final ClientMetrics metrics = new ClientMetrics();
+    private volatile @Nullable FlightRecorder recorder = null;
+    private final Odometry odometry = new Odometry();
+
+    protected AbstractClient(String host, int port) {
+        this.host = host;
+        this.port = port;
+
+        writer = null;
+        driverWriter = null;
+        connected = false;
+
+        registerReceiver(PacketCodecs.HEALTH, true, this::handleHealth);
+        registerReceiver(PacketCodecs.DRIVETRAIN, true, this::handleDrivetrain);
+        registerReceiver(PacketCodecs.WHISKERS, true, this::handleWhiskers);
+        registerReceiver(PacketCodecs.PONG, true, this::handlePong);
+        registerReceiver(PacketCodecs.CHARACTERISTICS, true, this::handleCharacteristics);
+    }
+
+    /**
+     * Handles a received packet type, replacing the handler registered before. Types that are not known to
+     * the protocol also need their codec registered with the {@link CodecRegistry} of the reader.
+     * @param reuse true to decode every message into the same packet, false if the handler keeps the packet
+     */
+    public <T> void registerReceiver(PacketCodec<T> codec, boolean reuse, PacketHandler<T> handler) {
+        synchronized (listenerLock) {
+            Receiver<?>[] copy = receivers.clone();
+            copy[codec.getType() & 0xFF] = new Receiver<>(codec, handler, reuse);
+            receivers = copy;
+        }
+    }
+
+    public abstract void Start();
+
+    public abstract void Stop();
+
+    public abstract void Dispose();
+
+    /**
+     * Sends the initial requests once both writers are set up and the client is connected
+     */
+    protected void handshake() throws IOException {
+        connections++;
+        metrics.resetArrivals();
+        // The rover may have been moved meanwhile, the pose starts over at the origin
+        odometry.reset();
+
+        if (binaryProtocol && driverWriter != null) {
+            // The driver socket never receives, it only needs to accept binary commands
+            driverWriter.writeSetOptions(ClientOptionFlags.BINARY_PROTOCOL);
+        }
+
+        healthRequests.set(0);
+        lastPushedHealth = 0;
+
+        // Request info about the server we are connected to
+        RequestCharacteristics();
+        if (healthInterval > 0)
+            SetHealthRate(healthInterval, healthHeartbeat);
+        SetOptions(getListenOptions());
+    }
+
+    private int getListenOptions() {
+        return ClientOptionFlags.LISTEN_DRIVETRAIN | ClientOptionFlags.LISTEN_WHISKERS |
+                (healthInterval > 0 ? ClientOptionFlags.LISTEN_HEALTH : ClientOptionFlags.NONE) |
+                (binaryProtocol ? ClientOptionFlags.BINARY_PROTOCOL : ClientOptionFlags.NONE);
+    }
+
+    /**
+     * Decodes the message the reader is positioned on and notifies the listeners
+     */
+    protected void handlePacket(PacketReader reader) {
+        if (reader.isBinary() && writer != null && !writer.isBinary()) {
+            // First frame from a rover that understood BINARY_PROTOCOL, commands can follow suit
+            writer.setBinary(true);
+            if (driverWriter != null)
+                driverWriter.setBinary(true);
+        }
+
+        long arrival = System.nanoTime();
+        byte type = reader.getType();
+
+        Receiver<?> receiver = receivers[type & 0xFF];
+        if (receiver == null) {
+            System.out.println("[Client] Unexpected command " + reader.getLine());
+            return;
+        }
+
+        receiver.read(reader);
+        long parsed = System.nanoTime();
+        receiver.handle(arrival);
+
+        metrics.recordReceive(type, arrival, parsed - arrival, System.nanoTime() - parsed);
+    }
+
+    private void handleHealth(HealthPacket packet, long arrival) {
+        if (healthRequests.getAndUpdate(n -> n > 0 ? n - 1 : 0) == 0)
+            lastPushedHealth = arrival;
+        FlightRecorder recorder = this.recorder;
+        if (recorder != null)
+            recorder.record(arrival, packet);
+        dispatchUpdatedEvent(packet);
+    }
+
+    private void handleDrivetrain(DrivetrainPacket packet, long arrival) {
+        odometry.update(arrival, packet);
+        FlightRecorder recorder = this.recorder;
+        if (recorder != null)
+            recorder.record(arrival, packet);
+        dispatchUpdatedEvent(packet);
+    }
+
+    private void handleWhiskers(WhiskersPacket packet, long arrival) {
+        FlightRecorder recorder = this.recorder;
+        if (recorder != null)
+            recorder.record(arrival, packet);
+        dispatchUpdatedEvent(packet);
+    }
+
+    /* Published to other threads through getCharacteristics, so a changed geometry is copied into a new packet */
+    private void handleCharacteristics(CharacteristicsPacket packet, long arrival) {
+        CharacteristicsPacket current = characteristics;
+        if (current != null && current.sameAs(packet))
+            return;
+
+        CharacteristicsPacket copy = new CharacteristicsPacket();
+        copy.copyFrom(packet);
+        characteristics = copy;
+        odometry.configure(copy);
+    }
+
+    /* The echoed send time doubles as a nonce, so late or duplicate answers are ignored */
+    private void handlePong(PingPacket pong, long arrival) {
+        int slot = pong.id & (PINGS_IN_FLIGHT - 1);
+        if (pong.sendTime == 0 || !pingSendTimes.compareAndSet(slot, pong.sendTime, 0))
+            return;
+
+        metrics.recordRoundTrip(pong.sendTime, arrival, pong.roverTime);
+        dispatchRoundTripEvent(metrics.getLastRoundTrip(), metrics.getJitter());
+    }
+
+    public void SendPacket(ManualDrivePacket packet, boolean useDriver) {
+        PacketWriter _wrt = useDriver ? driverWriter : writer;
+
+        if (_wrt == null || !connected)
+            return;
+
+        try {
+            long start = System.nanoTime();
+            _wrt.write(packet);
+            metrics.recordSend(PacketType.MANUAL_DRIVE, System.nanoTime() - start);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public void RequestHealth(){
+        if(writer == null || !connected)
+            return;
+
+        try {
+            long start = System.nanoTime();
+            healthRequests.incrementAndGet();
+            writer.writeRequestHealth();
+            metrics.recordSend(PacketType.REQUEST_HEALTH, System.nanoTime() - start);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public void RequestCharacteristics(){
+        if(writer == null || !connected)
+            return;
+
+        try {
+            long start = System.nanoTime();
+            writer.writeRequestCharacteristics();
+            metrics.recordSend(PacketType.REQUEST_CHARACTERISTICS, System.nanoTime() - start);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public void SetOptions(int options){
+        if(writer == null || !connected)
+            return;
+
+        try {
+            long start = System.nanoTime();
+            writer.writeSetOptions(options);
+            metrics.recordSend(PacketType.SET_OPTIONS, System.nanoTime() - start);
+            if ((options & ClientOptionFlags.BINARY_PROTOCOL) == 0) {
+                writer.setBinary(false);
+                if (driverWriter != null)
+                    driverWriter.setBinary(false);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Configures the HEALTH stream, only takes effect while {@link ClientOptionFlags#LISTEN_HEALTH} is set
+     * @param interval Milliseconds between the rover's health checks
+     * @param heartbeat Milliseconds after which unchanged health is sent anyway
+     */
+    public void SetHealthRate(int interval, int heartbeat){
+        if(writer == null || !connected)
+            return;
+
+        try {
+            long start = System.nanoTime();
+            synchronized (healthRate) {
+                healthRate.interval = interval;
+                healthRate.heartbeat = heartbeat;
+                writer.write(healthRate);
+            }
+            metrics.recordSend(PacketType.SET_HEALTH_RATE, System.nanoTime() - start);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Subscribes to pushed HEALTH frames instead of polling, applied now and on every reconnect.
+     * Rovers that do not stream keep answering {@link #RequestHealth()}, see {@link #isHealthStreaming()}.
+     * @param interval Milliseconds between the rover's health checks, 0 unsubscribes
+     * @param heartbeat Milliseconds after which unchanged health is sent anyway
+     */
+    public void setHealthStreaming(int interval, int heartbeat) {
+        if (interval < 0 || (interval > 0 && heartbeat < interval))
+            throw new IllegalArgumentException("Heartbeat must be at least the interval");
+
+        healthInterval = interval;
+        healthHeartbeat = heartbeat;
+        if (interval > 0)
+            SetHealthRate(interval, heartbeat);
+        SetOptions(getListenOptions());
+    }
+
+    public int getHealthInterval() {
+        return healthInterval;
+    }
+
+    /**
+     * @return true while subscribed and pushed HEALTH frames keep arriving within twice the heartbeat,
+     * polling is only needed when this is false
+     */
+    public boolean isHealthStreaming() {
+        long last = lastPushedHealth;
+        return healthInterval > 0 && connected && last != 0 &&
+                System.nanoTime() - last < TimeUnit.MILLISECONDS.toNanos(2L * healthHeartbeat);
+    }
+
+    /**
+     * Sends a timestamped ping on the primary connection. The answer updates the
+     * round trip statistics in {@link #getMetrics()} and notifies the connection listeners.
+     */
+    public void Ping(){
+        if(writer == null || !connected)
+            return;
+
+        try {
+            synchronized (pingPacket) {
+                pingPacket.id = nextPingId++;
+                long start = System.nanoTime();
+                pingPacket.sendTime = start;
+                pingSendTimes.set(pingPacket.id & (PINGS_IN_FLIGHT - 1), start);
+                writer.writePing(pingPacket);
+                metrics.recordSend(PacketType.PING, System.nanoTime() - start);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Asks the rover for the binary protocol on the next connection, text stays the fallback
+     * if the rover never answers with a binary frame
+     */
+    public void setBinaryProtocol(boolean binaryProtocol) {
+        this.binaryProtocol = binaryProtocol;
+    }
+
+    public boolean isBinaryProtocol() {
+        return binaryProtocol;
+    }
+
+    public @Nullable CharacteristicsPacket getCharacteristics(){
+        return characteristics;
+    }
+
+    /**
+     * Records every received telemetry packet. The recorder is fed from the receiving
+     * thread without locking, so it must not be shared with another client.
+     * The recorder also follows the pose estimated by {@link #getOdometry()}.
+     */
+    public void setRecorder(@Nullable FlightRecorder recorder) {
+        FlightRecorder previous = this.recorder;
+        if (previous != null)
+            previous.setOdometry(null);
+        this.recorder = recorder;
+        if (recorder != null)
+            recorder.setOdometry(odometry);
+    }
+
+    public @Nullable FlightRecorder getRecorder() {
+        return recorder;
+    }
+
+    /**
+     * Pose estimated from the DRIVE telemetry once the rover sent its characteristics, starting over at the origin
+     * with every connection. Safe to read from any thread
+     */
+    public Odometry getOdometry() {
+        return odometry;
+    }
+
+    /**
+     * Per message type latency histograms, safe to poll from any thread
+     */
+    public ClientMetrics getMetrics() {
+        return metrics;
+    }
+
+    public boolean IsConnected(){
+        return connected;
+    }
+
+    /**
+     * @return Connections made so far, a different value than before means the client reconnected meanwhile
+     */
+    public long getConnections() {
+        return connections;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+}
@@ -0,0 +1,345 @@
+package com.compdog.rover.control.rover_control;
+
+import com.compdog.rover.control.rover_control.packet.DrivetrainPacket;
+import com.compdog.rover.control.rover_control.packet.HealthPacket;
+import com.compdog.rover.control.rover_control.packet.PacketType;
+import com.compdog.rover.control.rover_control.packet.WhiskersPacket;
+import com.compdog.rover.control.rover_control.util.LatencyHistogram;
+import com.compdog.rover.control.rover_control.util.StampedRing;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Moves an {@link AbstractClient.UpdatedListener} off the receiving thread.<br>
+ * The receiving thread only copies each packet into a bounded {@link StampedRing} owned by this listener,
+ * a thread of its own hands the copies to the wrapped listener. What happens when the listener falls
+ * behind is decided by its {@link Backpressure}. How far behind it is shows in {@link #getLag()} and
+ * {@link #getLatency()}, lost packets in {@link #getDropped()}.<br>
+ * Fed without locking, so it must only be added to one client.
+ */
+public class AsyncUpdateListener implements AbstractClient.UpdatedListener, AutoCloseable {
+
+    public enum Backpressure {
+        /**
+         * A full queue overwrites its oldest packet, the receiving thread never waits
+         */
+        DROP_OLDEST,
+        /**
+         * Only the newest packet of each type is kept, for listeners that show the current state
+         */
+        LATEST_ONLY,
+        /**
+         * The receiving thread waits until the queue has room, nothing is lost but a slow listener
+         * slows down the connection again
+         */
+        BLOCK
+    }
+
+    /* i64 enqueue time, i64 type, 6 x 8 byte fields packed like the flight recorder */
+    private static final int RECORD_LONGS = 8;
+    private static final int RECORD_TIME = 0;
+    private static final int RECORD_TYPE = 1;
+    private static final int RECORD_FIELDS = 2;
+
+    private static final long IDLE_PARK = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long BLOCK_PARK = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final AbstractClient.UpdatedListener listener;
+    private final Backpressure backpressure;
+
+    /* One ring for the queued policies, one single record ring per packet type for LATEST_ONLY */
+    private final @Nullable StampedRing queue;
+    private final @Nullable StampedRing latestHealth;
+    private final @Nullable StampedRing latestDrivetrain;
+    private final @Nullable StampedRing latestWhiskers;
+
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile boolean waiting = false;
+    private volatile @Nullable Thread blockedProducer = null;
+
+    /* Consumer side */
+    private final long[] record = new long[RECORD_LONGS];
+    private final HealthPacket healthPacket = new HealthPacket();
+    private final DrivetrainPacket drivetrainPacket = new DrivetrainPacket();
+    private final WhiskersPacket whiskersPacket = new WhiskersPacket();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private volatile long delivered = 0;
+
+    /* Producer side */
+    private volatile long offered = 0;
+    private volatile long blocked = 0;
+    private volatile int maxLag = 0;
+
+    public AsyncUpdateListener(AbstractClient.UpdatedListener listener, Backpressure backpressure, int capacity) {
+        this(listener, backpressure, capacity, ExecutionMode.getDefault());
+    }
+
+    /**
+     * @param capacity Packets queued before the backpressure applies, rounded up to a power of two,
+     *                 ignored for {@link Backpressure#LATEST_ONLY}
+     */
+    public AsyncUpdateListener(AbstractClient.UpdatedListener listener, Backpressure backpressure, int capacity,
+                               ExecutionMode mode) {
+        this.listener = listener;
+        this.backpressure = backpressure;
+
+        if (backpressure == Backpressure.LATEST_ONLY) {
+            queue = null;
+            latestHealth = new StampedRing(1, RECORD_LONGS);
+            latestDrivetrain = new StampedRing(1, RECORD_LONGS);
+            latestWhiskers = new StampedRing(1, RECORD_LONGS);
+        } else {
+            queue = new StampedRing(capacity, RECORD_LONGS);
+            latestHealth = latestDrivetrain = latestWhiskers = null;
+        }
+
+        thread = mode.newThread(this::dispatchThread, "Listener Dispatch Thread");
+        thread.start();
+    }
+
+    public AbstractClient.UpdatedListener getListener() {
+        return listener;
+    }
+
+    public Backpressure getBackpressure() {
+        return backpressure;
+    }
+
+    @Override
+    public void updated(DrivetrainPacket packet) {
+        StampedRing ring = begin(latestDrivetrain);
+        if (ring == null)
+            return;
+
+        int offset = claim(ring, PacketType.DRIVETRAIN);
+        long[] data = ring.data();
+        for (int i = 0; i < DrivetrainPacket.MOTORS; i++) {
+            data[offset + i] = Double.doubleToRawLongBits(packet.motors[i]);
+        }
+        end(ring);
+    }
+
+    @Override
+    public void updated(HealthPacket packet) {
+        StampedRing ring = begin(latestHealth);
+        if (ring == null)
+            return;
+
+        int offset = claim(ring, PacketType.HEALTH);
+        long[] data = ring.data();
+        data[offset] = Double.doubleToRawLongBits(packet.temp);
+        data[offset + 1] = packet.memoryUsed;
+        data[offset + 2] = packet.memoryTotal;
+        end(ring);
+    }
+
+    @Override
+    public void updated(WhiskersPacket packet) {
+        StampedRing ring = begin(latestWhiskers);
+        if (ring == null)
+            return;
+
+        int offset = claim(ring, PacketType.WHISKERS);
+        long[] data = ring.data();
+        for (int i = 0; i < WhiskersPacket.SENSORS; i++) {
+            data[offset + i] = packet.sensors[i];
+        }
+        end(ring);
+    }
+
+    /* Ring the packet goes to, null once closed */
+    private @Nullable StampedRing begin(@Nullable StampedRing latest) {
+        if (!running)
+            return null;
+        if (latest != null)
+            return latest;
+
+        if (backpressure == Backpressure.BLOCK && queue.size() >= queue.getCapacity()) {
+            long start = System.nanoTime();
+            blockedProducer = Thread.currentThread();
+            while (running && queue.size() >= queue.getCapacity()) {
+                LockSupport.parkNanos(this, BLOCK_PARK);
+            }
+            blockedProducer = null;
+            blocked += System.nanoTime() - start;
+            if (!running)
+                return null;
+        }
+        return queue;
+    }
+
+    /* Returns the offset of the first field */
+    private int claim(StampedRing ring, byte type) {
+        int offset = ring.claim();
+        long[] data = ring.data();
+        data[offset + RECORD_TIME] = System.nanoTime();
+        data[offset + RECORD_TYPE] = type;
+        return offset + RECORD_FIELDS;
+    }
+
+    private void end(StampedRing ring) {
+        ring.publish();
+        offered++;
+
+        int lag = ring.size();
+        if (lag > maxLag)
+            maxLag = lag;
+
+        // Pairs with the consumer raising the flag before it checks the rings a last time
+        if (waiting)
+            LockSupport.unpark(thread);
+    }
+
+    private void dispatchThread() {
+        while (running) {
+            if (drain() > 0)
+                continue;
+
+            waiting = true;
+            if (getLag() == 0 && running)
+                LockSupport.parkNanos(this, IDLE_PARK);
+            waiting = false;
+        }
+
+        System.out.println("[AsyncUpdateListener] Dispatch thread dying");
+    }
+
+    private int drain() {
+        int count = 0;
+        if (queue != null) {
+            while (running && queue.poll(record)) {
+                deliver();
+                count++;
+
+                Thread producer = blockedProducer;
+                if (producer != null)
+                    LockSupport.unpark(producer);
+            }
+        } else {
+            if (latestHealth.poll(record)) {
+                deliver();
+                count++;
+            }
+            if (latestDrivetrain.poll(record)) {
+                deliver();
+                count++;
+            }
+            if (latestWhiskers.poll(record)) {
+                deliver();
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void deliver() {
+        latency.record(System.nanoTime() - record[RECORD_TIME]);
+
+        try {
+            switch ((byte) record[RECORD_TYPE]) {
+                case PacketType.HEALTH:
+                    healthPacket.temp = Double.longBitsToDouble(record[RECORD_FIELDS]);
+                    healthPacket.memoryUsed = record[RECORD_FIELDS + 1];
+                    healthPacket.memoryTotal = record[RECORD_FIELDS + 2];
+                    listener.updated(healthPacket);
+                    break;
+                case PacketType.DRIVETRAIN:
+                    for (int i = 0; i < DrivetrainPacket.MOTORS; i++) {
+                        drivetrainPacket.motors[i] = Double.longBitsToDouble(record[RECORD_FIELDS + i]);
+                    }
+                    listener.updated(drivetrainPacket);
+                    break;
+                case PacketType.WHISKERS:
+                    for (int i = 0; i < WhiskersPacket.SENSORS; i++) {
+                        whiskersPacket.sensors[i] = (int) record[RECORD_FIELDS + i];
+                    }
+                    listener.updated(whiskersPacket);
+                    break;
+            }
+        } catch (RuntimeException e) {
+            // A failing listener must not take the dispatch thread down with it
+            e.printStackTrace();
+        }
+        delivered++;
+    }
+
+    /**
+     * @return Packets handed to this listener by the client
+     */
+    public long getOffered() {
+        return offered;
+    }
+
+    /**
+     * @return Packets the wrapped listener has seen
+     */
+    public long getDelivered() {
+        return delivered;
+    }
+
+    /**
+     * @return Packets lost to the backpressure, always 0 for {@link Backpressure#BLOCK}
+     */
+    public long getDropped() {
+        if (queue != null)
+            return queue.getOverwritten();
+        return latestHealth.getOverwritten() + latestDrivetrain.getOverwritten() + latestWhiskers.getOverwritten();
+    }
+
+    /**
+     * @return Packets waiting for the listener, including ones that are about to be overwritten
+     */
+    public int getLag() {
+        if (queue != null)
+            return queue.size();
+        return latestHealth.size() + latestDrivetrain.size() + latestWhiskers.size();
+    }
+
+    /**
+     * @return Largest lag seen right after queueing a packet
+     */
+    public int getMaxLag() {
+        return maxLag;
+    }
+
+    /**
+     * Nanoseconds from queueing each packet to handing it to the listener
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * @return Nanoseconds the receiving thread spent waiting for room, only with {@link Backpressure#BLOCK}
+     */
+    public long getBlocked() {
+        return blocked;
+    }
+
+    /**
+     * Stops the dispatch thread, packets still queued are not delivered
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(thread);
+        Thread producer = blockedProducer;
+        if (producer != null)
+            LockSupport.unpark(producer);
+        try {
+            thread.join(10000);
+        } catch (InterruptedException ignored) {
+            thread.interrupt();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s offered=%d delivered=%d dropped=%d lag=%d max lag=%d blocked=%.1f ms latency %s",
+                backpressure.name().toLowerCase(), offered, delivered, getDropped(), getLag(), maxLag,
+                blocked / 1e6, latency.snapshot());
+    }
+}
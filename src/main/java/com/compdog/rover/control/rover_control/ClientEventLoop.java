@@ -0,0 +1,167 @@
+package com.compdog.rover.control.rover_control;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single selector thread that drives any number of {@link NioClient} connections.<br>
+ * Timeouts are handled through per client deadlines that bound the select call, so no
+ * extra thread is needed to watch for silent connections.
+ */
+public class ClientEventLoop implements AutoCloseable {
+
+    private final Selector selector;
+    private final Thread thread;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final List<NioClient> clients = new ArrayList<>();
+
+    private volatile boolean running;
+    private volatile int clientCount;
+
+    public ClientEventLoop(String name) throws IOException {
+        selector = Selector.open();
+        running = true;
+
+        thread = new Thread(this::eventLoopThread, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    Selector getSelector() {
+        return selector;
+    }
+
+    public boolean inEventLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Runs the task on the event loop thread, directly if already called from it
+     */
+    public void execute(Runnable task) {
+        if (inEventLoop()) {
+            task.run();
+        } else {
+            tasks.add(task);
+            selector.wakeup();
+        }
+    }
+
+    void wakeup() {
+        selector.wakeup();
+    }
+
+    void register(NioClient client) {
+        execute(() -> {
+            if (!clients.contains(client))
+                clients.add(client);
+            clientCount = clients.size();
+        });
+    }
+
+    void unregister(NioClient client) {
+        execute(() -> {
+            clients.remove(client);
+            clientCount = clients.size();
+        });
+    }
+
+    public int getClientCount() {
+        return clientCount;
+    }
+
+    private void eventLoopThread() {
+        while (running) {
+            runTasks();
+
+            long now = System.nanoTime();
+            long nextDeadline = Long.MAX_VALUE;
+            for (int i = 0; i < clients.size(); i++) {
+                NioClient client = clients.get(i);
+                long deadline = client.getDeadline();
+                if (deadline != Long.MAX_VALUE && deadline - now <= 0) {
+                    try {
+                        client.onDeadline(now);
+                    } catch (RuntimeException e) {
+                        e.printStackTrace();
+                        client.onFailed();
+                    }
+                    deadline = client.getDeadline();
+                }
+                if (deadline != Long.MAX_VALUE && (nextDeadline == Long.MAX_VALUE || deadline - nextDeadline < 0))
+                    nextDeadline = deadline;
+            }
+
+            try {
+                if (!tasks.isEmpty()) {
+                    selector.selectNow();
+                } else if (nextDeadline == Long.MAX_VALUE) {
+                    selector.select();
+                } else {
+                    long timeout = TimeUnit.NANOSECONDS.toMillis(nextDeadline - System.nanoTime());
+                    if (timeout <= 0)
+                        selector.selectNow();
+                    else
+                        selector.select(timeout);
+                }
+            } catch (IOException e) {
+                System.err.println("[ClientEventLoop] Error " + e.getMessage());
+                break;
+            }
+
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+
+                NioClient client = (NioClient) key.attachment();
+                client.onSelected(key);
+            }
+        }
+
+        runTasks();
+        for (NioClient client : clients) {
+            client.onLoopClosed();
+        }
+        clients.clear();
+
+        try {
+            selector.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        System.out.println("[ClientEventLoop] Event loop thread dying");
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+        if (!inEventLoop()) {
+            try {
+                thread.join(10000);
+            } catch (InterruptedException ignored) {
+                thread.interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.compdog.rover.control.rover_control;
+
+import com.compdog.rover.control.rover_control.packet.PacketType;
+import com.compdog.rover.control.rover_control.util.LatencyHistogram;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Timing of the rover link, kept per message type.<br>
+ * Received messages record the time since the previous message of the same type (inter-arrival),
+ * the time to decode them (parse) and the time spent in listeners (dispatch). Sent commands record
+ * how long the write took.<br>
+ * Answered pings record the round trip time, its jitter and the offset of the rover clock.
+ */
+public class ClientMetrics {
+
+    private static final int TYPES = 0x20;
+
+    private static final byte[] RECEIVED_TYPES = {
+            PacketType.HEALTH, PacketType.DRIVETRAIN, PacketType.WHISKERS, PacketType.CHARACTERISTICS, PacketType.PONG
+    };
+    private static final byte[] SENT_TYPES = {
+            PacketType.MANUAL_DRIVE, PacketType.REQUEST_HEALTH, PacketType.REQUEST_CHARACTERISTICS, PacketType.SET_OPTIONS,
+            PacketType.PING, PacketType.SET_HEALTH_RATE
+    };
+
+    /* Number of recent round trips the clock offset is chosen from */
+    private static final int OFFSET_WINDOW = 16;
+
+    /**
+     * One generation of histograms, {@link #reset()} swaps in a fresh one so recording threads never see
+     * a histogram cleared halfway through a record.<br>
+     * Histograms are only allocated for the message types that are actually received or sent, or asked for.
+     */
+    private static class Histograms {
+        final AtomicReferenceArray<LatencyHistogram> interArrival = new AtomicReferenceArray<>(TYPES);
+        final AtomicReferenceArray<LatencyHistogram> parse = new AtomicReferenceArray<>(TYPES);
+        final AtomicReferenceArray<LatencyHistogram> dispatch = new AtomicReferenceArray<>(TYPES);
+        final AtomicReferenceArray<LatencyHistogram> send = new AtomicReferenceArray<>(TYPES);
+        final LatencyHistogram roundTrip = new LatencyHistogram();
+    }
+
+    private volatile Histograms histograms = new Histograms();
+
+    /* Only touched by the thread receiving messages */
+    private final long[] lastArrival = new long[TYPES];
+    private final long[] recentRoundTrips = new long[OFFSET_WINDOW];
+    private final long[] recentOffsets = new long[OFFSET_WINDOW];
+    private int roundTripCount = 0;
+
+    /* Set by reset, the receiving thread forgets its recent round trips with the next one */
+    private volatile boolean roundTripsReset = false;
+
+    private volatile long lastRoundTrip = 0;
+    private volatile long jitter = 0;
+    private volatile long clockOffset = 0;
+
+    private static boolean isTracked(byte[] types, byte type) {
+        for (byte tracked : types) {
+            if (tracked == type)
+                return true;
+        }
+        return false;
+    }
+
+    /* Any thread, whoever loses the race to allocate uses the winner's histogram */
+    private static LatencyHistogram histogram(AtomicReferenceArray<LatencyHistogram> histograms, byte type) {
+        LatencyHistogram histogram = histograms.get(type);
+        if (histogram == null) {
+            histograms.compareAndSet(type, null, new LatencyHistogram());
+            histogram = histograms.get(type);
+        }
+        return histogram;
+    }
+
+    void recordReceive(byte type, long arrival, long parseNanos, long dispatchNanos) {
+        if (!isTracked(RECEIVED_TYPES, type))
+            return;
+
+        Histograms histograms = this.histograms;
+        if (lastArrival[type] != 0)
+            histogram(histograms.interArrival, type).record(arrival - lastArrival[type]);
+        lastArrival[type] = arrival;
+
+        histogram(histograms.parse, type).record(parseNanos);
+        histogram(histograms.dispatch, type).record(dispatchNanos);
+    }
+
+    void recordSend(byte type, long nanos) {
+        if (isTracked(SENT_TYPES, type))
+            histogram(histograms.send, type).record(nanos);
+    }
+
+    /**
+     * @param sendTime Local time the ping was sent
+     * @param receiveTime Local time the answer arrived
+     * @param roverTime Rover clock when it answered
+     */
+    void recordRoundTrip(long sendTime, long receiveTime, long roverTime) {
+        if (roundTripsReset) {
+            roundTripsReset = false;
+            roundTripCount = 0;
+        }
+
+        long rtt = receiveTime - sendTime;
+        histograms.roundTrip.record(rtt);
+
+        /* Smoothed like the RTP interarrival jitter, 1/16 of each change */
+        if (roundTripCount > 0)
+            jitter += (Math.abs(rtt - lastRoundTrip) - jitter) / 16;
+        lastRoundTrip = rtt;
+
+        /*
+         * Assumes the answer was sent half way through the round trip. Queueing makes that
+         * asymmetric, so the offset is taken from the fastest recent round trip.
+         */
+        int slot = roundTripCount++ % OFFSET_WINDOW;
+        recentRoundTrips[slot] = rtt;
+        recentOffsets[slot] = roverTime - (sendTime + rtt / 2);
+
+        int best = 0;
+        int filled = Math.min(roundTripCount, OFFSET_WINDOW);
+        for (int i = 1; i < filled; i++) {
+            if (recentRoundTrips[i] < recentRoundTrips[best])
+                best = i;
+        }
+        clockOffset = recentOffsets[best];
+    }
+
+    /**
+     * Forgets the previous arrival times, so the gap across a reconnect is not counted
+     */
+    void resetArrivals() {
+        for (int i = 0; i < TYPES; i++) {
+            lastArrival[i] = 0;
+        }
+        roundTripCount = 0;
+    }
+
+    /**
+     * @return Histogram of a received type, null for types the rover does not send
+     */
+    public @Nullable LatencyHistogram getInterArrival(byte type) {
+        return isTracked(RECEIVED_TYPES, type) ? histogram(histograms.interArrival, type) : null;
+    }
+
+    public @Nullable LatencyHistogram getParse(byte type) {
+        return isTracked(RECEIVED_TYPES, type) ? histogram(histograms.parse, type) : null;
+    }
+
+    public @Nullable LatencyHistogram getDispatch(byte type) {
+        return isTracked(RECEIVED_TYPES, type) ? histogram(histograms.dispatch, type) : null;
+    }
+
+    /**
+     * @return Histogram of a sent type, null for types the client never sends
+     */
+    public @Nullable LatencyHistogram getSend(byte type) {
+        return isTracked(SENT_TYPES, type) ? histogram(histograms.send, type) : null;
+    }
+
+    public LatencyHistogram getRoundTrip() {
+        return histograms.roundTrip;
+    }
+
+    /**
+     * @return The latest round trip time in nanoseconds, 0 before the first ping was answered
+     */
+    public long getLastRoundTrip() {
+        return lastRoundTrip;
+    }
+
+    /**
+     * @return Smoothed variation between consecutive round trips in nanoseconds
+     */
+    public long getJitter() {
+        return jitter;
+    }
+
+    /**
+     * @return Rover clock minus local clock in nanoseconds
+     */
+    public long getClockOffset() {
+        return clockOffset;
+    }
+
+    /**
+     * Any thread, starts over with empty histograms while the client keeps recording.<br>
+     * Histograms returned before stay with the old values. The clock offset is chosen from round trips
+     * after the reset from the next answered ping on.
+     */
+    public void reset() {
+        histograms = new Histograms();
+        roundTripsReset = true;
+    }
+
+    public static String getTypeName(byte type) {
+        switch (type) {
+            case PacketType.HEALTH: return "HEALTH";
+            case PacketType.DRIVETRAIN: return "DRIVE";
+            case PacketType.WHISKERS: return "WHISKR";
+            case PacketType.CHARACTERISTICS: return "CHARS";
+            case PacketType.PONG: return "PONG";
+            case PacketType.MANUAL_DRIVE: return "MDRIVE";
+            case PacketType.REQUEST_HEALTH: return "GETHEALTH";
+            case PacketType.REQUEST_CHARACTERISTICS: return "GETCHARS";
+            case PacketType.SET_OPTIONS: return "SETOPTS";
+            case PacketType.PING: return "PING";
+            case PacketType.SET_HEALTH_RATE: return "SETHRATE";
+            default: return "UNKNOWN";
+        }
+    }
+
+    /**
+     * One line per message type and metric, meant for logs and exporting
+     */
+    @Override
+    public String toString() {
+        Histograms histograms = this.histograms;
+        StringBuilder builder = new StringBuilder();
+        for (byte type : RECEIVED_TYPES) {
+            append(builder, type, "inter-arrival", histograms.interArrival.get(type));
+            append(builder, type, "parse", histograms.parse.get(type));
+            append(builder, type, "dispatch", histograms.dispatch.get(type));
+        }
+        for (byte type : SENT_TYPES) {
+            append(builder, type, "send", histograms.send.get(type));
+        }
+        append(builder, PacketType.PING, "round trip", histograms.roundTrip);
+        return builder.toString();
+    }
+
+    private static void append(StringBuilder builder, byte type, String metric, @Nullable LatencyHistogram histogram) {
+        if (histogram == null || histogram.getCount() == 0)
+            return;
+
+        builder.append(String.format("%-9s %-13s ", getTypeName(type), metric))
+                .append(histogram.snapshot())
+                .append('\n');
+    }
+}
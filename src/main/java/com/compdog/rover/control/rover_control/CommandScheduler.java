@@ -0,0 +1,265 @@
+package com.compdog.rover.control.rover_control;
+
+import com.compdog.rover.control.rover_control.util.LatencyHistogram;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs periodic rover commands, sleeping until the earliest deadline instead of polling.<br>
+ * Every command has its own rate that can change at any time. How late each run started is recorded,
+ * so timer jitter under load shows up in {@link #getLateness()}. A command that falls more than a period
+ * behind skips the missed runs instead of sending them in a burst.<br>
+ * In {@link ExecutionMode#SHARED} mode the runs happen on the shared scheduler, otherwise on a thread of its own.
+ */
+public class CommandScheduler implements AutoCloseable {
+
+    public final class Command {
+        private final String name;
+        private final Runnable action;
+        private final LatencyHistogram lateness = new LatencyHistogram();
+
+        /* Guarded by the scheduler */
+        private long period;
+        private long deadline;
+        private long runs = 0;
+        private long skipped = 0;
+
+        private Command(String name, Runnable action) {
+            this.name = name;
+            this.action = action;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @param rate Runs per second, 0 pauses the command
+         */
+        public void setRate(double rate) {
+            if (rate < 0)
+                throw new IllegalArgumentException("Rate can not be negative");
+            synchronized (CommandScheduler.this) {
+                long now = System.nanoTime();
+                long oldPeriod = period;
+                period = rate == 0 ? 0 : (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+                // Keep the time since the last run, unless the new period is already over
+                if (period != 0)
+                    deadline = oldPeriod == 0 ? now + period : Math.min(deadline, now + period);
+            }
+            wake();
+        }
+
+        public double getRate() {
+            synchronized (CommandScheduler.this) {
+                return period == 0 ? 0 : (double) TimeUnit.SECONDS.toNanos(1) / period;
+            }
+        }
+
+        /**
+         * Nanoseconds between each deadline and the start of its run
+         */
+        public LatencyHistogram getLateness() {
+            return lateness;
+        }
+
+        public long getRuns() {
+            synchronized (CommandScheduler.this) {
+                return runs;
+            }
+        }
+
+        /**
+         * @return Runs left out because the command fell more than a period behind
+         */
+        public long getSkipped() {
+            synchronized (CommandScheduler.this) {
+                return skipped;
+            }
+        }
+
+        public void cancel() {
+            synchronized (CommandScheduler.this) {
+                commands.remove(this);
+            }
+            wake();
+        }
+    }
+
+    private final ExecutionMode mode;
+    private final List<Command> commands = new ArrayList<>();
+    private final LatencyHistogram lateness = new LatencyHistogram();
+
+    private volatile boolean running = true;
+    private @Nullable Thread thread;
+
+    /* Shared mode, guarded by the scheduler. Only the run of the current generation may schedule the next one */
+    private @Nullable ScheduledFuture<?> pending;
+    private long generation = 0;
+    private boolean sharedRunning = false;
+
+    public CommandScheduler() {
+        this(ExecutionMode.getDefault());
+    }
+
+    public CommandScheduler(ExecutionMode mode) {
+        this.mode = mode;
+        if (mode != ExecutionMode.SHARED) {
+            thread = mode.newThread(this::schedulerThread, "Command Scheduler Thread");
+            thread.start();
+        }
+    }
+
+    /**
+     * @param rate Runs per second, 0 adds the command paused
+     */
+    public Command schedule(String name, double rate, Runnable action) {
+        Command command = new Command(name, action);
+        synchronized (this) {
+            commands.add(command);
+        }
+        command.setRate(rate);
+        return command;
+    }
+
+    /**
+     * Lateness of every command combined
+     */
+    public LatencyHistogram getLateness() {
+        return lateness;
+    }
+
+    /**
+     * Runs the commands that are due
+     * @return Earliest deadline left, Long.MAX_VALUE when nothing is scheduled
+     */
+    private long runDue() {
+        while (running) {
+            Command due = null;
+            long now = System.nanoTime();
+            long next = Long.MAX_VALUE;
+            long late = 0;
+
+            synchronized (this) {
+                for (Command command : commands) {
+                    if (command.period == 0)
+                        continue;
+                    if (command.deadline - now <= 0 && (due == null || command.deadline - due.deadline < 0))
+                        due = command;
+                    else if (next == Long.MAX_VALUE || command.deadline - next < 0)
+                        next = command.deadline;
+                }
+
+                if (due == null)
+                    return next;
+
+                late = now - due.deadline;
+                due.deadline += due.period;
+                if (due.deadline - now <= 0) {
+                    long behind = (now - due.deadline) / due.period + 1;
+                    due.skipped += behind;
+                    due.deadline += behind * due.period;
+                }
+                due.runs++;
+            }
+
+            due.lateness.record(late);
+            lateness.record(late);
+            due.action.run();
+        }
+        return Long.MAX_VALUE;
+    }
+
+    private void schedulerThread() {
+        while (running) {
+            long next = runDue();
+            if (next == Long.MAX_VALUE)
+                LockSupport.park(this);
+            else
+                LockSupport.parkNanos(this, next - System.nanoTime());
+        }
+
+        System.out.println("[CommandScheduler] Scheduler thread dying");
+    }
+
+    private void sharedRun(long runGeneration) {
+        synchronized (this) {
+            if (runGeneration != generation)
+                return;
+            sharedRunning = true;
+        }
+
+        runDue();
+
+        synchronized (this) {
+            sharedRunning = false;
+            scheduleShared();
+        }
+    }
+
+    /* Holds the scheduler lock */
+    private void scheduleShared() {
+        long gen = ++generation;
+        if (pending != null)
+            pending.cancel(false);
+        pending = null;
+
+        long next = Long.MAX_VALUE;
+        for (Command command : commands) {
+            if (command.period != 0 && (next == Long.MAX_VALUE || command.deadline - next < 0))
+                next = command.deadline;
+        }
+        if (running && next != Long.MAX_VALUE)
+            pending = ExecutionMode.getSharedScheduler().schedule(() -> sharedRun(gen),
+                    Math.max(0, next - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    /* Deadlines changed, the sleep has to be recomputed */
+    private void wake() {
+        if (mode != ExecutionMode.SHARED) {
+            LockSupport.unpark(thread);
+            return;
+        }
+
+        synchronized (this) {
+            // A run in progress schedules the next one from the new deadlines when done
+            if (!sharedRunning)
+                scheduleShared();
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join(10000);
+            } catch (InterruptedException ignored) {
+                thread.interrupt();
+            }
+        }
+        synchronized (this) {
+            if (pending != null)
+                pending.cancel(false);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        synchronized (this) {
+            for (Command command : commands) {
+                builder.append(String.format("%-10s %6.2f Hz runs=%d skipped=%d lateness %s%n", command.name,
+                        command.period == 0 ? 0 : (double) TimeUnit.SECONDS.toNanos(1) / command.period,
+                        command.runs, command.skipped, command.lateness.snapshot()));
+            }
+        }
+        return builder.toString();
+    }
+}
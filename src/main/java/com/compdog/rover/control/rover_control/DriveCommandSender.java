@@ -0,0 +1,230 @@
+package com.compdog.rover.control.rover_control;
+
+import com.compdog.rover.control.rover_control.packet.CharacteristicsPacket;
+import com.compdog.rover.control.rover_control.packet.ManualDrivePacket;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends drive commands from a dedicated thread so callers never wait on socket I/O.<br>
+ * Only the latest command is kept, a command that is replaced before it could be sent is
+ * dropped (coalesced) instead of queued. Commands are sent at most at the configured rate.<br>
+ * A sender with a {@link Drivetrain} takes joystick positions instead of commands and runs the kinematics
+ * itself, right before sending, into one reused command. It keeps sending at the full rate while the
+ * drivetrain ramps towards the latest position. The drivetrain is configured whenever the client reports
+ * other characteristics, and starts again from a standstill then and after every reconnect.<br>
+ * Every offer is sent, coalesced or still pending, so produced = sent + coalesced + pending (0 or 1).
+ * Commands the drivetrain sends while ramping without a new position count as ramped instead of sent.
+ */
+public class DriveCommandSender implements AutoCloseable {
+
+    private final AbstractClient client;
+    private final AtomicReference<ManualDrivePacket> latest = new AtomicReference<>(null);
+    private final Thread thread;
+
+    /* Joystick position as two packed floats, NO_INPUT (a NaN pattern floatToIntBits never returns) if none is pending */
+    private static final long NO_INPUT = -1L;
+
+    private final @Nullable Drivetrain drivetrain;
+    private final AtomicLong input = new AtomicLong(NO_INPUT);
+
+    private volatile boolean running;
+    private volatile long minInterval;
+
+    private final AtomicLong produced = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong ramped = new AtomicLong();
+
+    /**
+     * @param client Client the commands are sent through, using its driver connection
+     * @param maxRate Maximum number of commands sent per second
+     */
+    public DriveCommandSender(AbstractClient client, double maxRate) {
+        this(client, maxRate, null);
+    }
+
+    /**
+     * @param client Client the commands are sent through, using its driver connection
+     * @param maxRate Maximum number of commands sent per second
+     * @param drivetrain Kinematics the joystick positions go through, used by the sender thread only from now on
+     */
+    public DriveCommandSender(AbstractClient client, double maxRate, @Nullable Drivetrain drivetrain) {
+        this.client = client;
+        this.drivetrain = drivetrain;
+        setMaxRate(maxRate);
+
+        running = true;
+        thread = ExecutionMode.getDefault().newThread(drivetrain == null ? this::senderThread : this::drivetrainThread,
+                "Drive Command Sender Thread");
+        thread.start();
+    }
+
+    public void setMaxRate(double maxRate) {
+        if (maxRate <= 0)
+            throw new IllegalArgumentException("Rate must be positive");
+        minInterval = (long) (TimeUnit.SECONDS.toNanos(1) / maxRate);
+    }
+
+    public double getMaxRate() {
+        return (double) TimeUnit.SECONDS.toNanos(1) / minInterval;
+    }
+
+    /**
+     * Replaces the pending command, never blocks
+     */
+    public void offer(ManualDrivePacket packet) {
+        if (drivetrain != null)
+            throw new IllegalStateException("Commands of this sender come from its drivetrain");
+
+        produced.incrementAndGet();
+        if (latest.getAndSet(packet) != null) {
+            coalesced.incrementAndGet();
+        } else {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Replaces the pending joystick position of a sender with a drivetrain, never blocks
+     * @param x Turn, -1 to 1
+     * @param y Forward, -1 to 1
+     */
+    public void offer(double x, double y) {
+        if (drivetrain == null)
+            throw new IllegalStateException("Sender has no drivetrain");
+
+        produced.incrementAndGet();
+        long packed = ((long) Float.floatToIntBits((float) x) << 32) | (Float.floatToIntBits((float) y) & 0xFFFFFFFFL);
+        if (input.getAndSet(packed) != NO_INPUT) {
+            coalesced.incrementAndGet();
+        } else {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void senderThread() {
+        long lastSend = System.nanoTime() - minInterval;
+
+        while (running) {
+            ManualDrivePacket packet = latest.getAndSet(null);
+            if (packet == null) {
+                LockSupport.park(this);
+                continue;
+            }
+
+            long wait;
+            while (running && (wait = lastSend + minInterval - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, wait);
+            }
+
+            ManualDrivePacket newer = latest.getAndSet(null);
+            if (newer != null) {
+                coalesced.incrementAndGet();
+                packet = newer;
+            }
+
+            client.SendPacket(packet, true);
+            sent.incrementAndGet();
+            lastSend = System.nanoTime();
+        }
+
+        System.out.println("[DriveCommandSender] Sender thread dying");
+    }
+
+    private void drivetrainThread() {
+        Drivetrain drivetrain = this.drivetrain;
+        ManualDrivePacket command = new ManualDrivePacket(0, 0);
+        CharacteristicsPacket configured = null;
+        long connection = client.getConnections();
+        long position = NO_INPUT;
+        long lastSend = System.nanoTime() - minInterval;
+
+        while (running) {
+            long next = input.getAndSet(NO_INPUT);
+            if (next != NO_INPUT) {
+                position = next;
+            } else if (position == NO_INPUT || drivetrain.isSettled()) {
+                LockSupport.park(this);
+                continue;
+            }
+
+            long wait;
+            while (running && (wait = lastSend + minInterval - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, wait);
+            }
+
+            long newer = input.getAndSet(NO_INPUT);
+            if (newer != NO_INPUT) {
+                if (next != NO_INPUT)
+                    coalesced.incrementAndGet();
+                position = newer;
+            }
+            boolean ramping = next == NO_INPUT && newer == NO_INPUT;
+
+            // Ramp up from a standstill on a new connection instead of jumping back to the old outputs
+            long currentConnection = client.getConnections();
+            if (currentConnection != connection) {
+                drivetrain.reset();
+                connection = currentConnection;
+            }
+
+            // A new instance means the rover reported different characteristics
+            CharacteristicsPacket characteristics = client.getCharacteristics();
+            if (characteristics != configured) {
+                drivetrain.configure(characteristics);
+                drivetrain.reset();
+                configured = characteristics;
+            }
+
+            long now = System.nanoTime();
+            drivetrain.update(Float.intBitsToFloat((int) (position >>> 32)), Float.intBitsToFloat((int) position), now, command);
+            client.SendPacket(command, true);
+            if (ramping)
+                ramped.incrementAndGet();
+            else
+                sent.incrementAndGet();
+            lastSend = now;
+        }
+
+        System.out.println("[DriveCommandSender] Sender thread dying");
+    }
+
+    public @Nullable Drivetrain getDrivetrain() {
+        return drivetrain;
+    }
+
+    public long getProduced() {
+        return produced.get();
+    }
+
+    public long getSent() {
+        return sent.get();
+    }
+
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    /**
+     * @return Commands the drivetrain sent while ramping towards a position that was already sent
+     */
+    public long getRamped() {
+        return ramped.get();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(10000);
+        } catch (InterruptedException ignored) {
+            thread.interrupt();
+        }
+    }
+}
@@ -1,25 +1,169 @@
 package com.compdog.rover.control.rover_control;
 
+import com.compdog.rover.control.rover_control.packet.CharacteristicsPacket;
+import com.compdog.rover.control.rover_control.packet.ManualDrivePacket;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Skid-steer kinematics, turns joystick input into the speed of the left and right wheels.<br>
+ * The stick is arcade mixed (Y drives forward, X turns right), a deadband is cut out of both axes and the
+ * sides are scaled down together when one would exceed full speed, so a turn keeps its curvature.
+ * The outputs then follow the target at a limited rate per second, faster when slowing down.<br>
+ * How much the sides have to differ for a turn depends on the rover: {@link #configure} precomputes it from
+ * the {@link DrivetrainGeometry} of the {@link CharacteristicsPacket}, so every rover turns at the same yaw
+ * rate for the same stick.
+ * Until then the plain arcade mix is used.<br>
+ * Updates allocate nothing, an instance is used by one thread only, the limits may be changed from any thread.
+ */
 public class Drivetrain {
-    public static class DrivetrainResult {
-        final double left;
-        final double right;
 
-        public double getLeft() {
-            return left;
+    public static final double DEADBAND = 0.05;
+    /* Output change per second */
+    public static final double ACCELERATION = 4;
+    public static final double DECELERATION = 8;
+    /* Wheel speed at full output, about 0.5 m/s on 0.12 m wheels, and the yaw rate in rad/s of full stick */
+    public static final double DEFAULT_MAX_WHEEL_RPM = 80;
+    public static final double DEFAULT_MAX_YAW_RATE = 2;
+
+    /* A longer gap between updates, after the outputs sat settled, counts as this long so a new target still ramps */
+    private static final double MAX_STEP = 0.02;
+
+    private volatile double maxWheelRpm = DEFAULT_MAX_WHEEL_RPM;
+    private volatile double maxYawRate = DEFAULT_MAX_YAW_RATE;
+    /* Set by setLimits, the next update recomputes the turn gain */
+    private volatile boolean limitsChanged = false;
+
+    /* Per rover, set by configure */
+    private final DrivetrainGeometry geometry = new DrivetrainGeometry();
+    private double turnGain = 1;
+
+    private double targetLeft = 0;
+    private double targetRight = 0;
+    private double left = 0;
+    private double right = 0;
+    private long lastUpdate = 0;
+    private boolean started = false;
+
+    /**
+     * Precomputes the coefficients of a rover, null or a rover without wheels on both sides or without a wheel
+     * diameter falls back to the plain arcade mix
+     */
+    public void configure(@Nullable CharacteristicsPacket characteristics) {
+        if (!geometry.configure(characteristics) && characteristics != null)
+            System.out.println("[Drivetrain] Rover has no wheels on one side, using the plain arcade mix");
+        updateTurnGain();
+    }
+
+    private void updateTurnGain() {
+        // Cleared first, so limits set while computing are picked up by the next update
+        limitsChanged = false;
+        double maxWheelSpeed = geometry.getWheelSpeed(maxWheelRpm);
+        turnGain = geometry.isValid() && maxWheelSpeed > 0 ?
+                maxYawRate * geometry.getEffectiveTrackWidth() / (2 * maxWheelSpeed) : 1;
+    }
+
+    /**
+     * Computes the next outputs and writes them to the command
+     * @param x Turn, -1 (left) to 1 (right)
+     * @param y Forward, -1 to 1
+     * @param now Time of the update from {@link System#nanoTime()}
+     */
+    public void update(double x, double y, long now, ManualDrivePacket command) {
+        if (limitsChanged)
+            updateTurnGain();
+
+        double forward = applyDeadband(y);
+        double turn = applyDeadband(x) * turnGain;
+
+        double targetLeft = forward + turn;
+        double targetRight = forward - turn;
+        double max = Math.max(Math.abs(targetLeft), Math.abs(targetRight));
+        if (max > 1) {
+            targetLeft /= max;
+            targetRight /= max;
         }
+        this.targetLeft = targetLeft;
+        this.targetRight = targetRight;
 
-        public double getRight() {
-            return right;
+        double dt = started ? Math.min((now - lastUpdate) / (double) TimeUnit.SECONDS.toNanos(1), MAX_STEP) : MAX_STEP;
+        started = true;
+        lastUpdate = now;
+        if (dt > 0) {
+            double accelerate = ACCELERATION * dt;
+            double decelerate = DECELERATION * dt;
+            left = slew(left, targetLeft, accelerate, decelerate);
+            right = slew(right, targetRight, accelerate, decelerate);
         }
 
-        public DrivetrainResult(double left, double right) {
-            this.left = left;
-            this.right = right;
+        command.left = left;
+        command.right = right;
+    }
+
+    private static double applyDeadband(double value) {
+        if (Double.isNaN(value))
+            return 0;
+        double magnitude = Math.min(Math.abs(value), 1);
+        if (magnitude <= DEADBAND)
+            return 0;
+        return Math.copySign((magnitude - DEADBAND) / (1 - DEADBAND), value);
+    }
+
+    /* Slowing down (towards zero) uses the deceleration, a change of direction stops at zero first */
+    private static double slew(double current, double target, double accelerate, double decelerate) {
+        if (current == target)
+            return current;
+
+        boolean sameDirection = target != 0 && (target > 0) == (current > 0);
+        if (current != 0 && (!sameDirection || Math.abs(target) < Math.abs(current))) {
+            double floor = sameDirection ? Math.abs(target) : 0;
+            return Math.max(floor, Math.abs(current) - decelerate) * Math.signum(current);
         }
+        return Math.min(Math.abs(target), Math.abs(current) + accelerate) * Math.signum(target);
+    }
+
+    /**
+     * @return True when the outputs reached the target of the last update
+     */
+    public boolean isSettled() {
+        return left == targetLeft && right == targetRight;
+    }
+
+    /**
+     * Stops immediately, for a new connection
+     */
+    public void reset() {
+        left = right = targetLeft = targetRight = 0;
+        started = false;
+    }
+
+    public double getLeft() {
+        return left;
+    }
+
+    public double getRight() {
+        return right;
+    }
+
+    public double getMaxWheelRpm() {
+        return maxWheelRpm;
+    }
+
+    public double getMaxYawRate() {
+        return maxYawRate;
     }
 
-    public static DrivetrainResult Drive(double left, double right) {
-        return new DrivetrainResult(left, right);
+    /**
+     * Takes effect with the next update
+     * @param maxWheelRpm Wheel speed at full output, the same the {@link Odometry} of the rover assumes
+     * @param maxYawRate Yaw rate in rad/s of the stick fully to one side
+     */
+    public void setLimits(double maxWheelRpm, double maxYawRate) {
+        if (maxWheelRpm <= 0 || maxYawRate <= 0)
+            throw new IllegalArgumentException("Limits must be positive");
+        this.maxWheelRpm = maxWheelRpm;
+        this.maxYawRate = maxYawRate;
+        limitsChanged = true;
     }
 }
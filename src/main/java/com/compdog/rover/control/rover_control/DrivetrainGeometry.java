@@ -0,0 +1,111 @@
+package com.compdog.rover.control.rover_control;
+
+import com.compdog.rover.control.rover_control.packet.CharacteristicsPacket;
+import com.compdog.rover.control.rover_control.util.Vector3View;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Skid-steer geometry of a rover, derived once from its {@link CharacteristicsPacket}.<br>
+ * Wheels left of the center line (positive y) form the left side, wheel i belongs to motor i.
+ * The track width is the distance between the mean y of both sides. Wheels away from the turning axis skid
+ * sideways while turning, which the sides have to overcome: the effective track width widens the track by
+ * the square of wheelbase over track, the usual approximation for skid-steer rovers.
+ * Not thread safe, each user keeps its own instance.
+ */
+public class DrivetrainGeometry {
+
+    /* Side of each wheel, 1 left, -1 right, 0 on the center line */
+    private final int[] sides = new int[CharacteristicsPacket.WHEELS];
+    private int leftWheels = 0;
+    private int rightWheels = 0;
+
+    private double trackWidth = 0;
+    private double wheelbase = 0;
+    private double effectiveTrackWidth = 0;
+    private double wheelCircumference = 0;
+
+    /**
+     * @return true if the rover has wheels on both sides, false leaves the geometry invalid
+     */
+    public boolean configure(@Nullable CharacteristicsPacket characteristics) {
+        leftWheels = rightWheels = 0;
+        trackWidth = wheelbase = effectiveTrackWidth = wheelCircumference = 0;
+        if (characteristics == null)
+            return false;
+
+        double leftY = 0, rightY = 0;
+        double minX = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < CharacteristicsPacket.WHEELS; i++) {
+            double x = characteristics.wheelLocations[i * Vector3View.SIZE];
+            double y = characteristics.wheelLocations[i * Vector3View.SIZE + 1];
+            if (y > 0) {
+                sides[i] = 1;
+                leftY += y;
+                leftWheels++;
+            } else if (y < 0) {
+                sides[i] = -1;
+                rightY += y;
+                rightWheels++;
+            } else {
+                sides[i] = 0;
+            }
+            minX = Math.min(minX, x);
+            maxX = Math.max(maxX, x);
+        }
+
+        wheelCircumference = Math.PI * Math.max(0, characteristics.wheelDiameter);
+        if (!isValid())
+            return false;
+
+        trackWidth = leftY / leftWheels - rightY / rightWheels;
+        wheelbase = maxX - minX;
+        double ratio = wheelbase / trackWidth;
+        effectiveTrackWidth = trackWidth * (1 + ratio * ratio);
+        return true;
+    }
+
+    /**
+     * @return true if the rover has wheels on both sides
+     */
+    public boolean isValid() {
+        return leftWheels > 0 && rightWheels > 0;
+    }
+
+    /**
+     * @return 1 for a left wheel, -1 for a right wheel, 0 for a wheel on the center line
+     */
+    public int getSide(int wheel) {
+        return sides[wheel];
+    }
+
+    public int getLeftWheels() {
+        return leftWheels;
+    }
+
+    public int getRightWheels() {
+        return rightWheels;
+    }
+
+    public double getTrackWidth() {
+        return trackWidth;
+    }
+
+    public double getWheelbase() {
+        return wheelbase;
+    }
+
+    public double getEffectiveTrackWidth() {
+        return effectiveTrackWidth;
+    }
+
+    public double getWheelCircumference() {
+        return wheelCircumference;
+    }
+
+    /**
+     * @return Surface speed in m/s of the wheels turning at the given revolutions per minute, 0 without a diameter
+     */
+    public double getWheelSpeed(double rpm) {
+        return rpm / 60 * wheelCircumference;
+    }
+}
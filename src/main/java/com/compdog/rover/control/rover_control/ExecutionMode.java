@@ -0,0 +1,243 @@
+package com.compdog.rover.control.rover_control;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.StringJoiner;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * Decides what runs the loops of clients and controllers.<br>
+ * PLATFORM gives every loop its own platform thread, VIRTUAL runs them on virtual threads when the runtime
+ * has them (Java 21+, otherwise it falls back to platform threads) and SHARED runs periodic work on one
+ * scheduler thread shared by everything, only loops that block on sockets keep a thread of their own.
+ */
+public enum ExecutionMode {
+    PLATFORM,
+    VIRTUAL,
+    SHARED;
+
+    private static volatile ExecutionMode defaultMode = PLATFORM;
+
+    private static final Method OF_VIRTUAL;
+    private static final Method BUILDER_NAME;
+    private static final Method BUILDER_UNSTARTED;
+
+    static {
+        /* Looked up reflectively so the build can keep targeting older releases */
+        Method ofVirtual = null, name = null, unstarted = null;
+        try {
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            name = builder.getMethod("name", String.class);
+            unstarted = builder.getMethod("unstarted", Runnable.class);
+        } catch (ReflectiveOperationException ignored) {
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = name;
+        BUILDER_UNSTARTED = unstarted;
+    }
+
+    private static final class SharedScheduler {
+        static final ScheduledThreadPoolExecutor INSTANCE = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "Shared Scheduler Thread");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        static {
+            INSTANCE.setRemoveOnCancelPolicy(true);
+        }
+    }
+
+    /**
+     * Handle of work started by {@link #schedule}
+     */
+    public interface Task {
+        /**
+         * Stops further runs, a run in progress completes
+         */
+        void cancel();
+    }
+
+    public static ExecutionMode getDefault() {
+        return defaultMode;
+    }
+
+    public static void setDefault(ExecutionMode mode) {
+        if (mode == VIRTUAL && !isVirtualAvailable())
+            System.out.println("[ExecutionMode] Virtual threads need Java 21, using platform threads");
+        defaultMode = mode;
+    }
+
+    /**
+     * @param name platform, virtual or shared, in any case
+     * @throws IllegalArgumentException listing the accepted names when the name is none of them
+     */
+    public static ExecutionMode parse(String name) {
+        String upper = name.toUpperCase(Locale.ROOT);
+        for (ExecutionMode mode : values()) {
+            if (mode.name().equals(upper))
+                return mode;
+        }
+
+        StringJoiner accepted = new StringJoiner(", ");
+        for (ExecutionMode mode : values()) {
+            accepted.add(mode.name().toLowerCase(Locale.ROOT));
+        }
+        throw new IllegalArgumentException("Unknown execution mode '" + name + "', expected one of " + accepted);
+    }
+
+    public static boolean isVirtualAvailable() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * One daemon thread running the periodic work of every {@link #SHARED} user
+     */
+    public static ScheduledExecutorService getSharedScheduler() {
+        return SharedScheduler.INSTANCE;
+    }
+
+    /**
+     * Creates an unstarted thread for a loop that blocks, virtual in {@link #VIRTUAL} mode and a daemon
+     * platform thread otherwise
+     */
+    public Thread newThread(Runnable task, String name) {
+        if (this == VIRTUAL && OF_VIRTUAL != null) {
+            try {
+                Object builder = OF_VIRTUAL.invoke(null);
+                builder = BUILDER_NAME.invoke(builder, name);
+                return (Thread) BUILDER_UNSTARTED.invoke(builder, task);
+            } catch (ReflectiveOperationException e) {
+                System.err.println("[ExecutionMode] Could not create virtual thread " + e.getMessage());
+            }
+        }
+
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Runs the task at a fixed rate until cancelled, on the shared scheduler in {@link #SHARED} mode and
+     * on a thread of its own otherwise. Runs never overlap, a run that takes too long delays the next one.
+     * @param name Name of the thread, when one is started
+     */
+    public Task schedule(Runnable task, long initialDelay, long period, TimeUnit unit, String name) {
+        if (this == SHARED) {
+            Future<?> future = SharedScheduler.INSTANCE.scheduleAtFixedRate(task, initialDelay, period, unit);
+            return () -> future.cancel(false);
+        }
+
+        long nanos = unit.toNanos(period);
+        LoopTask loop = new LoopTask(() -> {
+            task.run();
+            return nanos;
+        }, unit.toNanos(initialDelay), true);
+        loop.thread = newThread(loop, name);
+        loop.thread.start();
+        return loop;
+    }
+
+    /**
+     * Runs the task once after the initial delay and then again after every delay it returns, until cancelled.
+     * Meant for deadlines that keep moving, the task runs when one may have passed instead of polling for it.
+     * Like {@link #schedule} it runs on the shared scheduler in {@link #SHARED} mode and on a thread of its own
+     * otherwise, runs never overlap.
+     * @param task Returns the nanoseconds from the end of its run to the next one
+     * @param name Name of the thread, when one is started
+     */
+    public Task scheduleRearming(LongSupplier task, long initialDelay, TimeUnit unit, String name) {
+        if (this == SHARED) {
+            SharedTask shared = new SharedTask(task);
+            shared.arm(unit.toNanos(initialDelay));
+            return shared;
+        }
+
+        LoopTask loop = new LoopTask(task, unit.toNanos(initialDelay), false);
+        loop.thread = newThread(loop, name);
+        loop.thread.start();
+        return loop;
+    }
+
+    private static final class SharedTask implements Runnable, Task {
+        private final LongSupplier task;
+        private volatile boolean cancelled = false;
+        private volatile @Nullable Future<?> future = null;
+
+        SharedTask(LongSupplier task) {
+            this.task = task;
+        }
+
+        void arm(long delay) {
+            Future<?> armed = SharedScheduler.INSTANCE.schedule(this, delay, TimeUnit.NANOSECONDS);
+            future = armed;
+            // A cancel that came before the future was stored could not stop it
+            if (cancelled)
+                armed.cancel(false);
+        }
+
+        @Override
+        public void run() {
+            if (cancelled)
+                return;
+
+            long delay = task.getAsLong();
+            if (!cancelled)
+                arm(delay);
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            Future<?> future = this.future;
+            if (future != null)
+                future.cancel(false);
+        }
+    }
+
+    private static final class LoopTask implements Runnable, Task {
+        private final LongSupplier task;
+        private final long initialDelay;
+        /* Fixed rate runs are spaced from the previous start, rearming ones from the end of the run */
+        private final boolean fixedRate;
+        private volatile boolean cancelled = false;
+        private Thread thread;
+
+        LoopTask(LongSupplier task, long initialDelay, boolean fixedRate) {
+            this.task = task;
+            this.initialDelay = initialDelay;
+            this.fixedRate = fixedRate;
+        }
+
+        @Override
+        public void run() {
+            long next = System.nanoTime() + initialDelay;
+            while (!cancelled) {
+                long wait;
+                while (!cancelled && (wait = next - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(this, wait);
+                }
+                if (cancelled)
+                    break;
+
+                long delay = task.getAsLong();
+                next = (fixedRate ? next : System.nanoTime()) + delay;
+            }
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            LockSupport.unpark(thread);
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.compdog.rover.control.rover_control;
+
+import com.compdog.rover.control.rover_control.packet.DrivetrainPacket;
+import com.compdog.rover.control.rover_control.packet.HealthPacket;
+import com.compdog.rover.control.rover_control.packet.ManualDrivePacket;
+import com.compdog.rover.control.rover_control.packet.WhiskersPacket;
+import com.compdog.rover.control.rover_control.util.LinkQuality;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Owns the connections to several rovers.<br>
+ * With the nio engine all rovers share a fixed number of {@link ClientEventLoop event loops}, so adding
+ * a rover does not add threads. The blocking engine gives every rover its own {@link Client}, running
+ * on the threads of the default {@link ExecutionMode}. Drive commands go to the currently selected rover.
+ */
+public class FleetManager {
+
+    public static class Rover {
+        private final String name;
+        private final AbstractClient client;
+        /* Event loop of a nio client, -1 for a blocking client */
+        private final int loopIndex;
+
+        private volatile boolean connected = false;
+        private volatile long avg = 0;
+        private volatile long gap = 0;
+        private volatile double quality = 0;
+        private volatile long packetsReceived = 0;
+
+        private Rover(String name, AbstractClient client, int loopIndex) {
+            this.name = name;
+            this.client = client;
+            this.loopIndex = loopIndex;
+
+            client.addUpdateListener(new AbstractClient.UpdatedListener() {
+                @Override
+                public void updated(DrivetrainPacket packet) {
+                    packetsReceived++;
+                }
+
+                @Override
+                public void updated(HealthPacket packet) {
+                    packetsReceived++;
+                }
+
+                @Override
+                public void updated(WhiskersPacket packet) {
+                    packetsReceived++;
+                }
+            });
+
+            client.addConnectionUpdateListener(new AbstractClient.ConnectionUpdatedListener() {
+                @Override
+                public void updated(boolean status, long avg, long gap) {
+                    if (status) {
+                        connected = client.IsConnected();
+                    } else {
+                        Rover.this.avg = avg;
+                        Rover.this.gap = gap;
+                        if (client.getMetrics().getRoundTrip().getCount() == 0)
+                            quality = LinkQuality.Score(avg, gap);
+                    }
+                }
+
+                @Override
+                public void roundTripUpdated(long rtt, long jitter) {
+                    quality = LinkQuality.ScoreRoundTrip(rtt / 1e6, jitter / 1e6);
+                }
+            });
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public AbstractClient getClient() {
+            return client;
+        }
+
+        public boolean isConnected() {
+            return connected;
+        }
+
+        public long getAverageInterval() {
+            return avg;
+        }
+
+        public long getIntervalGap() {
+            return gap;
+        }
+
+        public double getQuality() {
+            return connected ? quality : 0;
+        }
+
+        public long getPacketsReceived() {
+            return packetsReceived;
+        }
+    }
+
+    private final ClientEventLoop[] loops;
+    private final int[] loopLoad;
+    private final List<Rover> rovers = new CopyOnWriteArrayList<>();
+    private volatile @Nullable Rover selected = null;
+    private boolean started = false;
+
+    /**
+     * Fleet of blocking {@link Client clients}, one socket thread per rover
+     */
+    public FleetManager() {
+        loops = new ClientEventLoop[0];
+        loopLoad = new int[0];
+    }
+
+    /**
+     * Fleet of {@link NioClient nio clients}
+     * @param ioThreads Number of event loop threads shared by all rovers
+     */
+    public FleetManager(int ioThreads) throws IOException {
+        if (ioThreads < 1)
+            throw new IllegalArgumentException("At least one I/O thread is required");
+
+        loops = new ClientEventLoop[ioThreads];
+        loopLoad = new int[ioThreads];
+        for (int i = 0; i < ioThreads; i++) {
+            loops[i] = new ClientEventLoop("Fleet Event Loop " + i);
+        }
+    }
+
+    public synchronized Rover addRover(String name, String host, int port) {
+        Rover rover;
+        if (loops.length == 0) {
+            rover = new Rover(name, new Client(host, port), -1);
+        } else {
+            int index = 0;
+            for (int i = 1; i < loops.length; i++) {
+                if (loopLoad[i] < loopLoad[index])
+                    index = i;
+            }
+            loopLoad[index]++;
+            rover = new Rover(name, new NioClient(host, port, loops[index]), index);
+        }
+        rovers.add(rover);
+
+        if (selected == null)
+            selected = rover;
+
+        if (started)
+            rover.client.Start();
+
+        return rover;
+    }
+
+    public synchronized void removeRover(Rover rover) {
+        if (!rovers.remove(rover))
+            return;
+
+        if (rover.loopIndex >= 0)
+            loopLoad[rover.loopIndex]--;
+        rover.client.Dispose();
+
+        if (selected == rover)
+            selected = rovers.isEmpty() ? null : rovers.get(0);
+    }
+
+    public List<Rover> getRovers() {
+        return Collections.unmodifiableList(rovers);
+    }
+
+    public @Nullable Rover getSelected() {
+        return selected;
+    }
+
+    public void select(Rover rover) {
+        if (!rovers.contains(rover))
+            throw new IllegalArgumentException("Rover " + rover.getName() + " is not part of this fleet");
+        selected = rover;
+    }
+
+    public synchronized void Start() {
+        started = true;
+        for (Rover rover : rovers) {
+            rover.client.Start();
+        }
+    }
+
+    public synchronized void Dispose() {
+        started = false;
+        for (Rover rover : rovers) {
+            rover.client.Dispose();
+        }
+        rovers.clear();
+        selected = null;
+
+        for (ClientEventLoop loop : loops) {
+            loop.close();
+        }
+    }
+
+    /**
+     * Sends the command to the selected rover, does nothing if no rover is selected
+     */
+    public void SendPacket(ManualDrivePacket packet, boolean useDriver) {
+        Rover rover = selected;
+        if (rover != null)
+            rover.client.SendPacket(packet, useDriver);
+    }
+
+    /**
+     * Pings every rover, answers update their round trip times and quality
+     */
+    public void Ping() {
+        for (Rover rover : rovers) {
+            rover.client.Ping();
+        }
+    }
+
+    public int getConnectedCount() {
+        int count = 0;
+        for (Rover rover : rovers) {
+            if (rover.isConnected())
+                count++;
+        }
+        return count;
+    }
+
+    public double getAverageQuality() {
+        if (rovers.isEmpty())
+            return 0;
+
+        double sum = 0;
+        for (Rover rover : rovers) {
+            sum += rover.getQuality();
+        }
+        return sum / rovers.size();
+    }
+
+    /**
+     * @return Mean of the latest round trip of every connected rover in nanoseconds
+     */
+    public long getAverageRoundTrip() {
+        long sum = 0;
+        int count = 0;
+        for (Rover rover : rovers) {
+            if (rover.isConnected()) {
+                sum += rover.client.getMetrics().getLastRoundTrip();
+                count++;
+            }
+        }
+        return count == 0 ? 0 : sum / count;
+    }
+
+    public long getPacketsReceived() {
+        long sum = 0;
+        for (Rover rover : rovers) {
+            sum += rover.getPacketsReceived();
+        }
+        return sum;
+    }
+}
@@ -11,7 +11,11 @@ import java.util.ArrayList;
 import java.util.EventListener;
 import java.util.List;
 
-public class Joystick extends Pane {
+/**
+ * Mouse driven joystick, the position can be read from any thread.<br>
+ * Mouse events only update the position, it is drawn by the {@link RenderLoop}.
+ */
+public class Joystick extends Pane implements RenderLoop.Renderable {
 
     public interface UpdatedListener extends EventListener {
         void updated(boolean isOneShot);
@@ -19,13 +23,14 @@ public class Joystick extends Pane {
 
     private final Canvas canvas;
 
-    private double X = 0;
-    private double Y = 0;
+    private volatile double X = 0;
+    private volatile double Y = 0;
 
     private double tempX = 0;
     private double tempY = 0;
 
     private boolean down = false;
+    private boolean dirty = true;
 
     public double getX(){
         return  X;
@@ -62,7 +67,7 @@ public class Joystick extends Pane {
                 Y = tempY;
             }
 
-            draw();
+            dirty = true;
 
             dispatchUpdatedEvent(false);
         });
@@ -74,7 +79,7 @@ public class Joystick extends Pane {
             X=tempX;
             Y=tempY;
             down = true;
-            draw();
+            dirty = true;
 
             dispatchUpdatedEvent(true);
         });
@@ -85,7 +90,7 @@ public class Joystick extends Pane {
             X=0;
             Y=0;
             down = false;
-            draw();
+            dirty = true;
 
             dispatchUpdatedEvent(true);
         });
@@ -100,12 +105,22 @@ public class Joystick extends Pane {
                 Y = tempY;
             }
 
-            draw();
+            dirty = true;
 
             dispatchUpdatedEvent(false);
         });
     }
 
+    @Override
+    public boolean render() {
+        if (!dirty)
+            return false;
+
+        dirty = false;
+        draw();
+        return true;
+    }
+
     private void draw(){
         GraphicsContext gc = canvas.getGraphicsContext2D();
 
@@ -130,6 +145,6 @@ public class Joystick extends Pane {
     @Override
     protected void layoutChildren() {
         super.layoutChildren();
-        draw();
+        dirty = true;
     }
 }
@@ -1,5 +1,7 @@
 package com.compdog.rover.control.rover_control;
 
+import com.compdog.rover.control.rover_control.recorder.FlightRecorder;
+import com.compdog.rover.control.rover_control.sim.RoverSimulator;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
@@ -7,16 +9,57 @@ import javafx.stage.Stage;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
+import java.nio.file.Path;
 
 public class MainApplication extends Application {
 
-    private @Nullable Client client;
+    private static final String ROVER_ARGUMENT = "--rover=";
+    private static final String SIMULATOR_ARGUMENT = "--simulator";
+    private static final String RECORD_ARGUMENT = "--record=";
+    private static final String REPLAY_ARGUMENT = "--replay=";
+    private static final String REPLAY_SPEED_ARGUMENT = "--replay-speed=";
+    private static final String THREADS_ARGUMENT = "--threads=";
+    private static final String ENGINE_ARGUMENT = "--engine=";
+    private static final String IO_THREADS_ARGUMENT = "--io-threads=";
+    private static final String ENGINE_BLOCKING = "blocking";
+    private static final String ENGINE_NIO = "nio";
+    private static final String HEALTH_RATE_ARGUMENT = "--health-rate=";
+    private static final String KEEPALIVE_RATE_ARGUMENT = "--keepalive-rate=";
+    private static final String DRIVE_REFRESH_RATE_ARGUMENT = "--drive-refresh-rate=";
+    private static final String HEALTH_STREAM_ARGUMENT = "--health-stream=";
+
+    /* 32 segments of 8 MiB, about 4 million records */
+    private static final int RECORD_SEGMENTS = 32;
+    private static final int RECORD_SEGMENT_SIZE = 8 * 1024 * 1024;
+
+    private @Nullable FleetManager fleet;
+    private @Nullable RoverSimulator simulator;
+    private @Nullable FlightRecorder recorder;
+    private @Nullable ReplayClient replay;
     private MainController controller;
 
     @Override
     public void start(Stage stage) throws IOException {
+        /*
+         * --threads=platform, virtual or shared, the controller starts its heartbeat when loaded.
+         * --engine=blocking (default) connects every rover through its own Client on those threads,
+         * --engine=nio shares --io-threads=1 event loops between all rovers instead.
+         */
+        String engine = ENGINE_BLOCKING;
+        int ioThreads = 1;
+        for (String argument : getParameters().getRaw()) {
+            if (argument.startsWith(THREADS_ARGUMENT))
+                ExecutionMode.setDefault(ExecutionMode.parse(argument.substring(THREADS_ARGUMENT.length())));
+            else if (argument.startsWith(ENGINE_ARGUMENT))
+                engine = argument.substring(ENGINE_ARGUMENT.length());
+            else if (argument.startsWith(IO_THREADS_ARGUMENT))
+                ioThreads = Integer.parseInt(argument.substring(IO_THREADS_ARGUMENT.length()));
+        }
+        if (!engine.equals(ENGINE_BLOCKING) && !engine.equals(ENGINE_NIO))
+            throw new IllegalArgumentException("Unknown engine " + engine + ", expected " + ENGINE_BLOCKING + " or " + ENGINE_NIO);
+
         FXMLLoader fxmlLoader = new FXMLLoader(MainApplication.class.getResource("main-view.fxml"));
-        Scene scene = new Scene(fxmlLoader.load(), 693, 410);
+        Scene scene = new Scene(fxmlLoader.load(), 1113, 410);
         stage.setTitle("Rover Control");
         stage.setScene(scene);
         stage.setResizable(false);
@@ -24,21 +67,102 @@ public class MainApplication extends Application {
 
         controller = fxmlLoader.getController();
 
-        client = new Client("10.67.31.2", 5001);
-        client.Start();
-        controller.setClient(client);
+        fleet = engine.equals(ENGINE_NIO) ? new FleetManager(ioThreads) : new FleetManager();
+
+        /*
+         * Rovers are given as --rover=name@host:port, --simulator adds a local simulated rover
+         * and --record=directory records the telemetry of the selected rover.
+         * --replay=directory shows a recording instead, --replay-speed=10 or max changes its speed.
+         * --health-rate, --keepalive-rate and --drive-refresh-rate set the periodic commands per second.
+         * --health-stream=interval,heartbeat in milliseconds configures pushed health, 0 polls instead.
+         */
+        double replaySpeed = 1;
+        double healthRate = MainController.HEALTH_RATE;
+        double keepAliveRate = MainController.KEEPALIVE_RATE;
+        double driveRefreshRate = MainController.DRIVE_REFRESH_RATE;
+        int healthStreamInterval = MainController.HEALTH_STREAM_INTERVAL;
+        int healthStreamHeartbeat = MainController.HEALTH_STREAM_HEARTBEAT;
+        for (String argument : getParameters().getRaw()) {
+            if (argument.startsWith(ROVER_ARGUMENT)) {
+                String value = argument.substring(ROVER_ARGUMENT.length());
+                int at = value.indexOf('@');
+                int colon = value.lastIndexOf(':');
+                String name = at < 0 ? value : value.substring(0, at);
+                String host = colon < 0 ? value.substring(at + 1) : value.substring(at + 1, colon);
+                int port = colon < 0 ? 5001 : Integer.parseInt(value.substring(colon + 1));
+                fleet.addRover(name, host, port);
+            } else if (argument.equals(SIMULATOR_ARGUMENT) && simulator == null) {
+                simulator = new RoverSimulator(0);
+                fleet.addRover("Simulator", "127.0.0.1", simulator.getPort());
+            } else if (argument.startsWith(RECORD_ARGUMENT) && recorder == null) {
+                recorder = new FlightRecorder(Path.of(argument.substring(RECORD_ARGUMENT.length())),
+                        RECORD_SEGMENTS, RECORD_SEGMENT_SIZE);
+            } else if (argument.startsWith(REPLAY_ARGUMENT) && replay == null) {
+                replay = new ReplayClient(Path.of(argument.substring(REPLAY_ARGUMENT.length())));
+            } else if (argument.startsWith(REPLAY_SPEED_ARGUMENT)) {
+                String value = argument.substring(REPLAY_SPEED_ARGUMENT.length());
+                replaySpeed = value.equals("max") ? ReplayClient.SPEED_MAX : Double.parseDouble(value);
+            } else if (argument.startsWith(HEALTH_RATE_ARGUMENT)) {
+                healthRate = Double.parseDouble(argument.substring(HEALTH_RATE_ARGUMENT.length()));
+            } else if (argument.startsWith(KEEPALIVE_RATE_ARGUMENT)) {
+                keepAliveRate = Double.parseDouble(argument.substring(KEEPALIVE_RATE_ARGUMENT.length()));
+            } else if (argument.startsWith(DRIVE_REFRESH_RATE_ARGUMENT)) {
+                driveRefreshRate = Double.parseDouble(argument.substring(DRIVE_REFRESH_RATE_ARGUMENT.length()));
+            } else if (argument.startsWith(HEALTH_STREAM_ARGUMENT)) {
+                String[] values = argument.substring(HEALTH_STREAM_ARGUMENT.length()).split(",");
+                healthStreamInterval = Integer.parseInt(values[0]);
+                if (values.length > 1)
+                    healthStreamHeartbeat = Integer.parseInt(values[1]);
+            }
+        }
+
+        if (fleet.getRovers().isEmpty() && replay == null)
+            fleet.addRover("Rover", "10.67.31.2", 5001);
+
+        fleet.Start();
+
+        FleetManager.Rover rover = fleet.getSelected();
+        if (replay != null) {
+            replay.setSpeed(replaySpeed);
+            controller.setClient(replay);
+            replay.Start();
+        } else if (rover != null) {
+            rover.getClient().setRecorder(recorder);
+            controller.setClient(rover.getClient());
+        }
+
+        if (rover != null && replay == null)
+            rover.getClient().setHealthStreaming(healthStreamInterval, healthStreamHeartbeat);
+
+        if (replay != null || rover != null) {
+            controller.getHealthPoll().setRate(healthRate);
+            controller.getKeepAlive().setRate(keepAliveRate);
+            controller.getDriveRefresh().setRate(driveRefreshRate);
+        }
     }
 
     @Override
     public void stop() {
         controller.deinitialize();
 
-        if (client != null) {
-            client.Dispose();
+        if (fleet != null) {
+            fleet.Dispose();
+        }
+
+        if (replay != null) {
+            replay.Dispose();
+        }
+
+        if (simulator != null) {
+            simulator.close();
+        }
+
+        if (recorder != null) {
+            recorder.close();
         }
     }
 
     public static void main(String[] args) {
-        launch();
+        launch(args);
     }
-}
\ No newline at end of file
+}
@@ -2,19 +2,13 @@ package com.compdog.rover.control.rover_control;
 
 import com.compdog.rover.control.rover_control.packet.DrivetrainPacket;
 import com.compdog.rover.control.rover_control.packet.HealthPacket;
-import com.compdog.rover.control.rover_control.packet.ManualDrivePacket;
 import com.compdog.rover.control.rover_control.packet.WhiskersPacket;
-import com.compdog.rover.control.rover_control.util.CurveUtils;
-import javafx.application.Platform;
+import com.compdog.rover.control.rover_control.util.LinkQuality;
+import com.compdog.rover.control.rover_control.util.TimeSeriesRing;
 import javafx.fxml.FXML;
 import javafx.scene.control.Label;
 import javafx.scene.paint.Color;
 import javafx.scene.paint.Paint;
-import org.apache.commons.lang3.time.StopWatch;
-
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.concurrent.TimeUnit;
 
 public class MainController {
     @FXML
@@ -32,6 +26,15 @@ public class MainController {
     @FXML
     private MotorPanel m5;
 
+    @FXML
+    private StripChart motorChart;
+    @FXML
+    private StripChart whiskerChart;
+    @FXML
+    private StripChart tempChart;
+    @FXML
+    private StripChart memoryChart;
+
     @FXML
     private Label coreTemp;
 
@@ -44,11 +47,100 @@ public class MainController {
     @FXML
     private Label quality;
 
-    private Client client;
+    @FXML
+    private Label pose;
+
+    /* Joystick commands faster than this are coalesced, only the latest one is sent */
+    private static final double MAX_DRIVE_RATE = 50;
 
-    private final StopWatch lastDrive = StopWatch.createStarted();
-    private final StopWatch lastHealth = StopWatch.createStarted();
-    private Timer heartbeatTimer;
+    /* Default rates of the periodic commands, per second */
+    public static final double HEALTH_RATE = 2;
+    public static final double KEEPALIVE_RATE = 4;
+    public static final double DRIVE_REFRESH_RATE = 10;
+
+    /* Pushed health, checked every interval and sent when changed or after the heartbeat, in milliseconds */
+    public static final int HEALTH_STREAM_INTERVAL = 100;
+    public static final int HEALTH_STREAM_HEARTBEAT = 1000;
+
+    /* Telemetry queued for the charts and panels, the oldest is dropped when they fall this far behind */
+    private static final int TELEMETRY_QUEUE = 256;
+
+    private AbstractClient client;
+    private volatile DriveCommandSender driveSender;
+
+    private CommandScheduler scheduler;
+    private CommandScheduler.Command healthPoll;
+    private CommandScheduler.Command keepAlive;
+    private CommandScheduler.Command driveRefresh;
+    private AsyncUpdateListener telemetryListener;
+    private final RenderLoop renderLoop = new RenderLoop();
+    private final UiUpdateAggregator uiUpdates = new UiUpdateAggregator();
+
+    private class HealthUpdate extends UiUpdateAggregator.Update {
+        private double temp;
+        private long memoryUsed;
+        private long memoryTotal;
+
+        synchronized void set(HealthPacket packet) {
+            temp = packet.temp;
+            memoryUsed = packet.memoryUsed;
+            memoryTotal = packet.memoryTotal;
+            publish();
+        }
+
+        @Override
+        protected void apply() {
+            coreTemp.setText(Math.round(temp * 100.0) / 100.0 + " C");
+            memStatus.setText(String.format("%.2f kB / %.2f kB (%d%%)", memoryUsed / 1024.0, memoryTotal / 1024.0, (memoryUsed * 100 / memoryTotal)));
+        }
+    }
+
+    private class ConnectionUpdate extends UiUpdateAggregator.Update {
+        private boolean connected;
+
+        synchronized void set(boolean connected) {
+            this.connected = connected;
+            publish();
+        }
+
+        @Override
+        protected void apply() {
+            connection.setText(connected ? "Connected" : "Not Connected");
+            connection.setTextFill(connected ? connectedPaint : notConnectedPaint);
+        }
+    }
+
+    private class QualityUpdate extends UiUpdateAggregator.Update {
+        private double value;
+
+        synchronized void set(double value) {
+            this.value = value;
+            publish();
+        }
+
+        @Override
+        protected void apply() {
+            quality.setText("Quality: " + Math.round(value));
+        }
+    }
+
+    private static final Color[] SERIES_COLORS = {
+            Color.RED, Color.ORANGE, Color.YELLOW, Color.LIME, Color.DEEPSKYBLUE, Color.VIOLET
+    };
+
+    private MotorPanel[] motorPanels;
+    private final TimeSeriesRing[] motorSeries = new TimeSeriesRing[DrivetrainPacket.MOTORS];
+    private final TimeSeriesRing[] whiskerSeries = new TimeSeriesRing[WhiskersPacket.SENSORS];
+    private TimeSeriesRing tempSeries;
+    private TimeSeriesRing memorySeries;
+
+    private HealthUpdate healthUpdate;
+    private ConnectionUpdate connectionUpdate;
+    private QualityUpdate qualityUpdate;
+
+    /* Read from the odometry once per frame, redrawn when a newer pose was published */
+    private final Odometry.Pose shownPose = new Odometry.Pose();
+    private long shownPosition = -1;
 
     private Paint notConnectedPaint;
     private Paint connectedPaint;
@@ -56,82 +148,172 @@ public class MainController {
     @FXML
     public void initialize() {
         joystick.addUpdateListener(isOneShot -> {
-                    if (client == null) return;
+                    if (driveSender == null) return;
                     if (isOneShot) {
-                        Drivetrain.DrivetrainResult drive = Drivetrain.Drive(joystick.getX(), joystick.getY());
-                        client.SendPacket(new ManualDrivePacket(drive.left, drive.right), true);
+                        driveSender.offer(joystick.getX(), joystick.getY());
                     }
                 }
         );
 
+        motorPanels = new MotorPanel[]{m0, m1, m2, m3, m4, m5};
+
+        renderLoop.add(joystick);
+        for (MotorPanel panel : motorPanels) {
+            renderLoop.add(panel);
+        }
+        renderLoop.add(uiUpdates);
+        renderLoop.add(this::renderPose);
+        renderLoop.add(motorChart);
+        renderLoop.add(whiskerChart);
+        renderLoop.add(tempChart);
+        renderLoop.add(memoryChart);
+        renderLoop.start();
+
+        motorChart.setWindow(30);
+        motorChart.setRange(-1, 1);
+        whiskerChart.setWindow(30);
+        for (int i = 0; i < DrivetrainPacket.MOTORS; i++) {
+            motorSeries[i] = motorChart.addSeries(SERIES_COLORS[i]);
+        }
+        for (int i = 0; i < WhiskersPacket.SENSORS; i++) {
+            whiskerSeries[i] = whiskerChart.addSeries(SERIES_COLORS[i]);
+        }
+
+        tempChart.setWindow(300);
+        tempSeries = tempChart.addSeries(Color.ORANGE);
+        memoryChart.setWindow(300);
+        memorySeries = memoryChart.addSeries(Color.DEEPSKYBLUE);
+
+        healthUpdate = uiUpdates.register(new HealthUpdate());
+        connectionUpdate = uiUpdates.register(new ConnectionUpdate());
+        qualityUpdate = uiUpdates.register(new QualityUpdate());
+
         notConnectedPaint = Color.RED;
         connectedPaint = Color.BLACK;
 
-        heartbeatTimer = new Timer();
-        heartbeatTimer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                if (client == null) return;
-                if (lastHealth.getTime(TimeUnit.MILLISECONDS) > 500) {
-                    client.RequestHealth();
-                    lastHealth.reset();
-                    lastHealth.start();
-                }
+        scheduler = new CommandScheduler();
+    }
 
-                if (lastDrive.getTime(TimeUnit.MILLISECONDS) > 100) {
-                    Drivetrain.DrivetrainResult drive = Drivetrain.Drive(joystick.getX(), joystick.getY());
-                    client.SendPacket(new ManualDrivePacket(drive.left, drive.right), true);
-                    lastDrive.reset();
-                    lastDrive.start();
-                }
-            }
-        }, 100, 10);
+    private boolean renderPose() {
+        AbstractClient client = this.client;
+        if (client == null || !client.getOdometry().getPose(shownPose) || shownPose.position == shownPosition)
+            return false;
+
+        shownPosition = shownPose.position;
+        pose.setText(String.format("Pose: %.2f m, %.2f m, %.0f deg", shownPose.x, shownPose.y, Math.toDegrees(shownPose.heading)));
+        return true;
+    }
+
+    /**
+     * Health requests, skipped while the rover streams health, paused with a rate of 0
+     */
+    public CommandScheduler.Command getHealthPoll() {
+        return healthPoll;
+    }
+
+    /**
+     * Pings, which also keep the connection from timing out when nothing else is sent
+     */
+    public CommandScheduler.Command getKeepAlive() {
+        return keepAlive;
+    }
+
+    /**
+     * Repeats the joystick position so the rover keeps driving
+     */
+    public CommandScheduler.Command getDriveRefresh() {
+        return driveRefresh;
     }
 
     public void deinitialize() {
-        heartbeatTimer.cancel();
+        scheduler.close();
+        renderLoop.stop();
+
+        System.out.print("[MainController] Command scheduling\n" + scheduler);
+
+        System.out.println("[MainController] UI updates published " + uiUpdates.getPublished() +
+                ", applied " + uiUpdates.getApplied() + ", coalesced " + uiUpdates.getCoalesced() +
+                ", max queue depth " + uiUpdates.getMaxQueueDepth());
+
+        if (client != null)
+            System.out.println("[MainController] Odometry " + client.getOdometry());
+
+        if (telemetryListener != null) {
+            telemetryListener.close();
+            System.out.println("[MainController] Telemetry listener " + telemetryListener);
+        }
+
+        if (driveSender != null)
+            driveSender.close();
     }
 
-    public void setClient(Client client) {
+    public void setClient(AbstractClient client) {
+        if (telemetryListener != null) {
+            this.client.removeUpdateListener(telemetryListener);
+            telemetryListener.close();
+        }
         this.client = client;
-        client.addUpdateListener(new Client.UpdatedListener() {
+        shownPosition = -1;
+        driveSender = new DriveCommandSender(client, MAX_DRIVE_RATE, new Drivetrain());
+
+        if (healthPoll != null) {
+            healthPoll.cancel();
+            keepAlive.cancel();
+            driveRefresh.cancel();
+        }
+        client.setHealthStreaming(HEALTH_STREAM_INTERVAL, HEALTH_STREAM_HEARTBEAT);
+        healthPoll = scheduler.schedule("GETHEALTH", HEALTH_RATE, () -> {
+            // Polling stays the fallback for rovers that do not push health
+            if (!client.isHealthStreaming())
+                client.RequestHealth();
+        });
+        keepAlive = scheduler.schedule("PING", KEEPALIVE_RATE, client::Ping);
+        driveRefresh = scheduler.schedule("MDRIVE", DRIVE_REFRESH_RATE,
+                () -> driveSender.offer(joystick.getX(), joystick.getY()));
+        // Off the receiving thread, so chart updates never delay reading from the rover
+        telemetryListener = client.addUpdateListener(new Client.UpdatedListener() {
             @Override
             public void updated(DrivetrainPacket packet) {
-                m0.setValue(packet.motor0);
-                m1.setValue(packet.motor1);
-                m2.setValue(packet.motor2);
-                m3.setValue(packet.motor3);
-                m4.setValue(packet.motor4);
-                m5.setValue(packet.motor5);
+                long now = System.nanoTime();
+                for (int i = 0; i < DrivetrainPacket.MOTORS; i++) {
+                    motorSeries[i].add(now, packet.motors[i]);
+                    motorPanels[i].setValue(packet.motors[i]);
+                }
             }
 
             @Override
             public void updated(HealthPacket packet) {
-                Platform.runLater(() -> {
-                    coreTemp.setText(Math.round(packet.temp * 100.0) / 100.0 + " C");
-                    memStatus.setText(String.format("%.2f kB / %.2f kB (%d%%)", packet.memoryUsed / 1024.0, packet.memoryTotal / 1024.0, (packet.memoryUsed * 100 / packet.memoryTotal)));
-                });
+                long now = System.nanoTime();
+                tempSeries.add(now, packet.temp);
+                memorySeries.add(now, packet.memoryUsed / 1024.0);
+
+                healthUpdate.set(packet);
             }
 
             @Override
             public void updated(WhiskersPacket packet) {
+                long now = System.nanoTime();
+                for (int i = 0; i < WhiskersPacket.SENSORS; i++) {
+                    whiskerSeries[i].add(now, packet.sensors[i]);
+                }
+            }
+        }, AsyncUpdateListener.Backpressure.DROP_OLDEST, TELEMETRY_QUEUE);
 
+        client.addConnectionUpdateListener(new AbstractClient.ConnectionUpdatedListener() {
+            @Override
+            public void updated(boolean status, long avg, long gap) {
+                if (status) {
+                    connectionUpdate.set(client.IsConnected());
+                } else if (client.getMetrics().getRoundTrip().getCount() == 0) {
+                    // Rovers that do not answer pings are scored by message spacing
+                    qualityUpdate.set(LinkQuality.Score(avg, gap));
+                }
             }
-        });
 
-        client.addConnectionUpdateListener((status, avg, gap) -> Platform.runLater(() -> {
-            if (status) {
-                connection.setText(client.IsConnected() ? "Connected" : "Not Connected");
-                connection.setTextFill(client.IsConnected() ? connectedPaint : notConnectedPaint);
-            } else {
-                /* Consists of two parts, latency (50%) and consistency (50%) */
-                double qualityValue =
-                        /* average interval of 100 is good (50% quality) */
-                        CurveUtils.InverseCurve(avg, 100, 50, 1.2) +
-                        /* gap of 1 is good consistency (50% quality) */
-                        CurveUtils.InverseCurve(gap, 1, 50, 0.2);
-                quality.setText("Quality: " + Math.round(qualityValue));
+            @Override
+            public void roundTripUpdated(long rtt, long jitter) {
+                qualityUpdate.set(LinkQuality.ScoreRoundTrip(rtt / 1e6, jitter / 1e6));
             }
-        }));
+        });
     }
 }
\ No newline at end of file
@@ -5,14 +5,21 @@ import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.layout.Pane;
 import javafx.scene.paint.Color;
 
-public class MotorPanel extends Pane {
+/**
+ * Shows a motor output from -1 to 1.<br>
+ * The value can be set from any thread, it is drawn by the {@link RenderLoop}.
+ */
+public class MotorPanel extends Pane implements RenderLoop.Renderable {
     private final Canvas canvas;
 
-    private double value = 0.0;
+    private volatile double value = 0.0;
+
+    /* FX thread only */
+    private double drawnValue = Double.NaN;
+    private boolean dirty = true;
 
     public void setValue(double value){
         this.value = value;
-        draw();
     }
 
     public double getValue(){
@@ -26,7 +33,19 @@ public class MotorPanel extends Pane {
         heightProperty().addListener(e -> canvas.setHeight(getHeight()));
     }
 
-    private void draw(){
+    @Override
+    public boolean render() {
+        double current = value;
+        if (!dirty && Double.compare(current, drawnValue) == 0)
+            return false;
+
+        dirty = false;
+        drawnValue = current;
+        draw(current);
+        return true;
+    }
+
+    private void draw(double value){
         GraphicsContext gc = canvas.getGraphicsContext2D();
 
         gc.clearRect(0, 0, getWidth(), getHeight());
@@ -47,6 +66,6 @@ public class MotorPanel extends Pane {
     @Override
     protected void layoutChildren() {
         super.layoutChildren();
-        draw();
+        dirty = true;
     }
 }
@@ -0,0 +1,386 @@
+package com.compdog.rover.control.rover_control;
+
+import com.compdog.rover.control.rover_control.packet.PacketReader;
+import com.compdog.rover.control.rover_control.packet.PacketWriter;
+import com.compdog.rover.control.rover_control.util.StreamingStatistics;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non-blocking client that multiplexes both rover connections on a {@link ClientEventLoop}.<br>
+ * Many clients can share one loop, so a connection costs no threads of its own.
+ */
+public class NioClient extends AbstractClient {
+
+    private static final long CONNECT_TIMEOUT = TimeUnit.MILLISECONDS.toNanos(5000);
+    private static final long RECEIVE_TIMEOUT = TimeUnit.MILLISECONDS.toNanos(5000);
+    private static final long RECONNECT_DELAY = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+    private static final int WRITE_BUFFER_SIZE = 16 * 1024;
+
+    private static final int STATE_STOPPED = 0;
+    private static final int STATE_CONNECTING = 1;
+    private static final int STATE_CONNECTED = 2;
+    private static final int STATE_RECONNECTING = 3;
+
+    /**
+     * Buffers encoded commands in a direct buffer and writes them without blocking,
+     * leftovers are flushed by the event loop once the channel is writable again
+     */
+    private class ChannelOutput implements PacketWriter.Output {
+        private final ByteBuffer pending = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+        private @Nullable SocketChannel channel;
+        private @Nullable SelectionKey key;
+
+        synchronized void attach(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+            pending.clear();
+        }
+
+        synchronized void detach() {
+            channel = null;
+            key = null;
+        }
+
+        @Override
+        public synchronized void write(ByteBuffer data) throws IOException {
+            if (channel == null || key == null)
+                throw new IOException("Not connected");
+
+            if (data.remaining() > pending.remaining())
+                throw new IOException("Send buffer full");
+
+            pending.put(data);
+            flush();
+        }
+
+        synchronized void flush() throws IOException {
+            if (channel == null || key == null)
+                return;
+
+            pending.flip();
+            channel.write(pending);
+            pending.compact();
+
+            if (pending.position() > 0) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                loop.wakeup();
+            } else if ((key.interestOps() & SelectionKey.OP_WRITE) != 0) {
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            }
+        }
+    }
+
+    private final ClientEventLoop loop;
+    private final boolean ownsLoop;
+
+    private @Nullable SocketChannel channelPrimary;
+    private @Nullable SocketChannel channelDriver;
+    private @Nullable SelectionKey keyPrimary;
+    private @Nullable SelectionKey keyDriver;
+
+    private final ChannelOutput outputPrimary = new ChannelOutput();
+    private final ChannelOutput outputDriver = new ChannelOutput();
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+    private @Nullable PacketReader reader;
+
+    private final StreamingStatistics intervals = new StreamingStatistics(20);
+    private long lastReceive;
+
+    private volatile @Nullable InetSocketAddress address;
+    private volatile boolean running;
+    private int state;
+    private long deadline;
+
+    /**
+     * Creates a client with its own event loop, which is closed again by {@link #Dispose()}
+     */
+    public NioClient(String host, int port) throws IOException {
+        this(host, port, new ClientEventLoop("Client Event Loop"), true);
+    }
+
+    public NioClient(String host, int port, ClientEventLoop loop) {
+        this(host, port, loop, false);
+    }
+
+    private NioClient(String host, int port, ClientEventLoop loop, boolean ownsLoop) {
+        super(host, port);
+
+        this.loop = loop;
+        this.ownsLoop = ownsLoop;
+
+        running = false;
+        state = STATE_STOPPED;
+        deadline = Long.MAX_VALUE;
+    }
+
+    public ClientEventLoop getEventLoop() {
+        return loop;
+    }
+
+    @Override
+    public void Start() {
+        // Resolved on the caller's thread, a lookup on the loop would stall every rover sharing it
+        InetSocketAddress resolved = address;
+        if (resolved == null || resolved.isUnresolved())
+            address = new InetSocketAddress(host, port);
+
+        running = true;
+        loop.register(this);
+        loop.execute(() -> {
+            if (state == STATE_STOPPED)
+                connect();
+        });
+    }
+
+    @Override
+    public void Stop() {
+        running = false;
+        loop.execute(() -> {
+            if (state != STATE_STOPPED)
+                disconnect();
+        });
+    }
+
+    @Override
+    public void Dispose() {
+        Stop();
+        loop.unregister(this);
+        if (ownsLoop)
+            loop.close();
+    }
+
+    /* Event loop side */
+
+    long getDeadline() {
+        return deadline;
+    }
+
+    void onDeadline(long now) {
+        switch (state) {
+            case STATE_CONNECTING:
+                System.out.println("[NioClient] Connection timed out!");
+                disconnect();
+                break;
+            case STATE_CONNECTED:
+                System.out.println("[NioClient] Reached client timeout. Disconnecting");
+                disconnect();
+                break;
+            case STATE_RECONNECTING:
+                connect();
+                break;
+            default:
+                deadline = Long.MAX_VALUE;
+                break;
+        }
+    }
+
+    void onSelected(SelectionKey key) {
+        try {
+            if (!key.isValid())
+                return;
+
+            if (key.isConnectable()) {
+                if (((SocketChannel) key.channel()).finishConnect()) {
+                    key.interestOps(0);
+
+                    if (state == STATE_CONNECTING && isEstablished(channelPrimary) && isEstablished(channelDriver))
+                        onConnected();
+                }
+            }
+
+            if (key.isValid() && key.isWritable()) {
+                (key == keyPrimary ? outputPrimary : outputDriver).flush();
+            }
+
+            if (key.isValid() && key.isReadable()) {
+                if (key == keyPrimary)
+                    receive();
+                else
+                    drainDriver();
+            }
+        } catch (IOException e) {
+            System.err.println("[NioClient] Error " + e.getMessage());
+            disconnect();
+        } catch (RuntimeException e) {
+            // Never let one rover take down the loop shared with the others
+            e.printStackTrace();
+            disconnect();
+        }
+    }
+
+    /* Called when a callback threw, so the rover is dropped and retried like after an I/O error */
+    void onFailed() {
+        if (state != STATE_STOPPED)
+            disconnect();
+        else
+            deadline = Long.MAX_VALUE;
+    }
+
+    void onLoopClosed() {
+        running = false;
+        if (state != STATE_STOPPED)
+            disconnect();
+    }
+
+    private static boolean isEstablished(@Nullable SocketChannel channel) {
+        return channel != null && channel.isConnected();
+    }
+
+    private void connect() {
+        if (!running) {
+            state = STATE_STOPPED;
+            deadline = Long.MAX_VALUE;
+            return;
+        }
+
+        connected = false;
+        dispatchConnectionUpdatedEvent();
+
+        InetSocketAddress address = this.address;
+        if (address == null || address.isUnresolved()) {
+            System.err.println("[NioClient] Unknown host " + host + ", stopping until started again");
+            running = false;
+            disconnect();
+            return;
+        }
+
+        System.out.println("[NioClient] Trying to connect to " + host + ":" + port);
+
+        state = STATE_CONNECTING;
+        deadline = System.nanoTime() + CONNECT_TIMEOUT;
+
+        try {
+            channelPrimary = SocketChannel.open();
+            channelPrimary.configureBlocking(false);
+            keyPrimary = channelPrimary.register(loop.getSelector(), SelectionKey.OP_CONNECT, this);
+
+            channelDriver = SocketChannel.open();
+            channelDriver.configureBlocking(false);
+            keyDriver = channelDriver.register(loop.getSelector(), SelectionKey.OP_CONNECT, this);
+
+            boolean primaryDone = channelPrimary.connect(address);
+            boolean driverDone = channelDriver.connect(address);
+
+            if (primaryDone)
+                keyPrimary.interestOps(0);
+            if (driverDone)
+                keyDriver.interestOps(0);
+            if (primaryDone && driverDone)
+                onConnected();
+        } catch (IOException e) {
+            System.err.println("[NioClient] Error " + e.getMessage());
+            disconnect();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            disconnect();
+        }
+    }
+
+    private void onConnected() throws IOException {
+        assert channelPrimary != null && channelDriver != null && keyPrimary != null && keyDriver != null;
+
+        state = STATE_CONNECTED;
+        connected = true;
+        System.out.println("[NioClient] Connected on remote port " + port + " from " +
+                channelPrimary.socket().getLocalPort() + "/" + channelDriver.socket().getLocalPort());
+        dispatchConnectionUpdatedEvent();
+
+        reader = new PacketReader(READ_BUFFER_SIZE);
+        outputPrimary.attach(channelPrimary, keyPrimary);
+        outputDriver.attach(channelDriver, keyDriver);
+        writer = new PacketWriter(outputPrimary);
+        driverWriter = new PacketWriter(outputDriver);
+
+        keyPrimary.interestOps(SelectionKey.OP_READ);
+        keyDriver.interestOps(SelectionKey.OP_READ);
+
+        lastReceive = System.nanoTime();
+        deadline = lastReceive + RECEIVE_TIMEOUT;
+
+        handshake();
+    }
+
+    private void receive() throws IOException {
+        assert channelPrimary != null && reader != null;
+
+        readBuffer.clear();
+        int read = channelPrimary.read(readBuffer);
+        if (read < 0) {
+            System.out.println("[NioClient] Disconnected from server");
+            disconnect();
+            return;
+        }
+
+        if (read == 0)
+            return;
+
+        long now = System.nanoTime();
+        intervals.push(now - lastReceive);
+        lastReceive = now;
+        deadline = now + RECEIVE_TIMEOUT;
+
+        readBuffer.flip();
+        reader.append(readBuffer);
+        while (state == STATE_CONNECTED && reader.next()) {
+            handlePacket(reader);
+        }
+
+        dispatchConnectionUpdatedEvent(intervals);
+    }
+
+    /* The driver connection only carries commands, anything the rover sends back is discarded */
+    private void drainDriver() throws IOException {
+        assert channelDriver != null;
+
+        readBuffer.clear();
+        if (channelDriver.read(readBuffer) < 0) {
+            System.out.println("[NioClient] Disconnected from server");
+            disconnect();
+        }
+    }
+
+    private void disconnect() {
+        outputPrimary.detach();
+        outputDriver.detach();
+
+        close(channelPrimary);
+        close(channelDriver);
+        channelPrimary = channelDriver = null;
+        keyPrimary = keyDriver = null;
+        reader = null;
+
+        boolean wasConnected = connected;
+        connected = false;
+        if (wasConnected)
+            System.out.println("[NioClient] Lost connection with server");
+        dispatchConnectionUpdatedEvent();
+
+        if (running) {
+            state = STATE_RECONNECTING;
+            deadline = System.nanoTime() + RECONNECT_DELAY;
+        } else {
+            state = STATE_STOPPED;
+            deadline = Long.MAX_VALUE;
+        }
+    }
+
+    private static void close(@Nullable SocketChannel channel) {
+        if (channel == null)
+            return;
+
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
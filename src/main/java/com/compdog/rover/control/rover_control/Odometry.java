@@ -0,0 +1,305 @@
+package com.compdog.rover.control.rover_control;
+
+import com.compdog.rover.control.rover_control.packet.CharacteristicsPacket;
+import com.compdog.rover.control.rover_control.packet.DrivetrainPacket;
+import com.compdog.rover.control.rover_control.util.StampedRing;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Estimates the pose of the rover (x, y in meters, heading in radians counter-clockwise from the x axis)
+ * by integrating the DRIVE telemetry.<br>
+ * The motors of each side are averaged and scaled to wheel speed through the wheel circumference, the
+ * {@link DrivetrainGeometry} turns the difference between the sides into a yaw rate. Between two frames
+ * speed and yaw rate are taken to change linearly, which also bridges frames that were dropped. A gap longer
+ * than {@value #MAX_GAP_MS} ms is not integrated at all because the rover may have done anything meanwhile.<br>
+ * The client passes the arrival time of each frame. Frames come over one TCP connection and the clock is
+ * monotonic, so they never arrive out of order and frames older than the last one (stale) can only come
+ * from callers with other time sources. A frame with the same time as the last one is a step of zero length.<br>
+ * Every update publishes the pose into a trajectory ring. Any number of threads read the latest pose or walk
+ * the trajectory at their own rate without locking, the integration never waits for them.
+ * Updates and {@link #configure} are called by one thread, the receiving thread of the client, and
+ * allocate nothing.
+ */
+public class Odometry {
+
+    public static final int DEFAULT_TRAJECTORY = 4096;
+
+    public static final long MAX_GAP_MS = 500;
+    private static final long MAX_GAP = TimeUnit.MILLISECONDS.toNanos(MAX_GAP_MS);
+    /* A frame this many expected periods after the last one means frames were dropped in between */
+    private static final double GAP_PERIODS = 1.5;
+    private static final double PERIOD_SMOOTHING = 1.0 / 16;
+
+    private static final int POSE_TIME = 0;
+    private static final int POSE_X = 1;
+    private static final int POSE_Y = 2;
+    private static final int POSE_HEADING = 3;
+    private static final int POSE_VELOCITY = 4;
+    private static final int POSE_YAW_RATE = 5;
+    private static final int POSE_LONGS = 6;
+
+    /**
+     * Copy of one published pose, reused by its reader
+     */
+    public static class Pose {
+        final long[] record = new long[POSE_LONGS];
+
+        /* Position in the trajectory */
+        public long position = -1;
+        public long time;
+        public double x;
+        public double y;
+        public double heading;
+        /* m/s and rad/s */
+        public double velocity;
+        public double yawRate;
+
+        private void decode(long position) {
+            this.position = position;
+            time = record[POSE_TIME];
+            x = Double.longBitsToDouble(record[POSE_X]);
+            y = Double.longBitsToDouble(record[POSE_Y]);
+            heading = Double.longBitsToDouble(record[POSE_HEADING]);
+            velocity = Double.longBitsToDouble(record[POSE_VELOCITY]);
+            yawRate = Double.longBitsToDouble(record[POSE_YAW_RATE]);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("x %.3f m, y %.3f m, heading %.1f deg, %.3f m/s, %.1f deg/s",
+                    x, y, Math.toDegrees(heading), velocity, Math.toDegrees(yawRate));
+        }
+    }
+
+    private final DrivetrainGeometry geometry = new DrivetrainGeometry();
+    private final StampedRing trajectory;
+
+    /* Motor output is a fraction of the top wheel speed, the one the drivetrain commands */
+    private volatile double maxWheelRpm = Drivetrain.DEFAULT_MAX_WHEEL_RPM;
+    private volatile boolean resetRequested = false;
+
+    /* Integration state, updating thread only */
+    private boolean started = false;
+    private long lastTime;
+    private double lastVelocity;
+    private double lastYawRate;
+    private double period = 0;
+    private double x = 0;
+    private double y = 0;
+    private double heading = 0;
+
+    private volatile long updates = 0;
+    private volatile long stale = 0;
+    private volatile long dropped = 0;
+    private volatile long gaps = 0;
+
+    public Odometry() {
+        this(DEFAULT_TRAJECTORY);
+    }
+
+    /**
+     * @param trajectory Number of poses kept, rounded up to a power of two
+     */
+    public Odometry(int trajectory) {
+        this.trajectory = new StampedRing(trajectory, POSE_LONGS);
+    }
+
+    /**
+     * Updating thread only, takes the geometry of a rover, null stops the integration until one is known
+     */
+    public void configure(@Nullable CharacteristicsPacket characteristics) {
+        if (!geometry.configure(characteristics) && characteristics != null)
+            System.out.println("[Odometry] Rover has no wheels on one side, pose is not estimated");
+        // The speeds of the last frame were computed with the old geometry
+        started = false;
+    }
+
+    /**
+     * Updating thread only, integrates one frame
+     * @param time Time the frame was sampled or received, from {@link System#nanoTime()}
+     * @return false if the frame was not integrated
+     */
+    public boolean update(long time, DrivetrainPacket packet) {
+        if (resetRequested) {
+            resetRequested = false;
+            x = y = heading = 0;
+            started = false;
+        }
+
+        if (!geometry.isValid())
+            return false;
+
+        double left = 0, right = 0;
+        for (int i = 0; i < DrivetrainPacket.MOTORS; i++) {
+            int side = geometry.getSide(i);
+            if (side > 0)
+                left += packet.motors[i];
+            else if (side < 0)
+                right += packet.motors[i];
+        }
+        double speedScale = geometry.getWheelSpeed(maxWheelRpm);
+        left = left / geometry.getLeftWheels() * speedScale;
+        right = right / geometry.getRightWheels() * speedScale;
+        double velocity = (left + right) / 2;
+        double yawRate = (right - left) / geometry.getEffectiveTrackWidth();
+
+        if (started) {
+            long dt = time - lastTime;
+            if (dt < 0) {
+                stale++;
+                return false;
+            }
+
+            if (dt > 0) {
+                if (period > 0 && dt > period * GAP_PERIODS)
+                    dropped += Math.max(0, Math.round(dt / period) - 1);
+                period = period == 0 ? dt : period + (Math.min(dt, MAX_GAP) - period) * PERIOD_SMOOTHING;
+            }
+
+            if (dt > MAX_GAP) {
+                gaps++;
+            } else {
+                double seconds = dt / (double) TimeUnit.SECONDS.toNanos(1);
+                double distance = (lastVelocity + velocity) / 2 * seconds;
+                double turn = (lastYawRate + yawRate) / 2 * seconds;
+                // Along the chord of the arc, its direction is the heading halfway through the turn
+                double direction = heading + turn / 2;
+                x += distance * Math.cos(direction);
+                y += distance * Math.sin(direction);
+                heading = Math.IEEEremainder(heading + turn, 2 * Math.PI);
+            }
+        }
+
+        started = true;
+        lastTime = time;
+        lastVelocity = velocity;
+        lastYawRate = yawRate;
+        updates++;
+
+        publish(time, velocity, yawRate);
+        return true;
+    }
+
+    /**
+     * Updating thread only, publishes a pose estimated before instead of integrating one, like a pose replayed
+     * from a recording. The next frame starts a new integration from it.
+     */
+    public void publish(Pose pose) {
+        x = pose.x;
+        y = pose.y;
+        heading = pose.heading;
+        started = false;
+        publish(pose.time, pose.velocity, pose.yawRate);
+    }
+
+    private void publish(long time, double velocity, double yawRate) {
+        int offset = trajectory.claim();
+        long[] data = trajectory.data();
+        data[offset + POSE_TIME] = time;
+        data[offset + POSE_X] = Double.doubleToRawLongBits(x);
+        data[offset + POSE_Y] = Double.doubleToRawLongBits(y);
+        data[offset + POSE_HEADING] = Double.doubleToRawLongBits(heading);
+        data[offset + POSE_VELOCITY] = Double.doubleToRawLongBits(velocity);
+        data[offset + POSE_YAW_RATE] = Double.doubleToRawLongBits(yawRate);
+        trajectory.publish();
+    }
+
+    /**
+     * Any thread, moves the rover back to the origin with the next update
+     */
+    public void reset() {
+        resetRequested = true;
+    }
+
+    /**
+     * Any thread, copies the latest pose
+     * @return false if no pose was estimated yet
+     */
+    public boolean getPose(Pose pose) {
+        while (true) {
+            long end = trajectory.getPublished();
+            if (end == 0)
+                return false;
+            if (trajectory.read(end - 1, pose.record)) {
+                pose.decode(end - 1);
+                return true;
+            }
+            // Lapped by the updates while copying
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Any thread, copies a pose of the trajectory
+     * @param position From {@link #getTrajectoryStart()} to {@link #getTrajectoryEnd()} exclusive
+     * @return false if the pose is not published yet or was overwritten
+     */
+    public boolean getTrajectory(long position, Pose pose) {
+        if (!trajectory.read(position, pose.record))
+            return false;
+        pose.decode(position);
+        return true;
+    }
+
+    /**
+     * @return Oldest position still in the trajectory
+     */
+    public long getTrajectoryStart() {
+        return Math.max(0, trajectory.getPublished() - trajectory.getCapacity());
+    }
+
+    /**
+     * @return Position the next pose is published at
+     */
+    public long getTrajectoryEnd() {
+        return trajectory.getPublished();
+    }
+
+    public double getMaxWheelRpm() {
+        return maxWheelRpm;
+    }
+
+    /**
+     * @param maxWheelRpm Wheel speed at a motor output of 1, the same {@link Drivetrain#setLimits} commands with
+     */
+    public void setMaxWheelRpm(double maxWheelRpm) {
+        if (maxWheelRpm <= 0)
+            throw new IllegalArgumentException("Wheel speed must be positive");
+        this.maxWheelRpm = maxWheelRpm;
+    }
+
+    /**
+     * @return Frames integrated
+     */
+    public long getUpdates() {
+        return updates;
+    }
+
+    /**
+     * @return Frames skipped because they were older than the last one
+     */
+    public long getStale() {
+        return stale;
+    }
+
+    /**
+     * @return Frames estimated missing from the gaps between frames
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * @return Gaps too long to integrate
+     */
+    public long getGaps() {
+        return gaps;
+    }
+
+    @Override
+    public String toString() {
+        return "updates " + updates + ", stale " + stale + ", dropped " + dropped + ", gaps " + gaps;
+    }
+}
@@ -0,0 +1,54 @@
+package com.compdog.rover.control.rover_control;
+
+import javafx.animation.AnimationTimer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Redraws the registered widgets once per JavaFX pulse.<br>
+ * Widgets only store the latest values when they are updated, possibly from another thread,
+ * and draw them here on the FX thread. A widget whose values did not change skips the frame.
+ */
+public class RenderLoop extends AnimationTimer {
+
+    public interface Renderable {
+        /**
+         * Called on the FX thread once per frame
+         * @return true if the widget was redrawn
+         */
+        boolean render();
+    }
+
+    private final List<Renderable> renderables = new ArrayList<>();
+
+    private long frames = 0;
+    private long redraws = 0;
+
+    /**
+     * Must be called on the FX thread
+     */
+    public void add(Renderable renderable) {
+        renderables.add(renderable);
+    }
+
+    @Override
+    public void handle(long now) {
+        frames++;
+        for (Renderable renderable : renderables) {
+            if (renderable.render())
+                redraws++;
+        }
+    }
+
+    public long getFrames() {
+        return frames;
+    }
+
+    /**
+     * @return Number of widget redraws, at most one per widget and frame
+     */
+    public long getRedraws() {
+        return redraws;
+    }
+}
@@ -0,0 +1,261 @@
+package com.compdog.rover.control.rover_control;
+
+import com.compdog.rover.control.rover_control.packet.DrivetrainPacket;
+import com.compdog.rover.control.rover_control.packet.HealthPacket;
+import com.compdog.rover.control.rover_control.packet.PacketType;
+import com.compdog.rover.control.rover_control.packet.WhiskersPacket;
+import com.compdog.rover.control.rover_control.recorder.FlightRecording;
+import com.compdog.rover.control.rover_control.util.StreamingStatistics;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Plays a {@link FlightRecording} back through the same listeners as a live client.<br>
+ * Events keep their recorded spacing divided by the speed, {@link #SPEED_MAX} replays as fast as the
+ * listeners allow. Commands are ignored. Gaps longer than {@link #MAX_GAP_MS} ms, for example between
+ * two sessions in the same recording, are skipped.<br>
+ * Recorded poses are published to {@link #getOdometry()} as they were estimated live, the replayed DRIVE
+ * frames are not integrated again.
+ */
+public class ReplayClient extends AbstractClient {
+
+    public static final double SPEED_MAX = Double.POSITIVE_INFINITY;
+    public static final long MAX_GAP_MS = 5000;
+
+    /* Connection updates are only sent this often, they are meant for labels */
+    private static final long CONNECTION_UPDATE_INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final FlightRecording recording;
+    private final Thread thread;
+
+    private final HealthPacket healthPacket = new HealthPacket();
+    private final DrivetrainPacket drivetrainPacket = new DrivetrainPacket();
+    private final WhiskersPacket whiskersPacket = new WhiskersPacket();
+    private final Odometry.Pose pose = new Odometry.Pose();
+
+    private volatile boolean running = false;
+    private volatile boolean disposed = false;
+    private volatile double speed = 1;
+    private volatile long seekTarget = Long.MIN_VALUE;
+
+    private volatile long events = 0;
+    private volatile long playingNanos = 0;
+    private volatile long position = 0;
+
+    public ReplayClient(Path directory) throws IOException {
+        super(directory.toString(), 0);
+        recording = new FlightRecording(directory);
+
+        thread = new Thread(this::replayThread, "Replay Thread");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Starts or resumes the replay
+     */
+    @Override
+    public void Start() {
+        running = true;
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Pauses the replay
+     */
+    @Override
+    public void Stop() {
+        running = false;
+    }
+
+    @Override
+    public void Dispose() {
+        disposed = true;
+        Stop();
+        LockSupport.unpark(thread);
+        try {
+            thread.join(10000);
+        } catch (InterruptedException ignored) {
+            thread.interrupt();
+        }
+
+        try {
+            recording.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @param speed Multiple of the recorded rate, {@link #SPEED_MAX} for no pacing
+     */
+    public void setSpeed(double speed) {
+        if (!(speed > 0))
+            throw new IllegalArgumentException("Speed must be positive");
+        this.speed = speed;
+        LockSupport.unpark(thread);
+    }
+
+    public double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * Continues the replay from the first event at or after the time
+     * @param time Nanoseconds since the epoch, see {@link #getStartTime()}
+     */
+    public void seek(long time) {
+        seekTarget = time;
+        LockSupport.unpark(thread);
+    }
+
+    public long getStartTime() {
+        return recording.getStartTime();
+    }
+
+    /**
+     * @return Time of the last replayed event in nanoseconds since the epoch
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    public long getRecordCount() {
+        return recording.getRecordCount();
+    }
+
+    public long getEvents() {
+        return events;
+    }
+
+    /**
+     * @return Events replayed per second while playing, including the time spent waiting at slower speeds
+     */
+    public double getEventsPerSecond() {
+        long nanos = playingNanos;
+        return nanos == 0 ? 0 : events * (double) TimeUnit.SECONDS.toNanos(1) / nanos;
+    }
+
+    private void replayThread() {
+        StreamingStatistics intervals = new StreamingStatistics(20);
+        long maxGap = TimeUnit.MILLISECONDS.toNanos(MAX_GAP_MS);
+
+        /* Replay time maps to wall time as wall = anchorWall + (record - anchorRecord) / speed */
+        long anchorWall = 0;
+        long anchorRecord = 0;
+        double anchorSpeed = 0;
+        long previous = 0;
+        long lastConnectionUpdate = 0;
+        boolean anchored = false;
+
+        while (!disposed) {
+            if (!running) {
+                if (connected) {
+                    connected = false;
+                    dispatchConnectionUpdatedEvent();
+                }
+                LockSupport.park(this);
+                anchored = false;
+                continue;
+            }
+
+            if (!connected) {
+                connected = true;
+                dispatchConnectionUpdatedEvent();
+            }
+
+            long loopStart = System.nanoTime();
+            try {
+                long target = seekTarget;
+                if (target != Long.MIN_VALUE) {
+                    seekTarget = Long.MIN_VALUE;
+                    recording.seek(target);
+                    anchored = false;
+                    previous = 0;
+                }
+
+                if (!recording.next()) {
+                    System.out.printf("[ReplayClient] Replayed %d events at %.0f events/s%n", events, getEventsPerSecond());
+                    running = false;
+                    recording.rewind();
+                    previous = 0;
+                    continue;
+                }
+            } catch (IOException e) {
+                System.err.println("[ReplayClient] Error " + e.getMessage());
+                running = false;
+                continue;
+            }
+
+            long time = recording.getTime();
+            double currentSpeed = speed;
+
+            if (!anchored || currentSpeed != anchorSpeed || time - previous > maxGap || previous - time > maxGap) {
+                anchorWall = System.nanoTime();
+                anchorRecord = time;
+                anchorSpeed = currentSpeed;
+                anchored = true;
+            } else if (currentSpeed != SPEED_MAX) {
+                long due = anchorWall + (long) ((time - anchorRecord) / currentSpeed);
+                long wait;
+                while (running && seekTarget == Long.MIN_VALUE && speed == currentSpeed &&
+                        (wait = due - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(this, wait);
+                }
+
+                // The seek replaces the event that was waited for
+                if (seekTarget != Long.MIN_VALUE)
+                    continue;
+            }
+
+            /*
+             * A record slightly older than the previous one, like the poses of recordings made before they were
+             * merged in time order, is played at once. It neither rewinds the clock nor counts as an interval.
+             */
+            if (time >= previous) {
+                if (previous != 0)
+                    intervals.push(time - previous);
+                previous = time;
+            } else if (previous - time > maxGap) {
+                previous = time;
+            }
+            position = previous;
+
+            dispatch();
+            events++;
+
+            long now = System.nanoTime();
+            playingNanos += now - loopStart;
+            if (now - lastConnectionUpdate > CONNECTION_UPDATE_INTERVAL) {
+                lastConnectionUpdate = now;
+                dispatchConnectionUpdatedEvent(intervals);
+            }
+        }
+    }
+
+    private void dispatch() {
+        switch (recording.getType()) {
+            case PacketType.HEALTH:
+                recording.read(healthPacket);
+                dispatchUpdatedEvent(healthPacket);
+                break;
+            case PacketType.DRIVETRAIN:
+                recording.read(drivetrainPacket);
+                dispatchUpdatedEvent(drivetrainPacket);
+                break;
+            case PacketType.WHISKERS:
+                recording.read(whiskersPacket);
+                dispatchUpdatedEvent(whiskersPacket);
+                break;
+            case PacketType.POSE:
+                recording.read(pose);
+                getOdometry().publish(pose);
+                break;
+            default:
+                break;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.compdog.rover.control.rover_control;
+
+import com.compdog.rover.control.rover_control.util.TimeSeriesRing;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scrolling chart of one or more time series.<br>
+ * Every series is a {@link TimeSeriesRing} with one min/max bucket per column, samples can be added
+ * from any single thread and a frame always draws the same number of columns, however many samples
+ * the window holds. Each column is drawn as the span between its min and max.
+ */
+public class StripChart extends Pane implements RenderLoop.Renderable {
+
+    private static final int COLUMNS = 600;
+
+    private static class Series {
+        final TimeSeriesRing ring;
+        final Color color;
+        final double[] min = new double[COLUMNS];
+        final double[] max = new double[COLUMNS];
+        long drawnVersion = -1;
+
+        Series(TimeSeriesRing ring, Color color) {
+            this.ring = ring;
+            this.color = color;
+        }
+    }
+
+    private final Canvas canvas;
+    private final List<Series> series = new ArrayList<>();
+
+    private long bucketNanos = TimeUnit.SECONDS.toNanos(60) / COLUMNS;
+    private boolean autoRange = true;
+    private double rangeMin = 0;
+    private double rangeMax = 1;
+
+    /* FX thread only */
+    private long drawnBucket = Long.MIN_VALUE;
+    private boolean dirty = true;
+
+    public StripChart() {
+        canvas = new Canvas(getWidth(), getHeight());
+        getChildren().add(canvas);
+        widthProperty().addListener(e -> canvas.setWidth(getWidth()));
+        heightProperty().addListener(e -> canvas.setHeight(getHeight()));
+    }
+
+    /**
+     * Must be called before adding series
+     * @param seconds Time shown across the chart
+     */
+    public void setWindow(double seconds) {
+        if (!series.isEmpty())
+            throw new IllegalStateException("The window can not change once series were added");
+        bucketNanos = Math.max(1, (long) (seconds * TimeUnit.SECONDS.toNanos(1) / COLUMNS));
+    }
+
+    /**
+     * Fixes the vertical range instead of fitting it to the visible values
+     */
+    public void setRange(double min, double max) {
+        autoRange = false;
+        rangeMin = min;
+        rangeMax = max;
+        dirty = true;
+    }
+
+    /**
+     * @return The ring to add samples to, with times from {@link System#nanoTime()}
+     */
+    public TimeSeriesRing addSeries(Color color) {
+        TimeSeriesRing ring = new TimeSeriesRing(COLUMNS * 2, bucketNanos);
+        series.add(new Series(ring, color));
+        dirty = true;
+        return ring;
+    }
+
+    @Override
+    public boolean render() {
+        long bucket = Math.floorDiv(System.nanoTime(), bucketNanos);
+        boolean changed = dirty || bucket != drawnBucket;
+        for (Series s : series) {
+            if (s.ring.getVersion() != s.drawnVersion)
+                changed = true;
+        }
+        if (!changed)
+            return false;
+
+        dirty = false;
+        drawnBucket = bucket;
+        for (Series s : series) {
+            s.drawnVersion = s.ring.getVersion();
+            s.ring.read(bucket, COLUMNS, s.min, s.max);
+        }
+
+        draw();
+        return true;
+    }
+
+    private void draw() {
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        double width = getWidth();
+        double height = getHeight();
+
+        gc.clearRect(0, 0, width, height);
+
+        double low = rangeMin;
+        double high = rangeMax;
+        if (autoRange) {
+            low = Double.POSITIVE_INFINITY;
+            high = Double.NEGATIVE_INFINITY;
+            for (Series s : series) {
+                for (int i = 0; i < COLUMNS; i++) {
+                    if (s.min[i] < low) low = s.min[i];
+                    if (s.max[i] > high) high = s.max[i];
+                }
+            }
+            if (low > high) {
+                low = rangeMin;
+                high = rangeMax;
+            } else if (low == high) {
+                low -= 1;
+                high += 1;
+            } else {
+                double padding = (high - low) * 0.05;
+                low -= padding;
+                high += padding;
+            }
+            rangeMin = low;
+            rangeMax = high;
+        }
+
+        double scale = height / (high - low);
+        double columnWidth = width / COLUMNS;
+
+        gc.setLineWidth(1);
+        for (Series s : series) {
+            gc.setStroke(s.color);
+            gc.setFill(s.color);
+
+            double lastX = Double.NaN;
+            double lastY = Double.NaN;
+            for (int i = 0; i < COLUMNS; i++) {
+                if (Double.isNaN(s.min[i]))
+                    continue;
+
+                double x = i * columnWidth;
+                double top = height - (s.max[i] - low) * scale;
+                double bottom = height - (s.min[i] - low) * scale;
+
+                /* Connect to the previous sampled column, so sparse series read as a line */
+                if (!Double.isNaN(lastX))
+                    gc.strokeLine(lastX, lastY, x, (top + bottom) / 2);
+
+                gc.fillRect(x, top, Math.max(1, columnWidth), Math.max(1, bottom - top));
+                lastX = x;
+                lastY = (top + bottom) / 2;
+            }
+        }
+
+        gc.setFill(Color.GRAY);
+        gc.fillText(format(high), 4, 12);
+        gc.fillText(format(low), 4, height - 4);
+    }
+
+    private static String format(double value) {
+        return Math.abs(value) >= 1000 ? Long.toString(Math.round(value)) : Double.toString(Math.round(value * 100) / 100.0);
+    }
+
+    @Override
+    protected void layoutChildren() {
+        super.layoutChildren();
+        dirty = true;
+    }
+}
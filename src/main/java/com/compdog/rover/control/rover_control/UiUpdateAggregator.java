@@ -0,0 +1,110 @@
+package com.compdog.rover.control.rover_control;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects UI updates from any thread and applies them on the FX thread once per frame.<br>
+ * Every widget owns an {@link Update} that holds its latest state. Publishing an update that is
+ * still pending only replaces the state (coalesced), so at most one application per widget and frame
+ * happens no matter how fast updates arrive, and nothing is queued on the FX event queue.
+ * The aggregator is driven by the {@link RenderLoop} pulse.
+ */
+public class UiUpdateAggregator implements RenderLoop.Renderable {
+
+    /**
+     * State of one widget. Subclasses store the state in fields, guarded by the update itself,
+     * and call {@link #publish()} after changing them.
+     */
+    public abstract static class Update {
+        private final AtomicBoolean pending = new AtomicBoolean(false);
+        private UiUpdateAggregator aggregator;
+
+        /**
+         * Shows the current state, called on the FX thread while holding the update's lock
+         */
+        protected abstract void apply();
+
+        public void publish() {
+            aggregator.publish(this);
+        }
+    }
+
+    private final List<Update> updates = new ArrayList<>();
+
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private volatile long applied = 0;
+    private volatile int maxQueueDepth = 0;
+
+    /**
+     * Must be called on the FX thread before the update is published
+     */
+    public <T extends Update> T register(T update) {
+        Update registered = update;
+        registered.aggregator = this;
+        updates.add(registered);
+        return update;
+    }
+
+    private void publish(Update update) {
+        published.incrementAndGet();
+        if (!update.pending.compareAndSet(false, true)) {
+            coalesced.incrementAndGet();
+            return;
+        }
+
+        int depth = queueDepth.incrementAndGet();
+        if (depth > maxQueueDepth)
+            maxQueueDepth = depth;
+    }
+
+    @Override
+    public boolean render() {
+        boolean any = false;
+        for (Update update : updates) {
+            if (!update.pending.get())
+                continue;
+
+            synchronized (update) {
+                // Cleared before applying, so an update published meanwhile is shown next frame
+                update.pending.set(false);
+                queueDepth.decrementAndGet();
+                update.apply();
+            }
+            applied++;
+            any = true;
+        }
+        return any;
+    }
+
+    public long getPublished() {
+        return published.get();
+    }
+
+    /**
+     * @return Updates replaced by a newer one before they were shown
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    public long getApplied() {
+        return applied;
+    }
+
+    /**
+     * @return Widgets waiting for the next frame
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    public int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+}
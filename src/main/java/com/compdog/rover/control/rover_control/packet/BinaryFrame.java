@@ -0,0 +1,35 @@
+package com.compdog.rover.control.rover_control.packet;
+
+/**
+ * Layout of the binary protocol enabled by {@link ClientOptionFlags#BINARY_PROTOCOL}.<br>
+ * Every frame is <code>[MAGIC][type][length u16][payload]</code>, all values little-endian.
+ * The magic byte is never ASCII, so binary frames and text lines can be told apart on the same stream.
+ * Every type has a fixed payload size, frames of another length are dropped by {@link PacketReader}.
+ * <ul>
+ *     <li>HEALTH - f64 temp, i64 memoryUsed, i64 memoryTotal</li>
+ *     <li>DRIVE - 6 x f64 motor</li>
+ *     <li>WHISKR - 6 x i32 sensor</li>
+ *     <li>CHARS - 46 x f64, same order as the text packet</li>
+ *     <li>PONG - i32 id, i64 sendTime, i64 roverTime</li>
+ *     <li>MDRIVE - f64 left, f64 right</li>
+ *     <li>GETHEALTH, GETCHARS - empty</li>
+ *     <li>SETOPTS - i32 options</li>
+ *     <li>PING - i32 id, i64 sendTime</li>
+ *     <li>SETHRATE - i32 interval, i32 heartbeat</li>
+ * </ul>
+ */
+public final class BinaryFrame {
+    public static final byte MAGIC = (byte) 0xB1;
+    public static final int HEADER_SIZE = 4;
+    public static final int MAX_PAYLOAD = 0xFFFF;
+
+    public static final int HEALTH_SIZE = 24;
+    public static final int DRIVETRAIN_SIZE = 48;
+    public static final int WHISKERS_SIZE = 24;
+    public static final int CHARACTERISTICS_SIZE = 46 * 8;
+    public static final int MANUAL_DRIVE_SIZE = 16;
+    public static final int SET_OPTIONS_SIZE = 4;
+    public static final int PING_SIZE = 12;
+    public static final int PONG_SIZE = 20;
+    public static final int SET_HEALTH_RATE_SIZE = 8;
+}
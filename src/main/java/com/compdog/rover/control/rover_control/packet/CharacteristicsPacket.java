@@ -1,24 +1,50 @@
 package com.compdog.rover.control.rover_control.packet;
 
-import com.compdog.rover.control.rover_control.util.Vector3;
-import com.compdog.rover.control.rover_control.util.Vector4;
+import com.compdog.rover.control.rover_control.util.Vector3View;
+import com.compdog.rover.control.rover_control.util.Vector4View;
 
+import java.util.Arrays;
+
+/**
+ * Geometry of the rover, stored in flat arrays so decoding it allocates nothing.<br>
+ * Wheel i is at <code>wheelLocations[i * 3]</code> (x, y, z) and whisker i at <code>whiskers[i * 4]</code>
+ * (x, y, z, angle). The get methods wrap a reusable {@link Vector3View} or {@link Vector4View} around one entry.
+ */
 public class CharacteristicsPacket {
-    public Vector3 frameSize;
+    public static final int WHEELS = 6;
+    public static final int WHISKERS = 6;
+
+    public final double[] frameSize = new double[Vector3View.SIZE];
 
     public double wheelDiameter;
 
-    public Vector3 wheel1Location;
-    public Vector3 wheel0Location;
-    public Vector3 wheel3Location;
-    public Vector3 wheel4Location;
-    public Vector3 wheel5Location;
-    public Vector3 wheel2Location;
-
-    public Vector4 whisker0;
-    public Vector4 whisker1;
-    public Vector4 whisker2;
-    public Vector4 whisker3;
-    public Vector4 whisker4;
-    public Vector4 whisker5;
+    public final double[] wheelLocations = new double[WHEELS * Vector3View.SIZE];
+
+    public final double[] whiskers = new double[WHISKERS * Vector4View.SIZE];
+
+    public Vector3View getFrameSize(Vector3View view) {
+        return view.wrap(frameSize, 0);
+    }
+
+    public Vector3View getWheelLocation(int wheel, Vector3View view) {
+        return view.wrap(wheelLocations, wheel);
+    }
+
+    public Vector4View getWhisker(int whisker, Vector4View view) {
+        return view.wrap(whiskers, whisker);
+    }
+
+    public void copyFrom(CharacteristicsPacket other) {
+        System.arraycopy(other.frameSize, 0, frameSize, 0, frameSize.length);
+        wheelDiameter = other.wheelDiameter;
+        System.arraycopy(other.wheelLocations, 0, wheelLocations, 0, wheelLocations.length);
+        System.arraycopy(other.whiskers, 0, whiskers, 0, whiskers.length);
+    }
+
+    public boolean sameAs(CharacteristicsPacket other) {
+        return Double.compare(wheelDiameter, other.wheelDiameter) == 0 &&
+                Arrays.equals(frameSize, other.frameSize) &&
+                Arrays.equals(wheelLocations, other.wheelLocations) &&
+                Arrays.equals(whiskers, other.whiskers);
+    }
 }
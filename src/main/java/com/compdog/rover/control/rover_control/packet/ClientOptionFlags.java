@@ -4,4 +4,8 @@ public final class ClientOptionFlags {
     public static final byte NONE = 0;
     public static final byte LISTEN_DRIVETRAIN = (1 << 0);
     public static final byte LISTEN_WHISKERS = (1 << 1);
+    /* Switches the connection to the framing described in BinaryFrame */
+    public static final byte BINARY_PROTOCOL = (1 << 2);
+    /* Rover pushes HEALTH frames as configured by SETHRATE, see HealthRatePacket */
+    public static final byte LISTEN_HEALTH = (1 << 3);
 }
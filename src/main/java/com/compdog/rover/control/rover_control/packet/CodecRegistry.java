@@ -0,0 +1,154 @@
+package com.compdog.rover.control.rover_control.packet;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds the {@link PacketCodec} of a message in constant time.<br>
+ * Binary frames index a table by their type byte. Text lines hash the length of their prefix together with
+ * its first two bytes and the byte before the colon, the multiplier of the hash is searched when a codec is
+ * registered so that no two prefixes share a slot (a perfect hash). Identifying a line therefore costs the
+ * scan to the colon and one prefix comparison, however many types are registered.<br>
+ * Registering copies the tables, lookups read them without locking.
+ */
+public class CodecRegistry {
+
+    /* Longest prefix, lines without a colon in this many bytes are unknown */
+    public static final int MAX_PREFIX = 16;
+
+    private static final int MAX_MULTIPLIER_ATTEMPTS = 4096;
+
+    private static final class Tables {
+        final PacketCodec<?>[] byType = new PacketCodec<?>[256];
+        final PacketCodec<?>[] byPrefix;
+        final int multiplier;
+        final int shift;
+
+        Tables(int bits, int multiplier) {
+            byPrefix = new PacketCodec<?>[1 << bits];
+            this.multiplier = multiplier;
+            shift = 32 - bits;
+        }
+
+        int slot(int key) {
+            return (key * multiplier) >>> shift;
+        }
+    }
+
+    private static final CodecRegistry DEFAULT = new CodecRegistry(PacketCodecs.ALL);
+
+    private final List<PacketCodec<?>> codecs = new ArrayList<>();
+    private volatile Tables tables = new Tables(1, 1);
+
+    public CodecRegistry() {
+    }
+
+    public CodecRegistry(PacketCodec<?>... codecs) {
+        for (PacketCodec<?> codec : codecs) {
+            register(codec);
+        }
+    }
+
+    /**
+     * Registry holding every codec in {@link PacketCodecs}, used by readers created without one
+     */
+    public static CodecRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Adds a codec, or replaces the one registered for the same type and prefix
+     * @throws IllegalArgumentException if the type or the prefix is taken by a different codec, or the
+     *                                  prefix can not be told apart from another one by its hash key
+     */
+    public synchronized void register(PacketCodec<?> codec) {
+        List<PacketCodec<?>> next = new ArrayList<>(codecs);
+        next.removeIf(existing -> existing.getType() == codec.getType() && existing.getPrefix().equals(codec.getPrefix()));
+
+        for (PacketCodec<?> existing : next) {
+            if (existing.getType() == codec.getType())
+                throw new IllegalArgumentException("Type " + codec.getType() + " is taken by " + existing);
+            if (key(existing.prefixBytes, 0, existing.prefixBytes.length) == key(codec.prefixBytes, 0, codec.prefixBytes.length))
+                throw new IllegalArgumentException("Prefix " + codec.getPrefix() + " can not be told apart from " + existing);
+        }
+        next.add(codec);
+
+        tables = build(next);
+        codecs.clear();
+        codecs.addAll(next);
+    }
+
+    public synchronized List<PacketCodec<?>> getCodecs() {
+        return new ArrayList<>(codecs);
+    }
+
+    public @Nullable PacketCodec<?> get(byte type) {
+        return tables.byType[type & 0xFF];
+    }
+
+    /**
+     * @param end End of the line, exclusive
+     * @return Codec whose prefix starts the line, null if none does
+     */
+    public @Nullable PacketCodec<?> identify(byte[] buffer, int start, int end) {
+        int limit = Math.min(end, start + MAX_PREFIX);
+        int colon = start;
+        while (colon < limit && buffer[colon] != ':') {
+            colon++;
+        }
+        if (colon == limit)
+            return null;
+
+        Tables tables = this.tables;
+        int length = colon - start + 1;
+        PacketCodec<?> codec = tables.byPrefix[tables.slot(key(buffer, start, length))];
+        if (codec == null || codec.prefixBytes.length != length)
+            return null;
+
+        byte[] prefix = codec.prefixBytes;
+        for (int i = 0; i < length; i++) {
+            if (buffer[start + i] != prefix[i])
+                return null;
+        }
+        return codec;
+    }
+
+    /* Length, first two bytes and the byte before the colon, the colon itself stands in for missing bytes */
+    private static int key(byte[] buffer, int start, int length) {
+        int first = buffer[start] & 0xFF;
+        int second = length > 1 ? buffer[start + 1] & 0xFF : ':';
+        int last = length > 1 ? buffer[start + length - 2] & 0xFF : ':';
+        return first | (second << 8) | (last << 16) | (length << 24);
+    }
+
+    private static Tables build(List<PacketCodec<?>> codecs) {
+        int bits = 1;
+        while ((1 << bits) < codecs.size() * 2) {
+            bits++;
+        }
+
+        /* Golden ratio multiplier first, then odd neighbours, doubling the table when none fits */
+        while (true) {
+            int multiplier = 0x9E3779B1;
+            for (int attempt = 0; attempt < MAX_MULTIPLIER_ATTEMPTS; attempt++, multiplier += 2) {
+                Tables tables = new Tables(bits, multiplier);
+                if (fill(tables, codecs))
+                    return tables;
+            }
+            bits++;
+        }
+    }
+
+    private static boolean fill(Tables tables, List<PacketCodec<?>> codecs) {
+        for (PacketCodec<?> codec : codecs) {
+            int slot = tables.slot(key(codec.prefixBytes, 0, codec.prefixBytes.length));
+            if (tables.byPrefix[slot] != null)
+                return false;
+            tables.byPrefix[slot] = codec;
+            tables.byType[codec.getType() & 0xFF] = codec;
+        }
+        return true;
+    }
+}
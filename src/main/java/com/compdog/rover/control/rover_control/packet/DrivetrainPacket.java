@@ -1,10 +1,22 @@
 package com.compdog.rover.control.rover_control.packet;
 
+/**
+ * Motor outputs, indexed by motor number so they can be processed in loops
+ */
 public class DrivetrainPacket {
-    public double motor0;
-    public double motor1;
-    public double motor2;
-    public double motor3;
-    public double motor4;
-    public double motor5;
+    public static final int MOTORS = 6;
+
+    public final double[] motors = new double[MOTORS];
+
+    public double getMotor(int motor) {
+        return motors[motor];
+    }
+
+    public void setMotor(int motor, double value) {
+        motors[motor] = value;
+    }
+
+    public void copyFrom(DrivetrainPacket other) {
+        System.arraycopy(other.motors, 0, motors, 0, MOTORS);
+    }
 }
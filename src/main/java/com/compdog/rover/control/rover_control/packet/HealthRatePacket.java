@@ -0,0 +1,15 @@
+package com.compdog.rover.control.rover_control.packet;
+
+/**
+ * SETHRATE configures the HEALTH stream enabled by {@link ClientOptionFlags#LISTEN_HEALTH}.<br>
+ * The rover checks its health every interval and only sends a HEALTH frame when the temperature moved by at
+ * least {@link #TEMP_RESOLUTION}, the used memory by at least {@link #MEMORY_RESOLUTION} or the total memory
+ * changed at all. A frame is sent anyway once the heartbeat passes without one. Times are in milliseconds.
+ */
+public class HealthRatePacket {
+    public static final double TEMP_RESOLUTION = 0.1;
+    public static final long MEMORY_RESOLUTION = 64 * 1024;
+
+    public int interval;
+    public int heartbeat;
+}
@@ -0,0 +1,87 @@
+package com.compdog.rover.control.rover_control.packet;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decodes and encodes one packet class in both the text and the {@link BinaryFrame binary} protocol.<br>
+ * The fields are listed once, in {@link #read} and {@link #write}, through the next and put methods of
+ * {@link PacketReader} and {@link PacketWriter}, which take care of separators and byte order.
+ * Codecs hold no state, one instance serves every reader and writer.
+ * New message types plug in by registering a codec with a {@link CodecRegistry}.
+ * @param <T> Packet class, Void for commands without fields of their own
+ */
+public abstract class PacketCodec<T> {
+
+    /* Binary payload size of codecs whose frames are not checked */
+    public static final int VARIABLE_SIZE = -1;
+
+    private final byte type;
+    private final String prefix;
+    private final int binarySize;
+    final byte[] prefixBytes;
+
+    /**
+     * Codec whose binary frames may have any length
+     * @param type Binary frame type, see {@link PacketType}
+     * @param prefix Text prefix including the trailing colon
+     */
+    protected PacketCodec(byte type, String prefix) {
+        this(type, prefix, VARIABLE_SIZE);
+    }
+
+    /**
+     * @param type Binary frame type, see {@link PacketType}
+     * @param prefix Text prefix including the trailing colon
+     * @param binarySize Payload size of a binary frame, frames of another length are dropped by the reader
+     */
+    protected PacketCodec(byte type, String prefix, int binarySize) {
+        if (prefix.isEmpty() || prefix.indexOf(':') != prefix.length() - 1)
+            throw new IllegalArgumentException("Prefix must end with its only colon");
+        if (prefix.length() > CodecRegistry.MAX_PREFIX)
+            throw new IllegalArgumentException("Prefix is longer than " + CodecRegistry.MAX_PREFIX + " bytes");
+
+        if (binarySize < VARIABLE_SIZE || binarySize > BinaryFrame.MAX_PAYLOAD)
+            throw new IllegalArgumentException("Binary size must fit in a frame");
+
+        this.type = type;
+        this.prefix = prefix;
+        this.binarySize = binarySize;
+        prefixBytes = prefix.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    public byte getType() {
+        return type;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * @return Payload size of a binary frame, {@link #VARIABLE_SIZE} if it is not fixed
+     */
+    public int getBinarySize() {
+        return binarySize;
+    }
+
+    /**
+     * @return A new packet to decode into, null for Void codecs
+     */
+    public abstract T create();
+
+    /**
+     * Reads the fields of the message the reader is positioned on
+     */
+    public abstract void read(PacketReader reader, T packet);
+
+    /**
+     * Puts the fields of the packet, the writer adds the prefix or frame header and the terminator
+     */
+    public abstract void write(PacketWriter writer, T packet) throws IOException;
+
+    @Override
+    public String toString() {
+        return prefix + " (type " + type + ")";
+    }
+}
@@ -0,0 +1,203 @@
+package com.compdog.rover.control.rover_control.packet;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Codecs of the rover protocol, field order as documented in {@link BinaryFrame}
+ */
+public final class PacketCodecs {
+
+    public static final PacketCodec<HealthPacket> HEALTH = new PacketCodec<>(PacketType.HEALTH, "HEALTH:", BinaryFrame.HEALTH_SIZE) {
+        @Override
+        public HealthPacket create() {
+            return new HealthPacket();
+        }
+
+        @Override
+        public void read(PacketReader reader, HealthPacket packet) {
+            packet.temp = reader.nextDouble();
+            packet.memoryUsed = reader.nextLong();
+            packet.memoryTotal = reader.nextLong();
+        }
+
+        @Override
+        public void write(PacketWriter writer, HealthPacket packet) {
+            writer.putDouble(packet.temp);
+            writer.putLong(packet.memoryUsed);
+            writer.putLong(packet.memoryTotal);
+        }
+    };
+
+    public static final PacketCodec<DrivetrainPacket> DRIVETRAIN = new PacketCodec<>(PacketType.DRIVETRAIN, "DRIVE:", BinaryFrame.DRIVETRAIN_SIZE) {
+        @Override
+        public DrivetrainPacket create() {
+            return new DrivetrainPacket();
+        }
+
+        @Override
+        public void read(PacketReader reader, DrivetrainPacket packet) {
+            reader.nextDoubles(packet.motors, 0, DrivetrainPacket.MOTORS);
+        }
+
+        @Override
+        public void write(PacketWriter writer, DrivetrainPacket packet) {
+            writer.putDoubles(packet.motors, 0, DrivetrainPacket.MOTORS);
+        }
+    };
+
+    public static final PacketCodec<WhiskersPacket> WHISKERS = new PacketCodec<>(PacketType.WHISKERS, "WHISKR:", BinaryFrame.WHISKERS_SIZE) {
+        @Override
+        public WhiskersPacket create() {
+            return new WhiskersPacket();
+        }
+
+        @Override
+        public void read(PacketReader reader, WhiskersPacket packet) {
+            reader.nextInts(packet.sensors, 0, WhiskersPacket.SENSORS);
+        }
+
+        @Override
+        public void write(PacketWriter writer, WhiskersPacket packet) {
+            writer.putInts(packet.sensors, 0, WhiskersPacket.SENSORS);
+        }
+    };
+
+    public static final PacketCodec<CharacteristicsPacket> CHARACTERISTICS = new PacketCodec<>(PacketType.CHARACTERISTICS, "CHARS:", BinaryFrame.CHARACTERISTICS_SIZE) {
+        @Override
+        public CharacteristicsPacket create() {
+            return new CharacteristicsPacket();
+        }
+
+        @Override
+        public void read(PacketReader reader, CharacteristicsPacket packet) {
+            reader.nextDoubles(packet.frameSize, 0, packet.frameSize.length);
+            packet.wheelDiameter = reader.nextDouble();
+            reader.nextDoubles(packet.wheelLocations, 0, packet.wheelLocations.length);
+            reader.nextDoubles(packet.whiskers, 0, packet.whiskers.length);
+        }
+
+        @Override
+        public void write(PacketWriter writer, CharacteristicsPacket packet) {
+            writer.putDoubles(packet.frameSize, 0, packet.frameSize.length);
+            writer.putDouble(packet.wheelDiameter);
+            writer.putDoubles(packet.wheelLocations, 0, packet.wheelLocations.length);
+            writer.putDoubles(packet.whiskers, 0, packet.whiskers.length);
+        }
+    };
+
+    public static final PacketCodec<PingPacket> PONG = new PacketCodec<>(PacketType.PONG, "PONG:", BinaryFrame.PONG_SIZE) {
+        @Override
+        public PingPacket create() {
+            return new PingPacket();
+        }
+
+        @Override
+        public void read(PacketReader reader, PingPacket packet) {
+            packet.id = reader.nextInt();
+            packet.sendTime = reader.nextLong();
+            packet.roverTime = reader.nextLong();
+        }
+
+        @Override
+        public void write(PacketWriter writer, PingPacket packet) {
+            writer.putInt(packet.id);
+            writer.putLong(packet.sendTime);
+            writer.putLong(packet.roverTime);
+        }
+    };
+
+    public static final PacketCodec<ManualDrivePacket> MANUAL_DRIVE = new PacketCodec<>(PacketType.MANUAL_DRIVE, "MDRIVE:", BinaryFrame.MANUAL_DRIVE_SIZE) {
+        @Override
+        public ManualDrivePacket create() {
+            return new ManualDrivePacket(0, 0);
+        }
+
+        @Override
+        public void read(PacketReader reader, ManualDrivePacket packet) {
+            packet.left = reader.nextDouble();
+            packet.right = reader.nextDouble();
+        }
+
+        @Override
+        public void write(PacketWriter writer, ManualDrivePacket packet) {
+            writer.putDouble(packet.left);
+            writer.putDouble(packet.right);
+        }
+    };
+
+    public static final PacketCodec<Void> REQUEST_HEALTH = new EmptyCodec(PacketType.REQUEST_HEALTH, "GETHEALTH:", 0);
+
+    public static final PacketCodec<Void> REQUEST_CHARACTERISTICS = new EmptyCodec(PacketType.REQUEST_CHARACTERISTICS, "GETCHARS:", 0);
+
+    /**
+     * The options have no packet class, they are read with {@link PacketReader#nextInt()}
+     */
+    public static final PacketCodec<Void> SET_OPTIONS = new EmptyCodec(PacketType.SET_OPTIONS, "SETOPTS:", BinaryFrame.SET_OPTIONS_SIZE);
+
+    public static final PacketCodec<PingPacket> PING = new PacketCodec<>(PacketType.PING, "PING:", BinaryFrame.PING_SIZE) {
+        @Override
+        public PingPacket create() {
+            return new PingPacket();
+        }
+
+        @Override
+        public void read(PacketReader reader, PingPacket packet) {
+            packet.id = reader.nextInt();
+            packet.sendTime = reader.nextLong();
+            packet.roverTime = 0;
+        }
+
+        @Override
+        public void write(PacketWriter writer, PingPacket packet) {
+            writer.putInt(packet.id);
+            writer.putLong(packet.sendTime);
+        }
+    };
+
+    public static final PacketCodec<HealthRatePacket> SET_HEALTH_RATE = new PacketCodec<>(PacketType.SET_HEALTH_RATE, "SETHRATE:", BinaryFrame.SET_HEALTH_RATE_SIZE) {
+        @Override
+        public HealthRatePacket create() {
+            return new HealthRatePacket();
+        }
+
+        @Override
+        public void read(PacketReader reader, HealthRatePacket packet) {
+            packet.interval = reader.nextInt();
+            packet.heartbeat = reader.nextInt();
+        }
+
+        @Override
+        public void write(PacketWriter writer, HealthRatePacket packet) {
+            writer.putInt(packet.interval);
+            writer.putInt(packet.heartbeat);
+        }
+    };
+
+    static final PacketCodec<?>[] ALL = {
+            HEALTH, DRIVETRAIN, WHISKERS, CHARACTERISTICS, PONG,
+            MANUAL_DRIVE, REQUEST_HEALTH, REQUEST_CHARACTERISTICS, SET_OPTIONS, PING, SET_HEALTH_RATE
+    };
+
+    private PacketCodecs() {
+    }
+
+    /* Commands without a packet class of their own, the SETOPTS payload is read with nextInt */
+    private static final class EmptyCodec extends PacketCodec<Void> {
+        EmptyCodec(byte type, String prefix, int binarySize) {
+            super(type, prefix, binarySize);
+        }
+
+        @Override
+        public @Nullable Void create() {
+            return null;
+        }
+
+        @Override
+        public void read(PacketReader reader, @Nullable Void packet) {
+        }
+
+        @Override
+        public void write(PacketWriter writer, @Nullable Void packet) {
+        }
+    }
+}
@@ -0,0 +1,465 @@
+package com.compdog.rover.control.rover_control.packet;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads newline terminated packets and {@link BinaryFrame binary frames} from a stream into a reusable buffer.<br>
+ * Text fields are tokenized on '|' in place and numbers are parsed straight from the
+ * buffer, so reading a packet does not allocate in steady state. The same read methods
+ * decode either encoding.<br>
+ * Messages are identified through a {@link CodecRegistry}, the {@link #getCodec() codec} of the current
+ * message decodes it.
+ */
+public class PacketReader {
+
+    private static final int DEFAULT_CAPACITY = 4096;
+    private static final int MAX_CAPACITY = 1 << 20;
+    /* Dropped frames are logged at most this often, a desynced stream would flood the log otherwise */
+    private static final long DROP_LOG_INTERVAL = TimeUnit.SECONDS.toNanos(10);
+
+    /* Largest mantissa and exponent for which m * 10^e is exactly rounded in double arithmetic */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final @Nullable InputStream stream;
+    private final CodecRegistry codecs;
+    private byte[] buffer;
+    private ByteBuffer frame;
+
+    private int limit;
+    private int lineStart;
+    private int lineEnd;
+    private int nextLine;
+    private int position;
+
+    private byte type;
+    private @Nullable PacketCodec<?> codec;
+    private boolean binary;
+    private long malformed = 0;
+    private long malformedLogged = 0;
+    private long lastDropLog;
+
+    public PacketReader(InputStream stream) {
+        this(stream, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a reader without a stream, data is supplied through {@link #append(ByteBuffer)}
+     * and {@link #next()} returns false as soon as no complete message is buffered.
+     */
+    public PacketReader(int capacity) {
+        this(null, capacity);
+    }
+
+    public PacketReader(@Nullable InputStream stream, int capacity) {
+        this(stream, capacity, CodecRegistry.getDefault());
+    }
+
+    public PacketReader(@Nullable InputStream stream, int capacity, CodecRegistry codecs) {
+        this.stream = stream;
+        this.codecs = codecs;
+        buffer = new byte[capacity];
+        frame = ByteBuffer.wrap(buffer).order(ByteOrder.LITTLE_ENDIAN);
+        type = PacketType.UNKNOWN;
+    }
+
+    /**
+     * Blocks until the next complete line or binary frame is available and identifies its packet type.
+     * Binary frames whose length does not match the size of their type are skipped and counted in
+     * {@link #getMalformed()}.
+     * @return false when the end of the stream was reached, or when no complete message is buffered
+     *         for a reader without a stream
+     * @throws IOException if reading from the stream fails or a line does not fit in the buffer
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            lineStart = nextLine;
+            if (!ensure(1))
+                return false;
+            if (buffer[lineStart] != BinaryFrame.MAGIC)
+                return nextLine();
+            if (!ensure(BinaryFrame.HEADER_SIZE))
+                return false;
+
+            int length = (buffer[lineStart + 2] & 0xFF) | ((buffer[lineStart + 3] & 0xFF) << 8);
+            if (!ensure(BinaryFrame.HEADER_SIZE + length))
+                return false;
+
+            byte frameType = buffer[lineStart + 1];
+            PacketCodec<?> frameCodec = codecs.get(frameType);
+            nextLine = lineStart + BinaryFrame.HEADER_SIZE + length;
+            if (frameCodec != null && frameCodec.getBinarySize() != PacketCodec.VARIABLE_SIZE &&
+                    frameCodec.getBinarySize() != length) {
+                // A frame of the wrong size would be decoded into garbage, the length still tells where the next one starts
+                malformed++;
+                logDrop(frameCodec, length);
+                continue;
+            }
+
+            binary = true;
+            type = frameType;
+            codec = frameCodec;
+            position = lineStart + BinaryFrame.HEADER_SIZE;
+            lineEnd = nextLine;
+            return true;
+        }
+    }
+
+    /* The first drop right away, later ones summed up once per interval */
+    private void logDrop(PacketCodec<?> frameCodec, int length) {
+        long now = System.nanoTime();
+        if (malformedLogged != 0 && now - lastDropLog < DROP_LOG_INTERVAL)
+            return;
+
+        String frame = frameCodec + " frame of " + length + " bytes, expected " + frameCodec.getBinarySize();
+        if (malformedLogged == 0)
+            System.out.println("[PacketReader] Dropped " + frame + ", further drops are summed up every " +
+                    TimeUnit.NANOSECONDS.toSeconds(DROP_LOG_INTERVAL) + " s");
+        else
+            System.out.println("[PacketReader] Dropped " + (malformed - malformedLogged) + " malformed frames, last " + frame);
+        malformedLogged = malformed;
+        lastDropLog = now;
+    }
+
+    private boolean nextLine() throws IOException {
+        int scan = lineStart;
+        while (true) {
+            while (scan < limit && buffer[scan] != '\n') {
+                scan++;
+            }
+
+            if (scan < limit)
+                break;
+
+            int scanned = scan - lineStart;
+            if (!ensure(scanned + 1))
+                return false;
+            scan = lineStart + scanned;
+        }
+
+        nextLine = scan + 1;
+        lineEnd = scan;
+        if (lineEnd > lineStart && buffer[lineEnd - 1] == '\r')
+            lineEnd--;
+
+        binary = false;
+        identify();
+        return true;
+    }
+
+    /* Makes sure at least count bytes of the current message are buffered */
+    private boolean ensure(int count) throws IOException {
+        while (limit - lineStart < count) {
+            if (stream == null) {
+                // Resume from the start of this message once more data was appended
+                nextLine = lineStart;
+                return false;
+            }
+
+            if (lineStart + count > buffer.length)
+                makeRoom(count);
+
+            int read = stream.read(buffer, limit, buffer.length - limit);
+            if (read < 0) {
+                nextLine = limit = lineStart = 0;
+                return false;
+            }
+
+            limit += read;
+        }
+
+        return true;
+    }
+
+    /**
+     * Copies the remaining bytes of the source into the buffer, for readers without a stream
+     * @throws IOException if a single message would not fit in the buffer
+     */
+    public void append(ByteBuffer source) throws IOException {
+        lineStart = nextLine;
+        int count = limit - lineStart + source.remaining();
+        if (lineStart + count > buffer.length)
+            makeRoom(count);
+
+        int length = source.remaining();
+        source.get(buffer, limit, length);
+        limit += length;
+    }
+
+    /* Moves the current message to the start of the buffer and grows it to hold at least count bytes */
+    private void makeRoom(int count) throws IOException {
+        System.arraycopy(buffer, lineStart, buffer, 0, limit - lineStart);
+        limit -= lineStart;
+        nextLine -= lineStart;
+        lineStart = 0;
+
+        if (count > buffer.length) {
+            if (count > MAX_CAPACITY)
+                throw new IOException("Message exceeds " + MAX_CAPACITY + " bytes");
+
+            byte[] grown = new byte[Math.min(Math.max(buffer.length * 2, count), MAX_CAPACITY)];
+            System.arraycopy(buffer, 0, grown, 0, limit);
+            buffer = grown;
+            frame = ByteBuffer.wrap(buffer).order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    public byte getType() {
+        return type;
+    }
+
+    /**
+     * @return true if the current message arrived as a binary frame instead of a text line
+     */
+    public boolean isBinary() {
+        return binary;
+    }
+
+    /**
+     * @return Binary frames dropped because their length did not match the size of their type
+     */
+    public long getMalformed() {
+        return malformed;
+    }
+
+    /**
+     * @return Codec of the current message, null if its type is not registered
+     */
+    public @Nullable PacketCodec<?> getCodec() {
+        return codec;
+    }
+
+    private void identify() {
+        codec = codecs.identify(buffer, lineStart, lineEnd);
+        if (codec != null) {
+            type = codec.getType();
+            position = lineStart + codec.prefixBytes.length;
+        } else {
+            type = PacketType.UNKNOWN;
+            position = lineStart;
+        }
+    }
+
+    /**
+     * Only meant for diagnostics, allocates a new String
+     */
+    public String getLine() {
+        if (binary)
+            return "<frame type " + type + ", " + (lineEnd - lineStart - BinaryFrame.HEADER_SIZE) + " bytes>";
+        return new String(buffer, lineStart, lineEnd - lineStart, StandardCharsets.US_ASCII);
+    }
+
+    private int field(int size) {
+        int start = position;
+        if (start + size > lineEnd)
+            throw new NumberFormatException("Truncated field in " + getLine());
+        position += size;
+        return start;
+    }
+
+    private int tokenEnd() {
+        if (position > lineEnd)
+            throw new NumberFormatException("Missing field in \"" + getLine() + "\"");
+
+        int end = position;
+        while (end < lineEnd && buffer[end] != '|') {
+            end++;
+        }
+        return end;
+    }
+
+    public long nextLong() {
+        if (binary)
+            return frame.getLong(field(Long.BYTES));
+
+        int start = position;
+        int end = tokenEnd();
+        position = end + 1;
+
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+            negative = buffer[i] == '-';
+            i++;
+        }
+
+        if (i == end)
+            throw invalidNumber(start, end);
+
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = buffer[i] - '0';
+            if (digit < 0 || digit > 9)
+                throw invalidNumber(start, end);
+
+            /* accumulate negatively so Long.MIN_VALUE parses */
+            if (value < (Long.MIN_VALUE + digit) / 10)
+                throw invalidNumber(start, end);
+            value = value * 10 - digit;
+        }
+
+        if (!negative) {
+            if (value == Long.MIN_VALUE)
+                throw invalidNumber(start, end);
+            value = -value;
+        }
+
+        return value;
+    }
+
+    public int nextInt() {
+        if (binary)
+            return frame.getInt(field(Integer.BYTES));
+
+        int start = position;
+        long value = nextLong();
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)
+            throw invalidNumber(start, position - 1);
+        return (int) value;
+    }
+
+    public double nextDouble() {
+        if (binary)
+            return frame.getDouble(field(Double.BYTES));
+
+        int start = position;
+        int end = tokenEnd();
+        position = end + 1;
+
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+            negative = buffer[i] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean any = false;
+        boolean dot = false;
+
+        for (; i < end; i++) {
+            byte b = buffer[i];
+            if (b >= '0' && b <= '9') {
+                any = true;
+                if (mantissa != 0 || b != '0') {
+                    if (++digits > 18)
+                        return parseSlow(start, end);
+                    mantissa = mantissa * 10 + (b - '0');
+                }
+                if (dot)
+                    exponent--;
+            } else if (b == '.' && !dot) {
+                dot = true;
+            } else {
+                break;
+            }
+        }
+
+        if (!any)
+            return parseSlow(start, end);
+
+        if (i < end) {
+            if (buffer[i] != 'e' && buffer[i] != 'E')
+                return parseSlow(start, end);
+            i++;
+
+            boolean negativeExponent = false;
+            if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+                negativeExponent = buffer[i] == '-';
+                i++;
+            }
+
+            if (i == end)
+                throw invalidNumber(start, end);
+
+            int exp = 0;
+            for (; i < end; i++) {
+                int digit = buffer[i] - '0';
+                if (digit < 0 || digit > 9 || exp > 1000)
+                    return parseSlow(start, end);
+                exp = exp * 10 + digit;
+            }
+            exponent += negativeExponent ? -exp : exp;
+        }
+
+        double value;
+        if (mantissa == 0) {
+            value = 0.0;
+        } else if (mantissa <= MAX_EXACT_MANTISSA && exponent >= -22 && exponent <= 22) {
+            value = exponent >= 0 ?
+                    mantissa * POWERS_OF_TEN[exponent] :
+                    mantissa / POWERS_OF_TEN[-exponent];
+        } else {
+            return parseSlow(start, end);
+        }
+
+        return negative ? -value : value;
+    }
+
+    /**
+     * Reads count doubles into the array, in the order they were put
+     */
+    public void nextDoubles(double[] values, int offset, int count) {
+        for (int i = offset; i < offset + count; i++) {
+            values[i] = nextDouble();
+        }
+    }
+
+    public void nextInts(int[] values, int offset, int count) {
+        for (int i = offset; i < offset + count; i++) {
+            values[i] = nextInt();
+        }
+    }
+
+    /* Rare inputs (very long mantissas, huge exponents, NaN/Infinity) go through the JDK parser */
+    private double parseSlow(int start, int end) {
+        return Double.parseDouble(new String(buffer, start, end - start, StandardCharsets.US_ASCII));
+    }
+
+    private NumberFormatException invalidNumber(int start, int end) {
+        return new NumberFormatException("For input string: \"" + new String(buffer, start, end - start, StandardCharsets.US_ASCII) + "\"");
+    }
+
+    public void read(HealthPacket packet) {
+        PacketCodecs.HEALTH.read(this, packet);
+    }
+
+    public void read(DrivetrainPacket packet) {
+        PacketCodecs.DRIVETRAIN.read(this, packet);
+    }
+
+    public void read(WhiskersPacket packet) {
+        PacketCodecs.WHISKERS.read(this, packet);
+    }
+
+    public void read(CharacteristicsPacket packet) {
+        PacketCodecs.CHARACTERISTICS.read(this, packet);
+    }
+
+    public void read(ManualDrivePacket packet) {
+        PacketCodecs.MANUAL_DRIVE.read(this, packet);
+    }
+
+    public void read(HealthRatePacket packet) {
+        PacketCodecs.SET_HEALTH_RATE.read(this, packet);
+    }
+
+    /**
+     * Reads a PING or a PONG, the rover time is only set for a PONG
+     */
+    public void read(PingPacket packet) {
+        (type == PacketType.PONG ? PacketCodecs.PONG : PacketCodecs.PING).read(this, packet);
+    }
+}
@@ -0,0 +1,20 @@
+package com.compdog.rover.control.rover_control.packet;
+
+public final class PacketType {
+    public static final byte UNKNOWN = 0;
+    public static final byte HEALTH = 1;
+    public static final byte DRIVETRAIN = 2;
+    public static final byte WHISKERS = 3;
+    public static final byte CHARACTERISTICS = 4;
+    public static final byte PONG = 5;
+
+    public static final byte MANUAL_DRIVE = 0x10;
+    public static final byte REQUEST_HEALTH = 0x11;
+    public static final byte REQUEST_CHARACTERISTICS = 0x12;
+    public static final byte SET_OPTIONS = 0x13;
+    public static final byte PING = 0x14;
+    public static final byte SET_HEALTH_RATE = 0x15;
+
+    /* Never sent, estimated by the client and stored by the flight recorder */
+    public static final byte POSE = 0x40;
+}
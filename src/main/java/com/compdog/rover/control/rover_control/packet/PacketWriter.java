@@ -0,0 +1,253 @@
+package com.compdog.rover.control.rover_control.packet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Encodes commands and telemetry into a reusable buffer and writes each one to the output in a single call.<br>
+ * Packets are sent as text lines until {@link #setBinary(boolean)} switches to {@link BinaryFrame binary frames}.
+ * The fields of each packet are put by its {@link PacketCodec}.
+ */
+public class PacketWriter {
+
+    /**
+     * Destination of encoded commands, receives one complete command per call
+     */
+    public interface Output {
+        void write(ByteBuffer data) throws IOException;
+    }
+
+    private static final int CAPACITY = 1024;
+
+    private static final int DECIMAL_DIGITS = 6;
+    private static final long DECIMAL_UNITS = 1_000_000;
+    private static final double DECIMAL_SCALE = 1e6;
+    private static final double DECIMAL_FAST_LIMIT = 1e9;
+
+    private final Output output;
+    private final ByteBuffer buffer;
+
+    private volatile boolean binary;
+
+    /* Encoding of the packet being written and the number of fields put so far */
+    private boolean frameBinary;
+    private int fields;
+
+    public PacketWriter(OutputStream stream) {
+        this(data -> {
+            stream.write(data.array(), data.arrayOffset() + data.position(), data.remaining());
+            stream.flush();
+        });
+    }
+
+    public PacketWriter(Output output) {
+        this.output = output;
+        buffer = ByteBuffer.allocate(CAPACITY).order(ByteOrder.LITTLE_ENDIAN);
+        binary = false;
+    }
+
+    public boolean isBinary() {
+        return binary;
+    }
+
+    public void setBinary(boolean binary) {
+        this.binary = binary;
+    }
+
+    /**
+     * Encodes the packet with the codec and writes it as one text line or binary frame
+     */
+    public synchronized <T> void write(PacketCodec<T> codec, T packet) throws IOException {
+        begin(codec);
+        codec.write(this, packet);
+        end();
+    }
+
+    public void write(ManualDrivePacket packet) throws IOException {
+        write(PacketCodecs.MANUAL_DRIVE, packet);
+    }
+
+    public void writeRequestHealth() throws IOException {
+        write(PacketCodecs.REQUEST_HEALTH, null);
+    }
+
+    public void writeRequestCharacteristics() throws IOException {
+        write(PacketCodecs.REQUEST_CHARACTERISTICS, null);
+    }
+
+    public synchronized void writeSetOptions(int options) throws IOException {
+        begin(PacketCodecs.SET_OPTIONS);
+        putInt(options);
+        end();
+    }
+
+    public void writePing(PingPacket packet) throws IOException {
+        write(PacketCodecs.PING, packet);
+    }
+
+    public void write(HealthRatePacket packet) throws IOException {
+        write(PacketCodecs.SET_HEALTH_RATE, packet);
+    }
+
+    /* Telemetry, as sent by the rover */
+
+    public void writePong(PingPacket packet) throws IOException {
+        write(PacketCodecs.PONG, packet);
+    }
+
+    public void write(HealthPacket packet) throws IOException {
+        write(PacketCodecs.HEALTH, packet);
+    }
+
+    public void write(DrivetrainPacket packet) throws IOException {
+        write(PacketCodecs.DRIVETRAIN, packet);
+    }
+
+    public void write(WhiskersPacket packet) throws IOException {
+        write(PacketCodecs.WHISKERS, packet);
+    }
+
+    public void write(CharacteristicsPacket packet) throws IOException {
+        write(PacketCodecs.CHARACTERISTICS, packet);
+    }
+
+    /* Field writers, only called by codecs from within write */
+
+    public void putDouble(double value) {
+        if (frameBinary) {
+            buffer.putDouble(value);
+        } else {
+            separate();
+            putDecimal(value);
+        }
+    }
+
+    public void putInt(int value) {
+        if (frameBinary) {
+            buffer.putInt(value);
+        } else {
+            separate();
+            putDigits(value);
+        }
+    }
+
+    public void putLong(long value) {
+        if (frameBinary) {
+            buffer.putLong(value);
+        } else {
+            separate();
+            putDigits(value);
+        }
+    }
+
+    public void putDoubles(double[] values, int offset, int count) {
+        for (int i = offset; i < offset + count; i++) {
+            putDouble(values[i]);
+        }
+    }
+
+    public void putInts(int[] values, int offset, int count) {
+        for (int i = offset; i < offset + count; i++) {
+            putInt(values[i]);
+        }
+    }
+
+    private void separate() {
+        if (fields++ > 0)
+            buffer.put((byte) '|');
+    }
+
+    private void begin(PacketCodec<?> codec) {
+        buffer.clear();
+        fields = 0;
+        frameBinary = binary;
+        if (frameBinary) {
+            buffer.put(BinaryFrame.MAGIC);
+            buffer.put(codec.getType());
+            buffer.putShort((short) 0);
+        } else {
+            buffer.put(codec.prefixBytes);
+        }
+    }
+
+    private void end() throws IOException {
+        if (frameBinary)
+            buffer.putShort(2, (short) (buffer.position() - BinaryFrame.HEADER_SIZE));
+        else
+            buffer.put((byte) '\n');
+        flush();
+    }
+
+    /**
+     * Writes the value with six fraction digits, producing the same bytes as <code>"%f"</code>
+     * in the root locale. Formatter rounds the shortest decimal representation half up, the fast
+     * path only diverges from that when the scaled value is within a few ulps of a tie, so those
+     * and very large values go through the JDK.
+     */
+    private void putDecimal(double value) {
+        double magnitude = Math.abs(value);
+        if (!(magnitude < DECIMAL_FAST_LIMIT)) {
+            putDecimalSlow(value);
+            return;
+        }
+
+        double scaled = magnitude * DECIMAL_SCALE;
+        double whole = Math.floor(scaled);
+        double fraction = scaled - whole;
+        if (Math.abs(fraction - 0.5) <= 4 * Math.ulp(scaled)) {
+            putDecimalSlow(value);
+            return;
+        }
+
+        long units = (long) whole + (fraction > 0.5 ? 1 : 0);
+
+        /* Formatter keeps the sign of negative values that round to zero, including -0.0 */
+        if (Double.compare(value, 0.0) < 0)
+            buffer.put((byte) '-');
+
+        putDigits(units / DECIMAL_UNITS);
+        buffer.put((byte) '.');
+
+        long fractionDigits = units % DECIMAL_UNITS;
+        int end = buffer.position() + DECIMAL_DIGITS;
+        for (int i = end - 1; i >= end - DECIMAL_DIGITS; i--) {
+            buffer.put(i, (byte) ('0' + fractionDigits % 10));
+            fractionDigits /= 10;
+        }
+        buffer.position(end);
+    }
+
+    private void putDecimalSlow(double value) {
+        buffer.put(String.format(Locale.ROOT, "%f", value).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private void putDigits(long value) {
+        if (value < 0) {
+            buffer.put((byte) '-');
+        } else {
+            value = -value;
+        }
+
+        /* digits are produced from a negative value so Long.MIN_VALUE works */
+        int start = buffer.position();
+        do {
+            buffer.put((byte) ('0' - value % 10));
+            value /= 10;
+        } while (value != 0);
+
+        for (int i = start, j = buffer.position() - 1; i < j; i++, j--) {
+            byte b = buffer.get(i);
+            buffer.put(i, buffer.get(j));
+            buffer.put(j, b);
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        output.write(buffer);
+    }
+}
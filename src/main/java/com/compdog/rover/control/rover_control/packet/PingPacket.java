@@ -0,0 +1,11 @@
+package com.compdog.rover.control.rover_control.packet;
+
+/**
+ * PING carries an id and the client send time, the rover answers with a PONG that echoes
+ * both and adds its own clock reading. All times are in nanoseconds.
+ */
+public class PingPacket {
+    public int id;
+    public long sendTime;
+    public long roverTime;
+}
@@ -1,10 +1,22 @@
 package com.compdog.rover.control.rover_control.packet;
 
+/**
+ * Whisker readings, indexed by whisker number so they can be processed in loops
+ */
 public class WhiskersPacket {
-    public int sensor0;
-    public int sensor1;
-    public int sensor2;
-    public int sensor3;
-    public int sensor4;
-    public int sensor5;
+    public static final int SENSORS = 6;
+
+    public final int[] sensors = new int[SENSORS];
+
+    public int getSensor(int sensor) {
+        return sensors[sensor];
+    }
+
+    public void setSensor(int sensor, int value) {
+        sensors[sensor] = value;
+    }
+
+    public void copyFrom(WhiskersPacket other) {
+        System.arraycopy(other.sensors, 0, sensors, 0, SENSORS);
+    }
 }
@@ -0,0 +1,399 @@
+package com.compdog.rover.control.rover_control.recorder;
+
+import com.compdog.rover.control.rover_control.Odometry;
+import com.compdog.rover.control.rover_control.packet.DrivetrainPacket;
+import com.compdog.rover.control.rover_control.packet.HealthPacket;
+import com.compdog.rover.control.rover_control.packet.PacketType;
+import com.compdog.rover.control.rover_control.packet.WhiskersPacket;
+import com.compdog.rover.control.rover_control.util.RecordRing;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Records received telemetry into a ring of memory-mapped segment files.<br>
+ * The receiving thread only copies the values into a {@link RecordRing}, a background thread
+ * appends them to the mapped segment. Once the last segment is full the oldest one is reused.
+ * Every segment starts with a header holding a sequence number and the number of committed records,
+ * which is only raised after the records are written, so a crashed process leaves every
+ * counted record intact in the page cache.<br>
+ * The pose of an {@link Odometry} is not handed over by the receiving thread, the background thread
+ * follows its trajectory instead and records every pose it did not fall behind on.
+ * <ul>
+ *     <li>Header ({@value #HEADER_SIZE} bytes) - i32 magic, i32 version, i64 sequence, i64 committed records,
+ *     i32 record size, i32 capacity in records, i64 wall clock in ms and i64 nanoTime when the segment was started</li>
+ *     <li>Record ({@value #RECORD_SIZE} bytes) - i64 nanoTime, u8 type, 7 reserved bytes, 6 x 8 byte fields</li>
+ *     <li>DRIVE fields - f64 motor0 to motor5</li>
+ *     <li>WHISKR fields - i64 sensor0 to sensor5</li>
+ *     <li>HEALTH fields - f64 temp, i64 memoryUsed, i64 memoryTotal</li>
+ *     <li>POSE fields - f64 x, f64 y, f64 heading, f64 velocity, f64 yaw rate</li>
+ * </ul>
+ * All values are little-endian.
+ */
+public class FlightRecorder implements AutoCloseable {
+
+    public static final int MAGIC = 0x43525652; // "RVRC"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 64;
+    public static final int RECORD_SIZE = 64;
+    public static final int FIELDS = 6;
+
+    public static final int HEADER_MAGIC = 0;
+    public static final int HEADER_VERSION = 4;
+    public static final int HEADER_SEQUENCE = 8;
+    public static final int HEADER_COMMITTED = 16;
+    public static final int HEADER_RECORD_SIZE = 24;
+    public static final int HEADER_CAPACITY = 28;
+    public static final int HEADER_WALL_CLOCK = 32;
+    public static final int HEADER_NANO_TIME = 40;
+
+    public static final int RECORD_TIME = 0;
+    public static final int RECORD_TYPE = 8;
+    public static final int RECORD_FIELDS = 16;
+
+    public static final String SEGMENT_PREFIX = "segment-";
+    public static final String SEGMENT_SUFFIX = ".rec";
+
+    private static final int RING_CAPACITY = 16384;
+    private static final int RING_RECORD_LONGS = 2 + FIELDS;
+    /* The receiving thread wakes the recorder, the timeout only picks up poses published without a record */
+    private static final long IDLE_PARK = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final Path directory;
+    private final int segmentCount;
+    private final int segmentRecords;
+
+    private final RecordRing ring = new RecordRing(RING_CAPACITY, RING_RECORD_LONGS);
+    private final Thread thread;
+    private volatile boolean running;
+    private volatile boolean waiting = false;
+
+    private volatile @Nullable Odometry odometry = null;
+    /* Trajectory position of the pose that was current when the odometry was set */
+    private volatile long followFrom = 0;
+    private final Odometry.Pose pose = new Odometry.Pose();
+    private final long[] poseRecord = new long[RING_RECORD_LONGS];
+    private @Nullable Odometry followed = null;
+    private long posePosition = 0;
+
+    private MappedByteBuffer segment;
+    private int segmentIndex = -1;
+    private long sequence = 0;
+    private int segmentPosition = 0;
+
+    private volatile long recorded = 0;
+    /* Records dropped by the receiving thread and poses dropped by the recorder thread, one writer each */
+    private volatile long dropped = 0;
+    private volatile long posesDropped = 0;
+    private volatile long written = 0;
+
+    /**
+     * Creates or reuses the segment files in the directory
+     * @param directory Directory for the segment files, created if missing
+     * @param segmentCount Number of segment files in the ring
+     * @param segmentSize Size of each segment file in bytes
+     */
+    public FlightRecorder(Path directory, int segmentCount, int segmentSize) throws IOException {
+        if (segmentCount < 2)
+            throw new IllegalArgumentException("At least two segments are required");
+        if (segmentSize < HEADER_SIZE + RECORD_SIZE)
+            throw new IllegalArgumentException("Segments must hold at least one record");
+
+        this.directory = directory;
+        this.segmentCount = segmentCount;
+        segmentRecords = (segmentSize - HEADER_SIZE) / RECORD_SIZE;
+
+        Files.createDirectories(directory);
+
+        /* Continue after the newest existing segment, so older sessions are overwritten oldest first */
+        long newest = -1;
+        for (int i = 0; i < segmentCount; i++) {
+            long existing = readSequence(getSegmentPath(directory, i));
+            if (existing > newest) {
+                newest = existing;
+                segmentIndex = i;
+                sequence = existing;
+            }
+        }
+
+        openNextSegment();
+
+        running = true;
+        thread = new Thread(this::recorderThread, "Flight Recorder Thread");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public static Path getSegmentPath(Path directory, int index) {
+        return directory.resolve(String.format("%s%03d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+
+    /* Sequence of a valid existing segment, -1 otherwise */
+    private static long readSequence(Path path) throws IOException {
+        if (!Files.isRegularFile(path) || Files.size(path) < HEADER_SIZE)
+            return -1;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt(HEADER_MAGIC) != MAGIC)
+                return -1;
+            return header.getLong(HEADER_SEQUENCE);
+        }
+    }
+
+    public void record(long time, DrivetrainPacket packet) {
+        int offset = begin(time, PacketType.DRIVETRAIN);
+        if (offset < 0)
+            return;
+
+        long[] data = ring.data();
+        for (int i = 0; i < DrivetrainPacket.MOTORS; i++) {
+            data[offset + i] = Double.doubleToRawLongBits(packet.motors[i]);
+        }
+        end();
+    }
+
+    public void record(long time, WhiskersPacket packet) {
+        int offset = begin(time, PacketType.WHISKERS);
+        if (offset < 0)
+            return;
+
+        long[] data = ring.data();
+        for (int i = 0; i < WhiskersPacket.SENSORS; i++) {
+            data[offset + i] = packet.sensors[i];
+        }
+        end();
+    }
+
+    public void record(long time, HealthPacket packet) {
+        int offset = begin(time, PacketType.HEALTH);
+        if (offset < 0)
+            return;
+
+        long[] data = ring.data();
+        data[offset] = Double.doubleToRawLongBits(packet.temp);
+        data[offset + 1] = packet.memoryUsed;
+        data[offset + 2] = packet.memoryTotal;
+        data[offset + 3] = 0;
+        data[offset + 4] = 0;
+        data[offset + 5] = 0;
+        end();
+    }
+
+    /* Returns the offset of the first field, or -1 if the record was dropped */
+    private int begin(long time, byte type) {
+        int offset = ring.claim();
+        if (offset < 0) {
+            dropped++;
+            return -1;
+        }
+
+        long[] data = ring.data();
+        data[offset] = time;
+        data[offset + 1] = type;
+        return offset + 2;
+    }
+
+    private void end() {
+        ring.publish();
+        recorded++;
+
+        // Pairs with the recorder raising the flag before it checks the ring a last time
+        if (waiting)
+            LockSupport.unpark(thread);
+    }
+
+    private void recorderThread() {
+        while (running) {
+            if (drain() > 0)
+                continue;
+
+            waiting = true;
+            if (ring.size() == 0 && running)
+                LockSupport.parkNanos(this, IDLE_PARK);
+            waiting = false;
+        }
+
+        drain();
+        System.out.println("[FlightRecorder] Recorder thread dying");
+    }
+
+    private int drain() {
+        int count = 0;
+        int offset;
+        long[] data = ring.data();
+        boolean posePending = nextPose();
+
+        /* Records and poses are each in time order, merged so the segments are too */
+        while ((offset = ring.peek()) >= 0 || posePending) {
+            if (posePending && (offset < 0 || poseRecord[0] - data[offset] <= 0)) {
+                if (!append(poseRecord, 0))
+                    return count;
+                posePosition++;
+                posePending = nextPose();
+            } else {
+                if (!append(data, offset))
+                    return count;
+                ring.release();
+            }
+            count++;
+        }
+
+        if (count > 0) {
+            commit();
+            written += count;
+        }
+        return count;
+    }
+
+    /*
+     * Loads the oldest pose not written yet into poseRecord, false if there is none.
+     * A new odometry is followed from the pose that was current when it was set.
+     */
+    private boolean nextPose() {
+        Odometry odometry = this.odometry;
+        if (odometry != followed) {
+            followed = odometry;
+            if (odometry != null)
+                posePosition = Math.min(followFrom, odometry.getTrajectoryEnd());
+        }
+        if (odometry == null)
+            return false;
+
+        long start = odometry.getTrajectoryStart();
+        if (posePosition < start) {
+            posesDropped += start - posePosition;
+            posePosition = start;
+        }
+
+        for (long end = odometry.getTrajectoryEnd(); posePosition < end; posePosition++) {
+            if (!odometry.getTrajectory(posePosition, pose)) {
+                posesDropped++;
+                continue;
+            }
+
+            poseRecord[0] = pose.time;
+            poseRecord[1] = PacketType.POSE;
+            poseRecord[2] = Double.doubleToRawLongBits(pose.x);
+            poseRecord[3] = Double.doubleToRawLongBits(pose.y);
+            poseRecord[4] = Double.doubleToRawLongBits(pose.heading);
+            poseRecord[5] = Double.doubleToRawLongBits(pose.velocity);
+            poseRecord[6] = Double.doubleToRawLongBits(pose.yawRate);
+            poseRecord[7] = 0;
+            return true;
+        }
+        return false;
+    }
+
+    /* Writes a record laid out like the ring, time, type and the fields, false if no segment could be opened */
+    private boolean append(long[] data, int offset) {
+        if (segmentPosition == segmentRecords) {
+            commit();
+            try {
+                openNextSegment();
+            } catch (IOException e) {
+                System.err.println("[FlightRecorder] Error " + e.getMessage());
+                running = false;
+                return false;
+            }
+        }
+
+        int position = HEADER_SIZE + segmentPosition * RECORD_SIZE;
+        segment.putLong(position + RECORD_TIME, data[offset]);
+        segment.putLong(position + RECORD_TYPE, data[offset + 1]);
+        for (int i = 0; i < FIELDS; i++) {
+            segment.putLong(position + RECORD_FIELDS + i * Long.BYTES, data[offset + 2 + i]);
+        }
+        segmentPosition++;
+        return true;
+    }
+
+    /* Publishes the written records, after the records themselves */
+    private void commit() {
+        segment.putLong(HEADER_COMMITTED, segmentPosition);
+    }
+
+    private void openNextSegment() throws IOException {
+        segmentIndex = (segmentIndex + 1) % segmentCount;
+        sequence++;
+
+        long size = HEADER_SIZE + (long) segmentRecords * RECORD_SIZE;
+        try (FileChannel channel = FileChannel.open(getSegmentPath(directory, segmentIndex),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (channel.size() != size)
+                channel.truncate(0);
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        segment.order(ByteOrder.LITTLE_ENDIAN);
+
+        /* Drop the old contents first, a crash below leaves an empty segment instead of a mixed one */
+        segment.putLong(HEADER_COMMITTED, 0);
+        segment.putInt(HEADER_MAGIC, MAGIC);
+        segment.putInt(HEADER_VERSION, VERSION);
+        segment.putLong(HEADER_SEQUENCE, sequence);
+        segment.putInt(HEADER_RECORD_SIZE, RECORD_SIZE);
+        segment.putInt(HEADER_CAPACITY, segmentRecords);
+        segment.putLong(HEADER_WALL_CLOCK, System.currentTimeMillis());
+        segment.putLong(HEADER_NANO_TIME, System.nanoTime());
+        segmentPosition = 0;
+    }
+
+    /**
+     * Records the poses of the odometry from now on, null stops
+     */
+    public void setOdometry(@Nullable Odometry odometry) {
+        if (odometry != null)
+            followFrom = Math.max(0, odometry.getTrajectoryEnd() - 1);
+        this.odometry = odometry;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return Records accepted from the receiving thread
+     */
+    public long getRecorded() {
+        return recorded;
+    }
+
+    /**
+     * @return Records lost because the writer thread fell behind, including poses overwritten before they were read
+     */
+    public long getDropped() {
+        return dropped + posesDropped;
+    }
+
+    /**
+     * @return Records written to the segment files
+     */
+    public long getWritten() {
+        return written;
+    }
+
+    /**
+     * Writes the remaining records and flushes the current segment to disk
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(10000);
+        } catch (InterruptedException ignored) {
+            thread.interrupt();
+        }
+
+        segment.force();
+    }
+}
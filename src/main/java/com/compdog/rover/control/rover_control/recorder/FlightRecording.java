@@ -0,0 +1,309 @@
+package com.compdog.rover.control.rover_control.recorder;
+
+import com.compdog.rover.control.rover_control.Odometry;
+import com.compdog.rover.control.rover_control.packet.DrivetrainPacket;
+import com.compdog.rover.control.rover_control.packet.HealthPacket;
+import com.compdog.rover.control.rover_control.packet.PacketType;
+import com.compdog.rover.control.rover_control.packet.WhiskersPacket;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads the segments written by a {@link FlightRecorder}, oldest first.<br>
+ * Records are streamed through a small buffer, only one segment is open at a time.
+ * Every {@value #INDEX_STRIDE}th record is kept in a sparse time index for {@link #seek(long)}.
+ * Times are converted to nanoseconds since the epoch using the clock readings in the
+ * segment headers, so recordings of separate sessions line up.
+ */
+public class FlightRecording implements AutoCloseable {
+
+    public static final int INDEX_STRIDE = 1024;
+
+    private static final int BUFFER_RECORDS = 1024;
+
+    private static class Segment {
+        final Path path;
+        final long sequence;
+        final int committed;
+        final long clockOffset;
+
+        Segment(Path path, long sequence, int committed, long clockOffset) {
+            this.path = path;
+            this.sequence = sequence;
+            this.committed = committed;
+            this.clockOffset = clockOffset;
+        }
+    }
+
+    private final Segment[] segments;
+    private final long recordCount;
+
+    private final long[] indexTime;
+    private final int[] indexSegment;
+    private final int[] indexRecord;
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_RECORDS * FlightRecorder.RECORD_SIZE)
+            .order(ByteOrder.LITTLE_ENDIAN);
+
+    private @Nullable FileChannel channel = null;
+    private int segment = -1;
+    private int record = 0;
+    private int bufferStart = 0;
+    private int bufferRecords = 0;
+    private boolean repeat = false;
+
+    private long time;
+    private byte type;
+    private int offset;
+
+    public FlightRecording(Path directory) throws IOException {
+        List<Segment> found = new ArrayList<>();
+        ByteBuffer header = ByteBuffer.allocate(FlightRecorder.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                FlightRecorder.SEGMENT_PREFIX + "*" + FlightRecorder.SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+                    header.clear();
+                    readFully(file, header, 0);
+                }
+
+                if (header.getInt(FlightRecorder.HEADER_MAGIC) != FlightRecorder.MAGIC ||
+                        header.getInt(FlightRecorder.HEADER_VERSION) != FlightRecorder.VERSION ||
+                        header.getInt(FlightRecorder.HEADER_RECORD_SIZE) != FlightRecorder.RECORD_SIZE) {
+                    System.out.println("[FlightRecording] Skipping " + path.getFileName());
+                    continue;
+                }
+
+                int committed = (int) Math.min(header.getLong(FlightRecorder.HEADER_COMMITTED),
+                        header.getInt(FlightRecorder.HEADER_CAPACITY));
+                if (committed <= 0)
+                    continue;
+
+                long clockOffset = TimeUnit.MILLISECONDS.toNanos(header.getLong(FlightRecorder.HEADER_WALL_CLOCK)) -
+                        header.getLong(FlightRecorder.HEADER_NANO_TIME);
+                found.add(new Segment(path, header.getLong(FlightRecorder.HEADER_SEQUENCE), committed, clockOffset));
+            }
+        }
+
+        found.sort((a, b) -> Long.compare(a.sequence, b.sequence));
+        segments = found.toArray(new Segment[0]);
+
+        long count = 0;
+        int entries = 0;
+        for (Segment s : segments) {
+            count += s.committed;
+            entries += (s.committed + INDEX_STRIDE - 1) / INDEX_STRIDE;
+        }
+        recordCount = count;
+
+        indexTime = new long[entries];
+        indexSegment = new int[entries];
+        indexRecord = new int[entries];
+        buildIndex();
+    }
+
+    private void buildIndex() throws IOException {
+        ByteBuffer time = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        int entry = 0;
+
+        for (int i = 0; i < segments.length; i++) {
+            try (FileChannel file = FileChannel.open(segments[i].path, StandardOpenOption.READ)) {
+                for (int r = 0; r < segments[i].committed; r += INDEX_STRIDE) {
+                    time.clear();
+                    readFully(file, time, recordPosition(r) + FlightRecorder.RECORD_TIME);
+                    indexTime[entry] = time.getLong(0) + segments[i].clockOffset;
+                    indexSegment[entry] = i;
+                    indexRecord[entry] = r;
+                    entry++;
+                }
+            }
+        }
+    }
+
+    private static long recordPosition(int record) {
+        return FlightRecorder.HEADER_SIZE + (long) record * FlightRecorder.RECORD_SIZE;
+    }
+
+    private static void readFully(FileChannel file, ByteBuffer target, long position) throws IOException {
+        while (target.hasRemaining()) {
+            int read = file.read(target, position);
+            if (read < 0)
+                throw new EOFException("Segment is shorter than its header claims");
+            position += read;
+        }
+    }
+
+    /**
+     * Moves to the next record
+     * @return false once all records were read
+     */
+    public boolean next() throws IOException {
+        if (repeat) {
+            repeat = false;
+            return true;
+        }
+
+        if (segment >= segments.length)
+            return false;
+
+        while (segment < 0 || record >= segments[segment].committed) {
+            if (!openSegment(segment + 1, 0))
+                return false;
+        }
+
+        if (record >= bufferStart + bufferRecords)
+            fill();
+
+        offset = (record - bufferStart) * FlightRecorder.RECORD_SIZE;
+        time = buffer.getLong(offset + FlightRecorder.RECORD_TIME) + segments[segment].clockOffset;
+        type = buffer.get(offset + FlightRecorder.RECORD_TYPE);
+        offset += FlightRecorder.RECORD_FIELDS;
+        record++;
+        return true;
+    }
+
+    private boolean openSegment(int index, int first) throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+
+        segment = Math.min(index, segments.length);
+        record = first;
+        bufferStart = first;
+        bufferRecords = 0;
+
+        if (segment >= segments.length)
+            return false;
+
+        channel = FileChannel.open(segments[segment].path, StandardOpenOption.READ);
+        return true;
+    }
+
+    private void fill() throws IOException {
+        assert channel != null;
+
+        bufferStart = record;
+        bufferRecords = Math.min(BUFFER_RECORDS, segments[segment].committed - record);
+        buffer.clear();
+        buffer.limit(bufferRecords * FlightRecorder.RECORD_SIZE);
+        readFully(channel, buffer, recordPosition(record));
+    }
+
+    /**
+     * Positions the recording so the next call to {@link #next()} returns the first record at or after the time
+     * @param time Nanoseconds since the epoch
+     * @return false if no record is that late
+     */
+    public boolean seek(long time) throws IOException {
+        repeat = false;
+
+        int low = 0;
+        int high = indexTime.length - 1;
+        int entry = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (indexTime[mid] <= time) {
+                entry = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        if (indexTime.length == 0 || !openSegment(indexSegment[entry], indexRecord[entry]))
+            return false;
+
+        while (next()) {
+            if (this.time >= time) {
+                repeat = true;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Goes back to the first record
+     */
+    public void rewind() throws IOException {
+        repeat = false;
+        if (channel != null)
+            channel.close();
+        channel = null;
+        segment = -1;
+        record = 0;
+    }
+
+    /**
+     * @return Time of the current record in nanoseconds since the epoch
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * @return {@link PacketType} of the current record
+     */
+    public byte getType() {
+        return type;
+    }
+
+    public void read(DrivetrainPacket packet) {
+        for (int i = 0; i < DrivetrainPacket.MOTORS; i++) {
+            packet.motors[i] = buffer.getDouble(offset + i * Long.BYTES);
+        }
+    }
+
+    public void read(WhiskersPacket packet) {
+        for (int i = 0; i < WhiskersPacket.SENSORS; i++) {
+            packet.sensors[i] = (int) buffer.getLong(offset + i * Long.BYTES);
+        }
+    }
+
+    public void read(HealthPacket packet) {
+        packet.temp = buffer.getDouble(offset);
+        packet.memoryUsed = buffer.getLong(offset + 8);
+        packet.memoryTotal = buffer.getLong(offset + 16);
+    }
+
+    public void read(Odometry.Pose pose) {
+        pose.time = time;
+        pose.x = buffer.getDouble(offset);
+        pose.y = buffer.getDouble(offset + 8);
+        pose.heading = buffer.getDouble(offset + 16);
+        pose.velocity = buffer.getDouble(offset + 24);
+        pose.yawRate = buffer.getDouble(offset + 32);
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * @return Time of the first record in nanoseconds since the epoch, 0 for an empty recording
+     */
+    public long getStartTime() {
+        return indexTime.length == 0 ? 0 : indexTime[0];
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null)
+            channel.close();
+        channel = null;
+    }
+}
@@ -0,0 +1,629 @@
+package com.compdog.rover.control.rover_control.sim;
+
+import com.compdog.rover.control.rover_control.packet.*;
+import com.compdog.rover.control.rover_control.util.Vector3View;
+import com.compdog.rover.control.rover_control.util.Vector4View;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loopback rover that speaks the same protocol as the real one, for running the
+ * clients without hardware. All connections share a single selector thread.<br>
+ * Manual drive commands are reflected in the drivetrain telemetry, motors 0, 2 and 4 follow
+ * the left side and motors 1, 3 and 5 the right side.<br>
+ * HEALTH is answered to GETHEALTH, or pushed to connections that set LISTEN_HEALTH whenever it changed by more
+ * than the resolutions in {@link HealthRatePacket}, or the heartbeat passed.<br>
+ * Link problems can be injected: a {@link #setLatency(double, double) latency with jitter} on everything
+ * sent to the clients, and {@link #disconnectAll() disconnects}, once or at an interval.
+ */
+public class RoverSimulator implements AutoCloseable {
+
+    private static final int SEND_BUFFER_SIZE = 64 * 1024;
+    private static final int READ_BUFFER_SIZE = 4096;
+    private static final int DELAY_BUFFER_SIZE = 256 * 1024;
+    private static final int DELAY_QUEUE_SIZE = 8192;
+
+    private class Connection implements PacketWriter.Output {
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final PacketReader reader = new PacketReader(READ_BUFFER_SIZE);
+        private final PacketWriter writer = new PacketWriter(this);
+        private final ByteBuffer pending = ByteBuffer.allocateDirect(SEND_BUFFER_SIZE);
+
+        private int options = ClientOptionFlags.NONE;
+        private long nextTelemetry;
+
+        /* Health stream, an interval of 0 means SETHRATE was never received */
+        private long healthInterval = 0;
+        private long healthHeartbeat = 0;
+        private long nextHealthCheck = Long.MAX_VALUE;
+        private long lastHealthSent;
+        private final HealthPacket sentHealth = new HealthPacket();
+
+        /* Sent data waiting for its injected latency, allocated once latency is used */
+        private @Nullable ByteBuffer delayed = null;
+        private final long[] delayedDue = new long[DELAY_QUEUE_SIZE];
+        private final int[] delayedLength = new int[DELAY_QUEUE_SIZE];
+        private int delayedHead = 0;
+        private int delayedCount = 0;
+
+        Connection(SocketChannel channel) throws IOException {
+            this.channel = channel;
+            key = channel.register(selector, SelectionKey.OP_READ, this);
+            nextTelemetry = System.nanoTime();
+        }
+
+        /* A client that does not keep up loses telemetry instead of stalling the simulator */
+        @Override
+        public void write(ByteBuffer data) throws IOException {
+            if (latency > 0 || jitter > 0 || delayedCount > 0) {
+                delay(data);
+                return;
+            }
+
+            if (data.remaining() > pending.remaining()) {
+                packetsDropped++;
+                return;
+            }
+
+            packetsSent++;
+            bytesSent += data.remaining();
+            pending.put(data);
+            flush();
+        }
+
+        private void delay(ByteBuffer data) {
+            if (delayed == null)
+                delayed = ByteBuffer.allocateDirect(DELAY_BUFFER_SIZE);
+
+            if (data.remaining() > delayed.remaining() || delayedCount == DELAY_QUEUE_SIZE) {
+                packetsDropped++;
+                return;
+            }
+
+            long due = System.nanoTime() + latency;
+            if (jitter > 0)
+                due += ThreadLocalRandom.current().nextLong(jitter + 1);
+
+            /* TCP keeps the order, so a packet is never released before the one sent ahead of it */
+            if (delayedCount > 0) {
+                long previous = delayedDue[(delayedHead + delayedCount - 1) % DELAY_QUEUE_SIZE];
+                due = Math.max(due, previous);
+            }
+
+            int slot = (delayedHead + delayedCount) % DELAY_QUEUE_SIZE;
+            delayedDue[slot] = due;
+            delayedLength[slot] = data.remaining();
+            delayedCount++;
+            delayed.put(data);
+        }
+
+        /* Moves the data whose latency has passed to the send buffer */
+        void release(long now) throws IOException {
+            if (delayedCount == 0 || delayedDue[delayedHead] - now > 0)
+                return;
+
+            assert delayed != null;
+            int count = 0;
+            while (count < delayedCount && delayedDue[(delayedHead + count) % DELAY_QUEUE_SIZE] - now <= 0) {
+                count++;
+            }
+
+            delayed.flip();
+            int limit = delayed.limit();
+            for (int i = 0; i < count; i++) {
+                int packetLength = delayedLength[delayedHead];
+                delayed.limit(delayed.position() + packetLength);
+                if (packetLength > pending.remaining()) {
+                    packetsDropped++;
+                    delayed.position(delayed.limit());
+                } else {
+                    packetsSent++;
+                    bytesSent += packetLength;
+                    pending.put(delayed);
+                }
+                delayedHead = (delayedHead + 1) % DELAY_QUEUE_SIZE;
+                delayedCount--;
+            }
+            delayed.limit(limit);
+            delayed.compact();
+            flush();
+        }
+
+        long getNextRelease() {
+            return delayedCount == 0 ? Long.MAX_VALUE : delayedDue[delayedHead];
+        }
+
+        void flush() throws IOException {
+            pending.flip();
+            channel.write(pending);
+            pending.compact();
+
+            if (pending.position() > 0)
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            else
+                key.interestOps(SelectionKey.OP_READ);
+        }
+
+        void close() {
+            connections.remove(this);
+            try {
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final Thread thread;
+    private final List<Connection> connections = new ArrayList<>();
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+
+    private volatile boolean running;
+    private volatile long telemetryPeriod;
+    private volatile long latency = 0;
+    private volatile long jitter = 0;
+    private volatile long disconnectInterval = 0;
+    private volatile boolean disconnectRequested = false;
+    private long nextDisconnect = Long.MAX_VALUE;
+
+    private final ManualDrivePacket drive = new ManualDrivePacket(0, 0);
+    private final DrivetrainPacket drivetrain = new DrivetrainPacket();
+    private final WhiskersPacket whiskers = new WhiskersPacket();
+    private final HealthPacket health = new HealthPacket();
+    private final CharacteristicsPacket characteristics = new CharacteristicsPacket();
+    private final PingPacket ping = new PingPacket();
+    private final HealthRatePacket healthRate = new HealthRatePacket();
+    private volatile @Nullable HealthPacket healthOverride = null;
+    private volatile boolean healthStreaming = true;
+
+    private volatile long packetsSent = 0;
+    private volatile long packetsDropped = 0;
+    private volatile long commandsReceived = 0;
+    private volatile long bytesSent = 0;
+    private volatile long bytesReceived = 0;
+    private volatile long healthPushed = 0;
+    private volatile long healthSuppressed = 0;
+    private volatile int connectionCount = 0;
+    private volatile long disconnects = 0;
+
+    /**
+     * Starts a simulator on the loopback interface
+     * @param port Port to listen on, 0 picks a free one
+     */
+    public RoverSimulator(int port) throws IOException {
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 256);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+
+        setTelemetryRate(100);
+        setupCharacteristics();
+
+        running = true;
+        thread = new Thread(this::simulatorThread, "Rover Simulator Thread");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    /**
+     * @param hz DRIVE and WHISKR packets sent per second to every listening connection
+     */
+    public void setTelemetryRate(double hz) {
+        if (hz <= 0)
+            throw new IllegalArgumentException("Telemetry rate must be positive");
+        telemetryPeriod = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / hz));
+        selector.wakeup();
+    }
+
+    public double getTelemetryRate() {
+        return (double) TimeUnit.SECONDS.toNanos(1) / telemetryPeriod;
+    }
+
+    /**
+     * Delays everything sent to the clients, including answers to pings
+     * @param latencyMs Fixed delay in milliseconds
+     * @param jitterMs Random extra delay of up to this many milliseconds
+     */
+    public void setLatency(double latencyMs, double jitterMs) {
+        if (latencyMs < 0 || jitterMs < 0)
+            throw new IllegalArgumentException("Latency and jitter can not be negative");
+        latency = (long) (latencyMs * TimeUnit.MILLISECONDS.toNanos(1));
+        jitter = (long) (jitterMs * TimeUnit.MILLISECONDS.toNanos(1));
+        selector.wakeup();
+    }
+
+    /**
+     * Closes every client connection, the clients are expected to reconnect
+     */
+    public void disconnectAll() {
+        disconnectRequested = true;
+        selector.wakeup();
+    }
+
+    /**
+     * @param seconds Interval between disconnecting all clients, 0 to never disconnect
+     */
+    public void setDisconnectInterval(double seconds) {
+        if (seconds < 0)
+            throw new IllegalArgumentException("Disconnect interval can not be negative");
+        disconnectInterval = (long) (seconds * TimeUnit.SECONDS.toNanos(1));
+        selector.wakeup();
+    }
+
+    public long getDisconnects() {
+        return disconnects;
+    }
+
+    public long getPacketsSent() {
+        return packetsSent;
+    }
+
+    public long getPacketsDropped() {
+        return packetsDropped;
+    }
+
+    public long getCommandsReceived() {
+        return commandsReceived;
+    }
+
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * @return HEALTH frames pushed to listening connections, answers to GETHEALTH are not included
+     */
+    public long getHealthPushed() {
+        return healthPushed;
+    }
+
+    /**
+     * @return Health checks of listening connections that sent nothing because nothing changed
+     */
+    public long getHealthSuppressed() {
+        return healthSuppressed;
+    }
+
+    /**
+     * Reports fixed health values instead of the simulator's own
+     * @param packet Values to report, copied, null goes back to the simulator's own
+     */
+    public void setHealth(@Nullable HealthPacket packet) {
+        if (packet == null) {
+            healthOverride = null;
+            return;
+        }
+        HealthPacket copy = new HealthPacket();
+        copy.temp = packet.temp;
+        copy.memoryUsed = packet.memoryUsed;
+        copy.memoryTotal = packet.memoryTotal;
+        healthOverride = copy;
+        selector.wakeup();
+    }
+
+    /**
+     * @param streaming false stops pushing HEALTH like a rover without streaming, GETHEALTH is still answered
+     */
+    public void setHealthStreaming(boolean streaming) {
+        healthStreaming = streaming;
+    }
+
+    public int getConnectionCount() {
+        return connectionCount;
+    }
+
+    private void setupCharacteristics() {
+        Vector3View vector3 = new Vector3View();
+        Vector4View vector4 = new Vector4View();
+
+        characteristics.getFrameSize(vector3).set(0.5, 0.4, 0.2);
+        characteristics.wheelDiameter = 0.12;
+
+        characteristics.getWheelLocation(0, vector3).set(0.2, 0.22, -0.1);
+        characteristics.getWheelLocation(1, vector3).set(0.2, -0.22, -0.1);
+        characteristics.getWheelLocation(2, vector3).set(0, 0.22, -0.1);
+        characteristics.getWheelLocation(3, vector3).set(0, -0.22, -0.1);
+        characteristics.getWheelLocation(4, vector3).set(-0.2, 0.22, -0.1);
+        characteristics.getWheelLocation(5, vector3).set(-0.2, -0.22, -0.1);
+
+        characteristics.getWhisker(0, vector4).set(0.25, 0.15, 0, Math.toRadians(30));
+        characteristics.getWhisker(1, vector4).set(0.25, -0.15, 0, Math.toRadians(-30));
+        characteristics.getWhisker(2, vector4).set(0, 0.2, 0, Math.toRadians(90));
+        characteristics.getWhisker(3, vector4).set(0, -0.2, 0, Math.toRadians(-90));
+        characteristics.getWhisker(4, vector4).set(-0.25, 0.15, 0, Math.toRadians(150));
+        characteristics.getWhisker(5, vector4).set(-0.25, -0.15, 0, Math.toRadians(-150));
+    }
+
+    private void simulatorThread() {
+        while (running) {
+            long now = System.nanoTime();
+            long nextDeadline = Long.MAX_VALUE;
+
+            injectDisconnects(now);
+            if (nextDisconnect != Long.MAX_VALUE)
+                nextDeadline = nextDisconnect;
+
+            for (int i = 0; i < connections.size(); i++) {
+                Connection connection = connections.get(i);
+                try {
+                    sendTelemetry(connection, now);
+                    sendHealth(connection, now);
+                    connection.release(now);
+                } catch (IOException e) {
+                    connection.close();
+                    i--;
+                    continue;
+                }
+
+                if (nextDeadline == Long.MAX_VALUE || connection.nextTelemetry - nextDeadline < 0)
+                    nextDeadline = connection.nextTelemetry;
+                if (connection.nextHealthCheck != Long.MAX_VALUE && connection.nextHealthCheck - nextDeadline < 0)
+                    nextDeadline = connection.nextHealthCheck;
+
+                long release = connection.getNextRelease();
+                if (release != Long.MAX_VALUE && (nextDeadline == Long.MAX_VALUE || release - nextDeadline < 0))
+                    nextDeadline = release;
+            }
+
+            try {
+                if (nextDeadline == Long.MAX_VALUE) {
+                    selector.select();
+                } else {
+                    long timeout = TimeUnit.NANOSECONDS.toMillis(nextDeadline - System.nanoTime());
+                    if (timeout <= 0)
+                        selector.selectNow();
+                    else
+                        selector.select(timeout);
+                }
+            } catch (IOException e) {
+                System.err.println("[RoverSimulator] Error " + e.getMessage());
+                break;
+            }
+
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+
+                if (key.isAcceptable()) {
+                    accept();
+                    continue;
+                }
+
+                Connection connection = (Connection) key.attachment();
+                try {
+                    if (key.isWritable())
+                        connection.flush();
+                    if (key.isReadable())
+                        receive(connection);
+                } catch (IOException | RuntimeException e) {
+                    connection.close();
+                }
+            }
+
+            connectionCount = connections.size();
+        }
+
+        for (Connection connection : new ArrayList<>(connections)) {
+            connection.close();
+        }
+        connectionCount = 0;
+
+        try {
+            selector.close();
+            server.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void injectDisconnects(long now) {
+        long interval = disconnectInterval;
+        if (interval == 0) {
+            nextDisconnect = Long.MAX_VALUE;
+        } else if (nextDisconnect == Long.MAX_VALUE) {
+            nextDisconnect = now + interval;
+        } else if (now - nextDisconnect >= 0) {
+            disconnectRequested = true;
+            nextDisconnect = now + interval;
+        }
+
+        if (!disconnectRequested)
+            return;
+
+        disconnectRequested = false;
+        disconnects++;
+        for (Connection connection : new ArrayList<>(connections)) {
+            connection.close();
+        }
+    }
+
+    private void accept() {
+        try {
+            SocketChannel channel = server.accept();
+            if (channel == null)
+                return;
+
+            channel.configureBlocking(false);
+            // Telemetry is many small writes, Nagle would hold them back waiting for acks
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            connections.add(new Connection(channel));
+        } catch (IOException e) {
+            System.err.println("[RoverSimulator] Error " + e.getMessage());
+        }
+    }
+
+    private void receive(Connection connection) throws IOException {
+        readBuffer.clear();
+        if (connection.channel.read(readBuffer) < 0) {
+            connection.close();
+            return;
+        }
+
+        readBuffer.flip();
+        bytesReceived += readBuffer.remaining();
+        connection.reader.append(readBuffer);
+
+        PacketReader reader = connection.reader;
+        while (reader.next()) {
+            commandsReceived++;
+            switch (reader.getType()) {
+                case PacketType.MANUAL_DRIVE:
+                    reader.read(drive);
+                    break;
+                case PacketType.REQUEST_HEALTH:
+                    updateHealth();
+                    connection.writer.write(health);
+                    break;
+                case PacketType.REQUEST_CHARACTERISTICS:
+                    connection.writer.write(characteristics);
+                    break;
+                case PacketType.PING:
+                    reader.read(ping);
+                    ping.roverTime = System.nanoTime();
+                    connection.writer.writePong(ping);
+                    break;
+                case PacketType.SET_OPTIONS:
+                    connection.options = reader.nextInt();
+                    connection.writer.setBinary((connection.options & ClientOptionFlags.BINARY_PROTOCOL) != 0);
+                    scheduleHealth(connection);
+                    break;
+                case PacketType.SET_HEALTH_RATE:
+                    reader.read(healthRate);
+                    connection.healthInterval = TimeUnit.MILLISECONDS.toNanos(Math.max(1, healthRate.interval));
+                    connection.healthHeartbeat = TimeUnit.MILLISECONDS.toNanos(Math.max(healthRate.interval, healthRate.heartbeat));
+                    scheduleHealth(connection);
+                    break;
+                default:
+                    System.out.println("[RoverSimulator] Unexpected command " + reader.getLine());
+                    break;
+            }
+        }
+    }
+
+    private void sendTelemetry(Connection connection, long now) throws IOException {
+        if ((connection.options & (ClientOptionFlags.LISTEN_DRIVETRAIN | ClientOptionFlags.LISTEN_WHISKERS)) == 0) {
+            connection.nextTelemetry = now + telemetryPeriod;
+            return;
+        }
+
+        long period = telemetryPeriod;
+        if (now - connection.nextTelemetry > TimeUnit.MILLISECONDS.toNanos(100)) {
+            // Fell too far behind, skip ahead instead of bursting
+            connection.nextTelemetry = now;
+        }
+
+        while (connection.nextTelemetry - now <= 0) {
+            updateTelemetry(connection.nextTelemetry);
+            if ((connection.options & ClientOptionFlags.LISTEN_DRIVETRAIN) != 0)
+                connection.writer.write(drivetrain);
+            if ((connection.options & ClientOptionFlags.LISTEN_WHISKERS) != 0)
+                connection.writer.write(whiskers);
+            connection.nextTelemetry += period;
+        }
+    }
+
+    /* Starts or stops the health stream, a new subscription always gets the current health first */
+    private void scheduleHealth(Connection connection) {
+        boolean listening = (connection.options & ClientOptionFlags.LISTEN_HEALTH) != 0 && connection.healthInterval > 0;
+        if (!listening) {
+            connection.nextHealthCheck = Long.MAX_VALUE;
+        } else if (connection.nextHealthCheck == Long.MAX_VALUE) {
+            connection.nextHealthCheck = System.nanoTime();
+            connection.lastHealthSent = connection.nextHealthCheck - connection.healthHeartbeat;
+        }
+    }
+
+    private void sendHealth(Connection connection, long now) throws IOException {
+        if (connection.nextHealthCheck == Long.MAX_VALUE || connection.nextHealthCheck - now > 0)
+            return;
+
+        if (healthStreaming) {
+            updateHealth();
+            HealthPacket sent = connection.sentHealth;
+            boolean changed = Math.abs(health.temp - sent.temp) >= HealthRatePacket.TEMP_RESOLUTION ||
+                    Math.abs(health.memoryUsed - sent.memoryUsed) >= HealthRatePacket.MEMORY_RESOLUTION ||
+                    health.memoryTotal != sent.memoryTotal;
+
+            if (changed || now - connection.lastHealthSent >= connection.healthHeartbeat) {
+                connection.writer.write(health);
+                sent.temp = health.temp;
+                sent.memoryUsed = health.memoryUsed;
+                sent.memoryTotal = health.memoryTotal;
+                connection.lastHealthSent = now;
+                healthPushed++;
+            } else {
+                healthSuppressed++;
+            }
+        }
+
+        connection.nextHealthCheck += connection.healthInterval;
+        if (connection.nextHealthCheck - now <= 0)
+            connection.nextHealthCheck = now + connection.healthInterval;
+    }
+
+    private void updateTelemetry(long time) {
+        // Even motors are on the left side
+        for (int i = 0; i < DrivetrainPacket.MOTORS; i++) {
+            drivetrain.motors[i] = i % 2 == 0 ? drive.left : drive.right;
+        }
+
+        double t = time / 1e9;
+        for (int i = 0; i < WhiskersPacket.SENSORS; i++) {
+            double phase = t / (1 << (i / 2));
+            whiskers.sensors[i] = (int) (512 + 256 * (i % 2 == 0 ? Math.sin(phase) : Math.cos(phase)));
+        }
+    }
+
+    private void updateHealth() {
+        HealthPacket override = healthOverride;
+        if (override != null) {
+            health.temp = override.temp;
+            health.memoryUsed = override.memoryUsed;
+            health.memoryTotal = override.memoryTotal;
+            return;
+        }
+
+        Runtime runtime = Runtime.getRuntime();
+        health.temp = 45 + 5 * Math.sin(System.nanoTime() / 1e10);
+        health.memoryTotal = runtime.totalMemory();
+        health.memoryUsed = runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join(10000);
+        } catch (InterruptedException ignored) {
+            thread.interrupt();
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.compdog.rover.control.rover_control.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free log-linear histogram of nanosecond durations, in the style of HdrHistogram.<br>
+ * Values below 32 are counted exactly, above that every power of two is split into 16
+ * linear sub-buckets, so any recorded value is reported within about 6% of its true value.
+ * Values above {@link #HIGHEST_TRACKABLE} (about 68 s) share the top bucket, only the maximum stays exact.
+ * That keeps a histogram at about 4 KiB.<br>
+ * Recording is a few atomic increments and never allocates; any number of threads may record.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_HALF = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = SUB_BUCKET_HALF << 1;
+    private static final int HIGHEST_BIT = 35;
+    private static final int BUCKETS = LINEAR_LIMIT + (HIGHEST_BIT - SUB_BUCKET_BITS) * SUB_BUCKET_HALF;
+
+    public static final long HIGHEST_TRACKABLE = (1L << (HIGHEST_BIT + 1)) - 1;
+
+    public static class Snapshot {
+        private final long count;
+        private final long min;
+        private final long max;
+        private final double mean;
+        private final long[] counts;
+
+        private Snapshot(long count, long min, long max, double mean, long[] counts) {
+            this.count = count;
+            this.min = min;
+            this.max = max;
+            this.mean = mean;
+            this.counts = counts;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMin() {
+            return min;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return mean;
+        }
+
+        /**
+         * @param percentile 0 to 100
+         * @return The value in nanoseconds at or below which the given percentage of values fall
+         */
+        public long getValueAtPercentile(double percentile) {
+            long total = 0;
+            for (long c : counts) {
+                total += c;
+            }
+            if (total == 0)
+                return 0;
+
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank)
+                    return i == counts.length - 1 ? max : Math.min(highestEquivalentValue(i), max);
+            }
+            return max;
+        }
+
+        public long getP50() {
+            return getValueAtPercentile(50);
+        }
+
+        public long getP99() {
+            return getValueAtPercentile(99);
+        }
+
+        public long getP999() {
+            return getValueAtPercentile(99.9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d p50=%.3fms p99=%.3fms p999=%.3fms max=%.3fms",
+                    count, toMillis(getP50()), toMillis(getP99()), toMillis(getP999()), toMillis(max));
+        }
+
+        private static double toMillis(long nanos) {
+            return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        }
+    }
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong(0);
+
+    static int bucketIndex(long value) {
+        value = Math.min(value, HIGHEST_TRACKABLE);
+        if (value < LINEAR_LIMIT)
+            return (int) value;
+
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int sub = (int) (value >>> shift);
+        return LINEAR_LIMIT + (shift - 1) * SUB_BUCKET_HALF + (sub - SUB_BUCKET_HALF);
+    }
+
+    static long highestEquivalentValue(int index) {
+        if (index < LINEAR_LIMIT)
+            return index;
+
+        int shift = (index - LINEAR_LIMIT) / SUB_BUCKET_HALF + 1;
+        long sub = (index - LINEAR_LIMIT) % SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+        return ((sub + 1) << shift) - 1;
+    }
+
+    /**
+     * @param nanos Duration to record, negative values are counted as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketIndex(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            Thread.onSpinWait();
+        }
+        while (value < (current = min.get()) && !min.compareAndSet(current, value)) {
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Adds every value recorded by the other histogram, for combining the histograms of several clients
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long c = other.counts.get(i);
+            if (c != 0)
+                counts.addAndGet(i, c);
+        }
+        count.addAndGet(other.count.get());
+        sum.addAndGet(other.sum.get());
+
+        long value = other.max.get();
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            Thread.onSpinWait();
+        }
+        value = other.min.get();
+        while (value < (current = min.get()) && !min.compareAndSet(current, value)) {
+            Thread.onSpinWait();
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Copies the current state. Values recorded concurrently may or may not be included.
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+        }
+
+        long n = count.get();
+        long lowest = min.get();
+        return new Snapshot(n, lowest == Long.MAX_VALUE ? 0 : lowest, max.get(), n == 0 ? 0 : sum.get() / (double) n, copy);
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        min.set(Long.MAX_VALUE);
+        max.set(0);
+    }
+}
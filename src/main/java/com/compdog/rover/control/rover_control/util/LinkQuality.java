@@ -0,0 +1,34 @@
+package com.compdog.rover.control.rover_control.util;
+
+public class LinkQuality {
+
+    /**
+     * Scores a connection based on the interval between received messages, higher is better
+     * @param avg Average interval in milliseconds
+     * @param gap Difference between the longest and shortest interval in milliseconds
+     * @return The quality score
+     */
+    public static double Score(long avg, long gap) {
+        /* Consists of two parts, latency (50%) and consistency (50%) */
+        return
+                /* average interval of 100 is good (50% quality) */
+                CurveUtils.InverseCurve(avg, 100, 50, 1.2) +
+                /* gap of 1 is good consistency (50% quality) */
+                CurveUtils.InverseCurve(gap, 1, 50, 0.2);
+    }
+
+    /**
+     * Scores a connection based on measured round trips, higher is better
+     * @param rtt Round trip time in milliseconds
+     * @param jitter Variation between consecutive round trips in milliseconds
+     * @return The quality score
+     */
+    public static double ScoreRoundTrip(double rtt, double jitter) {
+        /* Same split as Score, latency (50%) and consistency (50%) */
+        return
+                /* round trip of 20 is good (50% quality) */
+                CurveUtils.InverseCurve(rtt, 20, 50, 1.2) +
+                /* jitter of 2 is good consistency (50% quality) */
+                CurveUtils.InverseCurve(jitter, 2, 50, 0.5);
+    }
+}
@@ -0,0 +1,94 @@
+package com.compdog.rover.control.rover_control.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free single-producer single-consumer ring of fixed-width records made of longs.<br>
+ * The producer {@link #claim() claims} a record, fills it in {@link #data()} and {@link #publish() publishes} it.
+ * The consumer {@link #peek() peeks} at the oldest record, reads it and {@link #release() releases} it.
+ * Nothing is allocated after construction and neither side ever blocks.
+ */
+public class RecordRing {
+
+    private final int recordLongs;
+    private final int mask;
+    private final long[] data;
+
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    /* Each side keeps a stale copy of the other index and only re-reads it when the ring looks full or empty */
+    private long cachedHead = 0;
+    private long cachedTail = 0;
+
+    /**
+     * @param capacity Number of records, rounded up to a power of two
+     * @param recordLongs Width of a record in longs
+     */
+    public RecordRing(int capacity, int recordLongs) {
+        if (capacity < 1 || recordLongs < 1)
+            throw new IllegalArgumentException("Capacity and record width must be positive");
+
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity)
+            size <<= 1;
+
+        this.recordLongs = recordLongs;
+        mask = size - 1;
+        data = new long[size * recordLongs];
+    }
+
+    public long[] data() {
+        return data;
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    /**
+     * Producer only
+     * @return Offset of the claimed record in {@link #data()}, or -1 if the ring is full
+     */
+    public int claim() {
+        long t = tail.get();
+        if (t - cachedHead > mask) {
+            cachedHead = head.get();
+            if (t - cachedHead > mask)
+                return -1;
+        }
+        return (int) (t & mask) * recordLongs;
+    }
+
+    /**
+     * Producer only, makes the claimed record visible to the consumer
+     */
+    public void publish() {
+        tail.lazySet(tail.get() + 1);
+    }
+
+    /**
+     * Consumer only
+     * @return Offset of the oldest record in {@link #data()}, or -1 if the ring is empty
+     */
+    public int peek() {
+        long h = head.get();
+        if (h >= cachedTail) {
+            cachedTail = tail.get();
+            if (h >= cachedTail)
+                return -1;
+        }
+        return (int) (h & mask) * recordLongs;
+    }
+
+    /**
+     * Consumer only, hands the peeked record back to the producer
+     */
+    public void release() {
+        head.lazySet(head.get() + 1);
+    }
+}
@@ -1,65 +1,48 @@
 package com.compdog.rover.control.rover_control.util;
 
+/**
+ * Window of the last samples with their average and spread.<br>
+ * Backed by {@link StreamingStatistics}, so summaries no longer walk the window.
+ */
 public class RollingBuffer {
 
-    private final int window;
-    private final long[] array;
-
-    private int offset;
-    private int count;
+    private final StreamingStatistics statistics;
 
     public RollingBuffer(int window) {
-        this.window = window;
-        offset = 0;
-        count = 0;
-        array = new long[window];
+        statistics = new StreamingStatistics(window);
     }
 
     public int getWindow() {
-        return window;
+        return statistics.getWindow(0);
+    }
+
+    public StreamingStatistics getStatistics() {
+        return statistics;
     }
 
     public void push(long value) {
-        array[offset] = value;
-        offset = (offset + 1) % window;
-        if (count < window)
-            count++;
+        statistics.push(value);
     }
 
+    /**
+     * @param index 0 is the oldest sample held
+     */
     public long at(int index) {
-        return array[(index + offset) % window];
+        return (long) statistics.at(index);
     }
 
+    /**
+     * @return Average rounded to the nearest integer, see {@link #getMean()} for the exact value
+     */
     public long getAverage() {
-        if (count == 0)
-            return 0;
-
-        long avg = 0;
-
-        for (int i = 0; i < count; i++) {
-            avg += at(i);
-        }
-
-        avg /= count;
+        return Math.round(statistics.getMean());
+    }
 
-        return avg;
+    public double getMean() {
+        return statistics.getMean();
     }
 
     public long getGap() {
-        if (count == 0)
-            return 0;
-
-        long min = Long.MAX_VALUE;
-        long max = Long.MIN_VALUE;
-
-        for (int i = 0; i < count; i++) {
-            long v = at(i);
-            if (v < min)
-                min = v;
-            if (v > max)
-                max = v;
-        }
-
-        return max - min;
+        return (long) statistics.getRange();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,157 @@
+package com.compdog.rover.control.rover_control.util;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Single-producer single-consumer ring of fixed-width records made of longs that never refuses a record.<br>
+ * Unlike {@link RecordRing} the producer may lap the consumer: a full ring overwrites its oldest record.
+ * Every slot carries a stamp that is odd while the record is written and even once published, so the
+ * consumer copies a record out and keeps it only if the stamp did not change meanwhile (a seqlock).
+ * Records lost to the producer are counted in {@link #getOverwritten()}. A producer that must not lose
+ * records checks {@link #size()} against {@link #getCapacity()} before claiming.<br>
+ * Besides the one consumer, any number of readers may copy records by their position with {@link #read},
+ * each keeping its own position, without consuming them.
+ */
+public class StampedRing {
+
+    private final int recordLongs;
+    private final int mask;
+    private final long[] data;
+    private final AtomicLongArray stamps;
+
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    /* Written by the consumer only */
+    private volatile long overwritten = 0;
+
+    /**
+     * @param capacity Number of records, rounded up to a power of two
+     * @param recordLongs Width of a record in longs
+     */
+    public StampedRing(int capacity, int recordLongs) {
+        if (capacity < 1 || recordLongs < 1)
+            throw new IllegalArgumentException("Capacity and record width must be positive");
+
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity)
+            size <<= 1;
+
+        this.recordLongs = recordLongs;
+        mask = size - 1;
+        data = new long[size * recordLongs];
+        stamps = new AtomicLongArray(size);
+    }
+
+    public long[] data() {
+        return data;
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    public int getRecordLongs() {
+        return recordLongs;
+    }
+
+    /**
+     * @return Records published and not consumed yet, can exceed the capacity when records were overwritten
+     */
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    /**
+     * @return Records published so far, which is also the position the next record is published at
+     */
+    public long getPublished() {
+        return tail.get();
+    }
+
+    /**
+     * @return Records the consumer never saw because the producer overwrote them
+     */
+    public long getOverwritten() {
+        return overwritten;
+    }
+
+    /**
+     * Producer only, always succeeds and overwrites the oldest record when the ring is full
+     * @return Offset of the claimed record in {@link #data()}
+     */
+    public int claim() {
+        long t = tail.get();
+        int slot = (int) (t & mask);
+        stamps.set(slot, 2 * t + 1);
+        // The record must not be written before the slot is marked
+        VarHandle.storeStoreFence();
+        return slot * recordLongs;
+    }
+
+    /**
+     * Producer only, makes the claimed record visible to the consumer
+     */
+    public void publish() {
+        long t = tail.get();
+        stamps.lazySet((int) (t & mask), 2 * t + 2);
+        tail.set(t + 1);
+    }
+
+    /**
+     * Consumer only, copies the oldest intact record and releases it
+     * @param record Receives {@link #getRecordLongs()} longs
+     * @return false if the ring is empty
+     */
+    public boolean poll(long[] record) {
+        long h = head.get();
+        while (true) {
+            long t = tail.get();
+            if (h >= t) {
+                // Keep the skipped records from being counted again
+                head.lazySet(h);
+                return false;
+            }
+
+            if (t - h > mask + 1) {
+                overwritten += t - (mask + 1) - h;
+                h = t - (mask + 1);
+            }
+
+            int slot = (int) (h & mask);
+            long expected = 2 * h + 2;
+            if (stamps.get(slot) == expected) {
+                System.arraycopy(data, slot * recordLongs, record, 0, recordLongs);
+                // The copy must be complete before the stamp is checked again
+                VarHandle.loadLoadFence();
+                if (stamps.get(slot) == expected) {
+                    head.lazySet(h + 1);
+                    return true;
+                }
+            }
+
+            // Overwritten before or while it was copied
+            overwritten++;
+            h++;
+        }
+    }
+
+    /**
+     * Any thread, copies the record published at the position without consuming it
+     * @param position Position of the record, from 0 to {@link #getPublished()} exclusive
+     * @param record Receives {@link #getRecordLongs()} longs
+     * @return false if the record is not published yet, or was overwritten before or while it was copied
+     */
+    public boolean read(long position, long[] record) {
+        int slot = (int) (position & mask);
+        long expected = 2 * position + 2;
+        if (stamps.get(slot) != expected)
+            return false;
+
+        System.arraycopy(data, slot * recordLongs, record, 0, recordLongs);
+        VarHandle.loadLoadFence();
+        return stamps.get(slot) == expected;
+    }
+}
@@ -0,0 +1,270 @@
+package com.compdog.rover.control.rover_control.util;
+
+/**
+ * Sliding window statistics over a stream of samples, every query and push is O(1) amortized.<br>
+ * One sample history is shared by any number of windows, each keeping a running sum and sum of squares
+ * for the mean and variance, and monotonic deques for the min and max. Samples are doubles so nanosecond
+ * intervals, motor values and sensor readings all fit without losing precision.<br>
+ * Not thread safe, push and query from the same thread or synchronize externally.
+ */
+public class StreamingStatistics {
+
+    private static class Window {
+        final int size;
+
+        int count = 0;
+
+        /* Sums are of (value - shift), keeps the squares small enough to not lose the variance */
+        double shift = 0;
+        double sum = 0;
+        double sumSquares = 0;
+
+        /* Pushes left until the sums are recomputed from the samples to drop accumulated rounding */
+        int untilRecompute;
+
+        /* Sequence numbers of samples, values strictly increasing for min and decreasing for max */
+        final long[] minQueue;
+        final long[] maxQueue;
+        long minHead = 0, minTail = 0;
+        long maxHead = 0, maxTail = 0;
+        final int queueMask;
+
+        Window(int size) {
+            this.size = size;
+            untilRecompute = size;
+            int queueSize = ceilPowerOfTwo(size);
+            minQueue = new long[queueSize];
+            maxQueue = new long[queueSize];
+            queueMask = queueSize - 1;
+        }
+
+        void reset() {
+            count = 0;
+            shift = sum = sumSquares = 0;
+            untilRecompute = size;
+            minHead = minTail = maxHead = maxTail = 0;
+        }
+    }
+
+    private final double[] values;
+    private final int mask;
+    private final int largest;
+    private final Window[] windows;
+
+    /* Sequence number of the next sample */
+    private long sequence = 0;
+
+    /**
+     * @param windows Sizes of the windows in samples, queries without a window index use the first one
+     */
+    public StreamingStatistics(int... windows) {
+        if (windows.length == 0)
+            throw new IllegalArgumentException("At least one window is required");
+
+        int largest = 0;
+        this.windows = new Window[windows.length];
+        for (int i = 0; i < windows.length; i++) {
+            if (windows[i] < 1)
+                throw new IllegalArgumentException("Window sizes must be positive");
+            this.windows[i] = new Window(windows[i]);
+            largest = Math.max(largest, windows[i]);
+        }
+
+        this.largest = largest;
+        /* One extra slot keeps the sample leaving the largest window readable after the new one is stored */
+        values = new double[ceilPowerOfTwo(largest + 1)];
+        mask = values.length - 1;
+    }
+
+    private static int ceilPowerOfTwo(int value) {
+        return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+
+    public void push(double value) {
+        long seq = sequence++;
+        values[(int) seq & mask] = value;
+
+        for (Window w : windows) {
+            if (w.count == 0)
+                w.shift = value;
+
+            if (w.count == w.size) {
+                double old = values[(int) (seq - w.size) & mask] - w.shift;
+                w.sum -= old;
+                w.sumSquares -= old * old;
+            } else {
+                w.count++;
+            }
+
+            double v = value - w.shift;
+            w.sum += v;
+            w.sumSquares += v * v;
+
+            if (--w.untilRecompute == 0)
+                recompute(w);
+
+            /* Drop the sample leaving the window first, so the queues never hold more than the window */
+            long expired = seq - w.size;
+            if (w.minHead != w.minTail && w.minQueue[(int) w.minHead & w.queueMask] <= expired)
+                w.minHead++;
+            if (w.maxHead != w.maxTail && w.maxQueue[(int) w.maxHead & w.queueMask] <= expired)
+                w.maxHead++;
+
+            while (w.minTail != w.minHead && values[(int) w.minQueue[(int) (w.minTail - 1) & w.queueMask] & mask] >= value)
+                w.minTail--;
+            w.minQueue[(int) w.minTail++ & w.queueMask] = seq;
+
+            while (w.maxTail != w.maxHead && values[(int) w.maxQueue[(int) (w.maxTail - 1) & w.queueMask] & mask] <= value)
+                w.maxTail--;
+            w.maxQueue[(int) w.maxTail++ & w.queueMask] = seq;
+        }
+    }
+
+    /* Runs once every window size pushes, so it stays O(1) amortized */
+    private void recompute(Window w) {
+        double shift = w.sum / w.count + w.shift;
+        double sum = 0;
+        double sumSquares = 0;
+        for (long seq = sequence - w.count; seq < sequence; seq++) {
+            double v = values[(int) seq & mask] - shift;
+            sum += v;
+            sumSquares += v * v;
+        }
+        w.shift = shift;
+        w.sum = sum;
+        w.sumSquares = sumSquares;
+        w.untilRecompute = w.size;
+    }
+
+    public void reset() {
+        sequence = 0;
+        for (Window w : windows) {
+            w.reset();
+        }
+    }
+
+    public int getWindowCount() {
+        return windows.length;
+    }
+
+    public int getWindow(int window) {
+        return windows[window].size;
+    }
+
+    /**
+     * @return Total number of samples pushed since creation or the last reset
+     */
+    public long getTotal() {
+        return sequence;
+    }
+
+    /**
+     * @param index 0 is the oldest sample in the largest window
+     */
+    public double at(int index) {
+        int held = (int) Math.min(sequence, largest);
+        if (index < 0 || index >= held)
+            throw new IndexOutOfBoundsException("Index " + index + " out of " + held + " samples");
+        return values[(int) (sequence - held + index) & mask];
+    }
+
+    public double getLast() {
+        return sequence == 0 ? Double.NaN : values[(int) (sequence - 1) & mask];
+    }
+
+    public int getCount() {
+        return getCount(0);
+    }
+
+    public int getCount(int window) {
+        return windows[window].count;
+    }
+
+    public double getMean() {
+        return getMean(0);
+    }
+
+    /**
+     * @return Mean of the window, 0 when empty
+     */
+    public double getMean(int window) {
+        Window w = windows[window];
+        if (w.count == 0)
+            return 0;
+        return w.shift + w.sum / w.count;
+    }
+
+    public double getSum() {
+        return getSum(0);
+    }
+
+    public double getSum(int window) {
+        Window w = windows[window];
+        return w.sum + w.shift * w.count;
+    }
+
+    public double getVariance() {
+        return getVariance(0);
+    }
+
+    /**
+     * @return Population variance of the window, 0 when empty
+     */
+    public double getVariance(int window) {
+        Window w = windows[window];
+        if (w.count == 0)
+            return 0;
+        double mean = w.sum / w.count;
+        return Math.max(0, w.sumSquares / w.count - mean * mean);
+    }
+
+    public double getStandardDeviation() {
+        return getStandardDeviation(0);
+    }
+
+    public double getStandardDeviation(int window) {
+        return Math.sqrt(getVariance(window));
+    }
+
+    public double getMin() {
+        return getMin(0);
+    }
+
+    /**
+     * @return Smallest sample in the window, NaN when empty
+     */
+    public double getMin(int window) {
+        Window w = windows[window];
+        if (w.count == 0)
+            return Double.NaN;
+        return values[(int) w.minQueue[(int) w.minHead & w.queueMask] & mask];
+    }
+
+    public double getMax() {
+        return getMax(0);
+    }
+
+    /**
+     * @return Largest sample in the window, NaN when empty
+     */
+    public double getMax(int window) {
+        Window w = windows[window];
+        if (w.count == 0)
+            return Double.NaN;
+        return values[(int) w.maxQueue[(int) w.maxHead & w.queueMask] & mask];
+    }
+
+    public double getRange() {
+        return getRange(0);
+    }
+
+    /**
+     * @return Difference between the largest and smallest sample in the window, 0 when empty
+     */
+    public double getRange(int window) {
+        Window w = windows[window];
+        if (w.count == 0)
+            return 0;
+        return getMax(window) - getMin(window);
+    }
+}
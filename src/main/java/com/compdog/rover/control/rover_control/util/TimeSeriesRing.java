@@ -0,0 +1,127 @@
+package com.compdog.rover.control.rover_control.util;
+
+/**
+ * Time series decimated into fixed time buckets, each keeping the min and max of its samples.<br>
+ * Samples are folded into their bucket as they are added, so reading any number of buckets costs the same
+ * no matter how many samples were recorded. Backed by primitive arrays used as a ring, one thread may add
+ * samples while another reads. A read racing with the writer may see the newest bucket without its latest
+ * sample, which only matters for display until the next read.
+ */
+public class TimeSeriesRing {
+
+    private final int capacity;
+    private final long bucketNanos;
+
+    private final long[] ids;
+    private final double[] min;
+    private final double[] max;
+
+    /* Written last by add, read first by read, orders the array accesses */
+    private volatile long version = 0;
+
+    private double lastValue = Double.NaN;
+
+    /**
+     * @param capacity Number of buckets kept
+     * @param bucketNanos Time covered by one bucket
+     */
+    public TimeSeriesRing(int capacity, long bucketNanos) {
+        if (capacity < 1 || bucketNanos < 1)
+            throw new IllegalArgumentException("Capacity and bucket size must be positive");
+
+        this.capacity = capacity;
+        this.bucketNanos = bucketNanos;
+        ids = new long[capacity];
+        min = new double[capacity];
+        max = new double[capacity];
+
+        /* No bucket matches until it is written */
+        for (int i = 0; i < capacity; i++) {
+            ids[i] = Long.MIN_VALUE;
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getBucketNanos() {
+        return bucketNanos;
+    }
+
+    /**
+     * @return Bucket the time falls into
+     */
+    public long bucketOf(long time) {
+        return Math.floorDiv(time, bucketNanos);
+    }
+
+    /**
+     * Writer only
+     * @param time Time of the sample in nanoseconds, from {@link System#nanoTime()}
+     */
+    public void add(long time, double value) {
+        long id = bucketOf(time);
+        int slot = (int) Math.floorMod(id, (long) capacity);
+
+        if (ids[slot] != id) {
+            ids[slot] = Long.MIN_VALUE;
+            min[slot] = value;
+            max[slot] = value;
+            ids[slot] = id;
+        } else {
+            if (value < min[slot])
+                min[slot] = value;
+            if (value > max[slot])
+                max[slot] = value;
+        }
+
+        lastValue = value;
+        version++;
+    }
+
+    /**
+     * Changes whenever a sample is added, for skipping redraws
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public double getLastValue() {
+        return lastValue;
+    }
+
+    /**
+     * Copies the buckets ending with the given one, oldest first. Empty buckets are NaN.
+     * @param last Newest bucket to copy
+     * @param count Number of buckets, at most the capacity
+     */
+    public void read(long last, int count, double[] minOut, double[] maxOut) {
+        if (count > capacity)
+            throw new IllegalArgumentException("Can not read more than " + capacity + " buckets");
+
+        if (version == 0) {
+            for (int i = 0; i < count; i++) {
+                minOut[i] = Double.NaN;
+                maxOut[i] = Double.NaN;
+            }
+            return;
+        }
+
+        long first = last - count + 1;
+        for (int i = 0; i < count; i++) {
+            long id = first + i;
+            int slot = (int) Math.floorMod(id, (long) capacity);
+
+            double low = min[slot];
+            double high = max[slot];
+            if (ids[slot] == id) {
+                minOut[i] = low;
+                maxOut[i] = high;
+            } else {
+                minOut[i] = Double.NaN;
+                maxOut[i] = Double.NaN;
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.compdog.rover.control.rover_control.util;
+
+/**
+ * Flyweight {@link Vector3} over three consecutive doubles of an array.<br>
+ * One view can be {@link #wrap wrapped} around any number of entries in turn, reading and writing goes
+ * straight to the array.
+ */
+public class Vector3View {
+    public static final int SIZE = 3;
+
+    private double[] data;
+    private int offset;
+
+    /**
+     * @param index Entry number, the entry starts at <code>index * 3</code>
+     */
+    public Vector3View wrap(double[] data, int index) {
+        this.data = data;
+        offset = index * SIZE;
+        return this;
+    }
+
+    public double getX() {
+        return data[offset];
+    }
+
+    public double getY() {
+        return data[offset + 1];
+    }
+
+    public double getZ() {
+        return data[offset + 2];
+    }
+
+    public void setX(double x) {
+        data[offset] = x;
+    }
+
+    public void setY(double y) {
+        data[offset + 1] = y;
+    }
+
+    public void setZ(double z) {
+        data[offset + 2] = z;
+    }
+
+    public void set(double x, double y, double z) {
+        data[offset] = x;
+        data[offset + 1] = y;
+        data[offset + 2] = z;
+    }
+
+    public Vector3 toVector() {
+        return new Vector3(getX(), getY(), getZ());
+    }
+}
@@ -0,0 +1,63 @@
+package com.compdog.rover.control.rover_control.util;
+
+/**
+ * Flyweight {@link Vector4} over four consecutive doubles of an array, see {@link Vector3View}
+ */
+public class Vector4View {
+    public static final int SIZE = 4;
+
+    private double[] data;
+    private int offset;
+
+    /**
+     * @param index Entry number, the entry starts at <code>index * 4</code>
+     */
+    public Vector4View wrap(double[] data, int index) {
+        this.data = data;
+        offset = index * SIZE;
+        return this;
+    }
+
+    public double getX() {
+        return data[offset];
+    }
+
+    public double getY() {
+        return data[offset + 1];
+    }
+
+    public double getZ() {
+        return data[offset + 2];
+    }
+
+    public double getW() {
+        return data[offset + 3];
+    }
+
+    public void setX(double x) {
+        data[offset] = x;
+    }
+
+    public void setY(double y) {
+        data[offset + 1] = y;
+    }
+
+    public void setZ(double z) {
+        data[offset + 2] = z;
+    }
+
+    public void setW(double w) {
+        data[offset + 3] = w;
+    }
+
+    public void set(double x, double y, double z, double w) {
+        data[offset] = x;
+        data[offset + 1] = y;
+        data[offset + 2] = z;
+        data[offset + 3] = w;
+    }
+
+    public Vector4 toVector() {
+        return new Vector4(getX(), getY(), getZ(), getW());
+    }
+}
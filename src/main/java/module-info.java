@@ -8,4 +8,5 @@ module com.compdog.rover.control.rover_control {
     opens com.compdog.rover.control.rover_control to javafx.fxml;
     exports com.compdog.rover.control.rover_control;
     exports com.compdog.rover.control.rover_control.packet;
+    exports com.compdog.rover.control.rover_control.recorder;
 }
\ No newline at end of file
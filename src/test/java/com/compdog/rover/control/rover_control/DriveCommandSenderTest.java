@@ -0,0 +1,123 @@
+package com.compdog.rover.control.rover_control;
+
+import com.compdog.rover.control.rover_control.packet.ManualDrivePacket;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DriveCommandSenderTest {
+
+    /* Connected without sockets, keeps the left output of every command sent */
+    private static class RecordingClient extends AbstractClient {
+        private final List<Double> sent = new ArrayList<>();
+
+        RecordingClient() {
+            super("127.0.0.1", 0);
+            connected = true;
+        }
+
+        void reconnect() throws IOException {
+            handshake();
+        }
+
+        @Override
+        public void SendPacket(ManualDrivePacket packet, boolean useDriver) {
+            synchronized (sent) {
+                sent.add(packet.left);
+            }
+        }
+
+        int getSentCount() {
+            synchronized (sent) {
+                return sent.size();
+            }
+        }
+
+        double getSent(int index) {
+            synchronized (sent) {
+                return sent.get(index);
+            }
+        }
+
+        double getLastSent() {
+            synchronized (sent) {
+                return sent.isEmpty() ? Double.NaN : sent.get(sent.size() - 1);
+            }
+        }
+
+        @Override
+        public void Start() {
+        }
+
+        @Override
+        public void Stop() {
+        }
+
+        @Override
+        public void Dispose() {
+        }
+    }
+
+    private static void await(BooleanSupplier condition, String message) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, message);
+            Thread.sleep(5);
+        }
+    }
+
+    private static double firstSentAfter(RecordingClient client, DriveCommandSender sender, int count)
+            throws InterruptedException {
+        sender.offer(0, 1);
+        await(() -> client.getSentCount() > count, "Nothing was sent");
+        return client.getSent(count);
+    }
+
+    @Test
+    void heldStickKeepsItsOutput() throws InterruptedException {
+        RecordingClient client = new RecordingClient();
+        try (DriveCommandSender sender = new DriveCommandSender(client, 100, new Drivetrain())) {
+            sender.offer(0, 1);
+            await(() -> client.getLastSent() == 1, "Drivetrain did not reach full speed");
+
+            assertEquals(1, firstSentAfter(client, sender, client.getSentCount()));
+        }
+    }
+
+    @Test
+    void reconnectRampsUpFromStandstill() throws IOException, InterruptedException {
+        RecordingClient client = new RecordingClient();
+        try (DriveCommandSender sender = new DriveCommandSender(client, 100, new Drivetrain())) {
+            sender.offer(0, 1);
+            await(() -> client.getLastSent() == 1, "Drivetrain did not reach full speed");
+
+            client.reconnect();
+            double first = firstSentAfter(client, sender, client.getSentCount());
+            assertTrue(first > 0 && first < 0.5, "First command after reconnecting was " + first);
+            await(() -> client.getLastSent() == 1, "Drivetrain did not reach full speed again");
+        }
+    }
+
+    @Test
+    void rampSendsAreCountedApart() throws InterruptedException {
+        RecordingClient client = new RecordingClient();
+        try (DriveCommandSender sender = new DriveCommandSender(client, 100, new Drivetrain())) {
+            for (int i = 0; i < 100; i++) {
+                sender.offer(0, 1);
+            }
+            await(() -> client.getLastSent() == 1, "Drivetrain did not reach full speed");
+            await(() -> sender.getSent() + sender.getCoalesced() == sender.getProduced(), "Offers are still pending");
+
+            Thread.sleep(50);
+            assertEquals(100, sender.getProduced());
+            assertTrue(sender.getRamped() > 0);
+            assertEquals(client.getSentCount(), sender.getSent() + sender.getRamped());
+        }
+    }
+}
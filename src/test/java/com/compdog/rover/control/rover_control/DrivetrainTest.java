@@ -0,0 +1,116 @@
+package com.compdog.rover.control.rover_control;
+
+import com.compdog.rover.control.rover_control.packet.CharacteristicsPacket;
+import com.compdog.rover.control.rover_control.packet.ManualDrivePacket;
+import com.compdog.rover.control.rover_control.util.Vector3View;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DrivetrainTest {
+
+    private static final long STEP = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final Drivetrain drivetrain = new Drivetrain();
+    private final ManualDrivePacket command = new ManualDrivePacket(0, 0);
+    private long now = 0;
+
+    /* Six 0.12 m wheels like the simulator, 0.44 m track and 0.4 m wheelbase, even wheels on the left */
+    static CharacteristicsPacket sixWheels() {
+        CharacteristicsPacket characteristics = new CharacteristicsPacket();
+        characteristics.wheelDiameter = 0.12;
+        for (int i = 0; i < CharacteristicsPacket.WHEELS; i++) {
+            characteristics.wheelLocations[i * Vector3View.SIZE] = 0.2 - (i / 2) * 0.2;
+            characteristics.wheelLocations[i * Vector3View.SIZE + 1] = i % 2 == 0 ? 0.22 : -0.22;
+            characteristics.wheelLocations[i * Vector3View.SIZE + 2] = -0.1;
+        }
+        return characteristics;
+    }
+
+    /* Updates until the outputs reach the target */
+    private void settle(double x, double y) {
+        for (int i = 0; i < 1000; i++) {
+            now += STEP;
+            drivetrain.update(x, y, now, command);
+            if (drivetrain.isSettled())
+                return;
+        }
+        fail("Outputs did not settle");
+    }
+
+    @Test
+    void deadbandIsCutOutAndRescaled() {
+        settle(Drivetrain.DEADBAND, -Drivetrain.DEADBAND);
+        assertEquals(0, command.left);
+        assertEquals(0, command.right);
+
+        settle(0, 1);
+        assertEquals(1, command.left);
+        assertEquals(1, command.right);
+
+        settle(0, (1 + Drivetrain.DEADBAND) / 2);
+        assertEquals(0.5, command.left, 1e-12);
+    }
+
+    @Test
+    void outputsRampAtTheSlewRate() {
+        now += STEP;
+        drivetrain.update(0, 1, now, command);
+        // The first update counts as the longest step
+        assertEquals(Drivetrain.ACCELERATION * 0.02, command.left, 1e-12);
+
+        now += STEP;
+        drivetrain.update(0, 1, now, command);
+        assertEquals(Drivetrain.ACCELERATION * 0.03, command.left, 1e-12);
+        assertFalse(drivetrain.isSettled());
+
+        settle(0, 1);
+        now += STEP;
+        drivetrain.update(0, 0, now, command);
+        assertEquals(1 - Drivetrain.DECELERATION * 0.01, command.left, 1e-12);
+    }
+
+    @Test
+    void saturatedTurnKeepsItsCurvature() {
+        drivetrain.configure(sixWheels());
+        settle(0.5, 1);
+        assertEquals(1, Math.max(Math.abs(command.left), Math.abs(command.right)), 1e-12);
+        assertTrue(command.left > command.right);
+
+        drivetrain.configure(null);
+        settle(0.5, 1);
+        double turn = (0.5 - Drivetrain.DEADBAND) / (1 - Drivetrain.DEADBAND);
+        assertEquals((1 - turn) / (1 + turn), command.right, 1e-12);
+    }
+
+    @Test
+    void limitsChangeTheTurnGain() {
+        CharacteristicsPacket characteristics = sixWheels();
+        DrivetrainGeometry geometry = new DrivetrainGeometry();
+        assertTrue(geometry.configure(characteristics));
+        drivetrain.configure(characteristics);
+
+        // Small enough that no side saturates
+        double x = 0.2;
+        double turn = (x - Drivetrain.DEADBAND) / (1 - Drivetrain.DEADBAND);
+        settle(x, 0);
+        assertEquals(turn * Drivetrain.DEFAULT_MAX_YAW_RATE * geometry.getEffectiveTrackWidth() /
+                (2 * geometry.getWheelSpeed(Drivetrain.DEFAULT_MAX_WHEEL_RPM)), command.left, 1e-12);
+        assertEquals(-command.left, command.right, 1e-12);
+
+        drivetrain.setLimits(120, 0.5);
+        settle(x, 0);
+        assertEquals(turn * 0.5 * geometry.getEffectiveTrackWidth() / (2 * geometry.getWheelSpeed(120)), command.left, 1e-12);
+    }
+
+    @Test
+    void resetStopsImmediately() {
+        settle(0, 1);
+        drivetrain.reset();
+        assertEquals(0, drivetrain.getLeft());
+        assertEquals(0, drivetrain.getRight());
+        assertTrue(drivetrain.isSettled());
+    }
+}
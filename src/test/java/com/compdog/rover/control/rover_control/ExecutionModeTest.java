@@ -0,0 +1,60 @@
+package com.compdog.rover.control.rover_control;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExecutionModeTest {
+
+    @Test
+    void parseIgnoresCase() {
+        assertEquals(ExecutionMode.PLATFORM, ExecutionMode.parse("platform"));
+        assertEquals(ExecutionMode.VIRTUAL, ExecutionMode.parse("Virtual"));
+        assertEquals(ExecutionMode.SHARED, ExecutionMode.parse("SHARED"));
+    }
+
+    /* Turkish upper cases i to a dotted capital I, which matched no mode */
+    @Test
+    void parseDoesNotDependOnTheDefaultLocale() {
+        Locale locale = Locale.getDefault();
+        try {
+            Locale.setDefault(new Locale("tr", "TR"));
+            assertEquals(ExecutionMode.VIRTUAL, ExecutionMode.parse("virtual"));
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    @Test
+    void parseListsTheAcceptedModes() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> ExecutionMode.parse("green"));
+        assertTrue(e.getMessage().contains("platform, virtual, shared"), e.getMessage());
+    }
+
+    /* The first run is far off, the ones after it follow the short delays the task returns */
+    @Test
+    void scheduleRearmingUsesTheReturnedDelays() throws InterruptedException {
+        for (ExecutionMode mode : new ExecutionMode[]{ExecutionMode.PLATFORM, ExecutionMode.SHARED}) {
+            AtomicInteger runs = new AtomicInteger();
+            CountDownLatch done = new CountDownLatch(3);
+            ExecutionMode.Task task = mode.scheduleRearming(() -> {
+                runs.incrementAndGet();
+                done.countDown();
+                return done.getCount() == 0 ? TimeUnit.HOURS.toNanos(1) : TimeUnit.MILLISECONDS.toNanos(1);
+            }, 0, TimeUnit.NANOSECONDS, "Rearming Test Thread");
+
+            try {
+                assertTrue(done.await(5, TimeUnit.SECONDS), mode + " did not rearm");
+                Thread.sleep(50);
+                assertEquals(3, runs.get(), mode + " ran past the long delay");
+            } finally {
+                task.cancel();
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.compdog.rover.control.rover_control;
+
+import com.compdog.rover.control.rover_control.sim.RoverSimulator;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FleetManagerTest {
+
+    private static void assertConnects(FleetManager fleet, Class<?> clientClass) throws IOException, InterruptedException {
+        try (RoverSimulator simulator = new RoverSimulator(0)) {
+            FleetManager.Rover rover = fleet.addRover("Simulator", "127.0.0.1", simulator.getPort());
+            assertSame(rover, fleet.getSelected());
+            assertInstanceOf(clientClass, rover.getClient());
+
+            fleet.Start();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (fleet.getConnectedCount() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, fleet.getConnectedCount());
+        } finally {
+            fleet.Dispose();
+        }
+    }
+
+    @Test
+    void blockingFleetUsesClients() throws IOException, InterruptedException {
+        assertConnects(new FleetManager(), Client.class);
+    }
+
+    @Test
+    void nioFleetUsesEventLoops() throws IOException, InterruptedException {
+        assertConnects(new FleetManager(1), NioClient.class);
+    }
+
+    @Test
+    void unknownHostDoesNotStallTheLoop() throws IOException, InterruptedException {
+        FleetManager fleet = new FleetManager(1);
+        try (RoverSimulator simulator = new RoverSimulator(0)) {
+            FleetManager.Rover unknown = fleet.addRover("Unknown", "rover.invalid", simulator.getPort());
+            fleet.addRover("Simulator", "127.0.0.1", simulator.getPort());
+
+            fleet.Start();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (fleet.getConnectedCount() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, fleet.getConnectedCount());
+            assertFalse(unknown.getClient().IsConnected());
+        } finally {
+            fleet.Dispose();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.compdog.rover.control.rover_control;
+
+import com.compdog.rover.control.rover_control.packet.CharacteristicsPacket;
+import com.compdog.rover.control.rover_control.packet.DrivetrainPacket;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OdometryTest {
+
+    /* Frames 10 ms apart, as at 100 Hz telemetry */
+    private static final long STEP = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final Odometry odometry = new Odometry();
+    private final DrivetrainPacket packet = new DrivetrainPacket();
+    private final Odometry.Pose pose = new Odometry.Pose();
+    private final DrivetrainGeometry geometry = new DrivetrainGeometry();
+    private double maxWheelSpeed;
+
+    @BeforeEach
+    void configure() {
+        CharacteristicsPacket characteristics = DrivetrainTest.sixWheels();
+        odometry.configure(characteristics);
+        geometry.configure(characteristics);
+        maxWheelSpeed = geometry.getWheelSpeed(odometry.getMaxWheelRpm());
+    }
+
+    /* Even motors drive the left wheels */
+    private void setMotors(double left, double right) {
+        for (int i = 0; i < DrivetrainPacket.MOTORS; i++) {
+            packet.motors[i] = i % 2 == 0 ? left : right;
+        }
+    }
+
+    private Odometry.Pose latest() {
+        assertTrue(odometry.getPose(pose));
+        return pose;
+    }
+
+    @Test
+    void noPoseBeforeConfigured() {
+        Odometry unconfigured = new Odometry();
+        assertFalse(unconfigured.update(0, packet));
+        assertFalse(unconfigured.getPose(pose));
+    }
+
+    /* 2 s at half output, about 0.5 m with the default 80 rpm on 0.12 m wheels */
+    @Test
+    void straightRunCoversItsDistance() {
+        setMotors(0.5, 0.5);
+        for (int i = 0; i <= 200; i++) {
+            assertTrue(odometry.update(i * STEP, packet));
+        }
+
+        Odometry.Pose pose = latest();
+        assertEquals(0.5 * maxWheelSpeed * 2, pose.x, 1e-9);
+        assertEquals(0.503, pose.x, 0.001);
+        assertEquals(0, pose.y, 1e-12);
+        assertEquals(0, pose.heading, 1e-12);
+        assertEquals(0.5 * maxWheelSpeed, pose.velocity, 1e-12);
+        assertEquals(201, odometry.getUpdates());
+    }
+
+    /* Stepping along the chord of each 10 ms arc stays within a micrometer of the circle */
+    @Test
+    void arcStaysOnItsCircle() {
+        setMotors(0.3, 0.5);
+        for (int i = 0; i <= 500; i++) {
+            odometry.update(i * STEP, packet);
+        }
+
+        Odometry.Pose pose = latest();
+        double radius = pose.velocity / pose.yawRate;
+        assertEquals(pose.yawRate * 5, pose.heading, 1e-9);
+        assertEquals(radius * Math.sin(pose.heading), pose.x, 1e-6);
+        assertEquals(radius * (1 - Math.cos(pose.heading)), pose.y, 1e-6);
+    }
+
+    /* 10 s spinning in place to 358 degrees with every 10th frame missing */
+    @Test
+    void spinBridgesDroppedFrames() {
+        double yawRate = Math.toRadians(358) / 10;
+        double motor = yawRate * geometry.getEffectiveTrackWidth() / 2 / maxWheelSpeed;
+        setMotors(-motor, motor);
+        for (int i = 0; i <= 1000; i++) {
+            if (i % 10 != 5)
+                assertTrue(odometry.update(i * STEP, packet));
+        }
+
+        Odometry.Pose pose = latest();
+        // Normalized to -180 to 180 degrees
+        assertEquals(-2, Math.toDegrees(pose.heading), 1e-6);
+        assertEquals(0, pose.x, 1e-12);
+        assertEquals(0, pose.y, 1e-12);
+        assertEquals(100, odometry.getDropped());
+        assertEquals(0, odometry.getGaps());
+    }
+
+    @Test
+    void sameTimeIsAZeroLengthStep() {
+        setMotors(1, 1);
+        odometry.update(0, packet);
+        odometry.update(STEP, packet);
+        double x = latest().x;
+
+        assertTrue(odometry.update(STEP, packet));
+        assertEquals(x, latest().x);
+        assertEquals(0, odometry.getStale());
+        assertEquals(3, odometry.getUpdates());
+
+        // The period estimate is not pulled down by the repeated time
+        odometry.update(2 * STEP, packet);
+        assertEquals(0, odometry.getDropped());
+    }
+
+    @Test
+    void olderFramesAreStale() {
+        setMotors(1, 1);
+        odometry.update(STEP, packet);
+        assertFalse(odometry.update(0, packet));
+        assertEquals(1, odometry.getStale());
+        assertEquals(1, odometry.getUpdates());
+    }
+
+    @Test
+    void longGapsAreNotIntegrated() {
+        setMotors(1, 1);
+        odometry.update(0, packet);
+        odometry.update(TimeUnit.MILLISECONDS.toNanos(Odometry.MAX_GAP_MS + 1), packet);
+        assertEquals(0, latest().x);
+        assertEquals(1, odometry.getGaps());
+    }
+
+    @Test
+    void resetReturnsToTheOrigin() {
+        setMotors(1, 0.5);
+        for (int i = 0; i <= 100; i++) {
+            odometry.update(i * STEP, packet);
+        }
+        assertTrue(latest().x > 0);
+
+        odometry.reset();
+        odometry.update(101 * STEP, packet);
+        Odometry.Pose pose = latest();
+        assertEquals(0, pose.x);
+        assertEquals(0, pose.y);
+        assertEquals(0, pose.heading);
+    }
+
+    @Test
+    void trajectoryKeepsTheLatestPoses() {
+        Odometry odometry = new Odometry(16);
+        odometry.configure(DrivetrainTest.sixWheels());
+        setMotors(1, 1);
+        for (int i = 0; i < 40; i++) {
+            odometry.update(i * STEP, packet);
+        }
+
+        assertEquals(40, odometry.getTrajectoryEnd());
+        assertEquals(24, odometry.getTrajectoryStart());
+        assertFalse(odometry.getTrajectory(23, pose));
+        assertTrue(odometry.getTrajectory(24, pose));
+        assertEquals(24 * STEP, pose.time);
+        assertEquals(24, pose.position);
+    }
+}
@@ -0,0 +1,125 @@
+package com.compdog.rover.control.rover_control;
+
+import com.compdog.rover.control.rover_control.packet.DrivetrainPacket;
+import com.compdog.rover.control.rover_control.packet.PacketType;
+import com.compdog.rover.control.rover_control.recorder.FlightRecorder;
+import com.compdog.rover.control.rover_control.recorder.FlightRecording;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplayClientTest {
+
+    private static final long STEP = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private static void record(Path directory, int frames) throws IOException {
+        Odometry odometry = new Odometry();
+        odometry.configure(DrivetrainTest.sixWheels());
+        DrivetrainPacket packet = new DrivetrainPacket();
+        for (int i = 0; i < DrivetrainPacket.MOTORS; i++) {
+            packet.motors[i] = i % 2 == 0 ? 0.3 : 0.6;
+        }
+
+        try (FlightRecorder recorder = new FlightRecorder(directory, 2, 1024 * 1024)) {
+            recorder.setOdometry(odometry);
+            long start = System.nanoTime();
+            for (int i = 0; i < frames; i++) {
+                long time = start + i * STEP;
+                odometry.update(time, packet);
+                recorder.record(time, packet);
+            }
+        }
+    }
+
+    /* Every DRIVE frame has a pose of the same time, the intervals alternate between 0 and STEP */
+    @Test
+    void replaysDrivesAndPosesInTimeOrder(@TempDir Path directory) throws IOException, InterruptedException {
+        record(directory, 200);
+
+        int poses = 0;
+        try (FlightRecording recording = new FlightRecording(directory)) {
+            long previous = Long.MIN_VALUE;
+            while (recording.next()) {
+                assertTrue(recording.getTime() >= previous, "Record went back in time");
+                previous = recording.getTime();
+                if (recording.getType() == PacketType.POSE)
+                    poses++;
+            }
+        }
+        assertTrue(poses > 0);
+
+        List<long[]> updates = new CopyOnWriteArrayList<>();
+        ReplayClient replay = new ReplayClient(directory);
+        replay.addConnectionUpdateListener((statusChanged, avg, gap) -> {
+            if (!statusChanged)
+                updates.add(new long[]{avg, gap});
+        });
+        try {
+            replay.setSpeed(4);
+            replay.Start();
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (updates.size() < 2) {
+                assertTrue(System.nanoTime() < deadline, "No connection update during the replay");
+                Thread.sleep(5);
+            }
+        } finally {
+            replay.Dispose();
+        }
+
+        long[] last = updates.get(updates.size() - 1);
+        assertEquals(TimeUnit.NANOSECONDS.toMillis(STEP) / 2, last[0]);
+        assertEquals(TimeUnit.NANOSECONDS.toMillis(STEP), last[1]);
+    }
+
+    @Test
+    void replaysRecordedPoses(@TempDir Path directory) throws IOException, InterruptedException {
+        Odometry odometry = new Odometry();
+        odometry.configure(DrivetrainTest.sixWheels());
+        DrivetrainPacket packet = new DrivetrainPacket();
+        for (int i = 0; i < DrivetrainPacket.MOTORS; i++) {
+            packet.motors[i] = i % 2 == 0 ? 0.3 : 0.6;
+        }
+
+        Odometry.Pose live = new Odometry.Pose();
+        try (FlightRecorder recorder = new FlightRecorder(directory, 2, 1024 * 1024)) {
+            recorder.setOdometry(odometry);
+            long start = System.nanoTime();
+            for (int i = 0; i <= 100; i++) {
+                long time = start + i * STEP;
+                odometry.update(time, packet);
+                recorder.record(time, packet);
+            }
+        }
+        assertTrue(odometry.getPose(live));
+
+        ReplayClient replay = new ReplayClient(directory);
+        try {
+            replay.setSpeed(ReplayClient.SPEED_MAX);
+            replay.Start();
+
+            Odometry.Pose replayed = new Odometry.Pose();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!replay.getOdometry().getPose(replayed) || replayed.x != live.x) {
+                assertTrue(System.nanoTime() < deadline, "Last pose was not replayed");
+                Thread.sleep(5);
+            }
+
+            assertEquals(live.y, replayed.y);
+            assertEquals(live.heading, replayed.heading);
+            assertEquals(live.velocity, replayed.velocity);
+            assertEquals(live.yawRate, replayed.yawRate);
+            // Replayed DRIVE frames are not integrated again
+            assertEquals(0, replay.getOdometry().getUpdates());
+        } finally {
+            replay.Dispose();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.compdog.rover.control.rover_control.packet;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PacketReaderTest {
+
+    private static byte[] frames(ManualDrivePacket... packets) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PacketWriter writer = new PacketWriter(out);
+        writer.setBinary(true);
+        for (ManualDrivePacket packet : packets) {
+            writer.write(packet);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    void readsBinaryFrames() throws IOException {
+        byte[] data = frames(new ManualDrivePacket(0.25, -0.5));
+        PacketReader reader = new PacketReader(new ByteArrayInputStream(data));
+
+        assertTrue(reader.next());
+        assertTrue(reader.isBinary());
+        assertEquals(PacketType.MANUAL_DRIVE, reader.getType());
+        ManualDrivePacket packet = PacketCodecs.MANUAL_DRIVE.create();
+        PacketCodecs.MANUAL_DRIVE.read(reader, packet);
+        assertEquals(0.25, packet.left);
+        assertEquals(-0.5, packet.right);
+        assertFalse(reader.next());
+    }
+
+    @Test
+    void dropsFrameShorterThanItsType() throws IOException {
+        byte[] valid = frames(new ManualDrivePacket(0.25, -0.5), new ManualDrivePacket(0.75, 1));
+        int frame = BinaryFrame.HEADER_SIZE + BinaryFrame.MANUAL_DRIVE_SIZE;
+
+        // First frame claims 8 bytes and carries only left, the second frame follows right after it
+        byte[] data = new byte[valid.length - 8];
+        System.arraycopy(valid, 0, data, 0, BinaryFrame.HEADER_SIZE + 8);
+        data[2] = 8;
+        System.arraycopy(valid, frame, data, BinaryFrame.HEADER_SIZE + 8, frame);
+
+        PacketReader reader = new PacketReader(new ByteArrayInputStream(data));
+        assertTrue(reader.next());
+        assertEquals(1, reader.getMalformed());
+
+        ManualDrivePacket packet = PacketCodecs.MANUAL_DRIVE.create();
+        PacketCodecs.MANUAL_DRIVE.read(reader, packet);
+        assertEquals(0.75, packet.left);
+        assertEquals(1, packet.right);
+        assertFalse(reader.next());
+    }
+
+    @Test
+    void dropsFrameLongerThanItsType() throws IOException {
+        byte[] valid = frames(new ManualDrivePacket(0.25, -0.5));
+        byte[] data = new byte[valid.length + 4];
+        System.arraycopy(valid, 0, data, 0, valid.length);
+        data[2] = (byte) (BinaryFrame.MANUAL_DRIVE_SIZE + 4);
+
+        PacketReader reader = new PacketReader(new ByteArrayInputStream(data));
+        assertFalse(reader.next());
+        assertEquals(1, reader.getMalformed());
+    }
+
+    @Test
+    void keepsReadingTextAfterDroppedFrame() throws IOException {
+        byte[] frame = frames(new ManualDrivePacket(0.25, -0.5));
+        frame[2] = 4;
+        byte[] text = "DRIVE:1|2|3|4|5|6\n".getBytes();
+        byte[] data = new byte[BinaryFrame.HEADER_SIZE + 4 + text.length];
+        System.arraycopy(frame, 0, data, 0, BinaryFrame.HEADER_SIZE + 4);
+        System.arraycopy(text, 0, data, BinaryFrame.HEADER_SIZE + 4, text.length);
+
+        PacketReader reader = new PacketReader(new ByteArrayInputStream(data));
+        assertTrue(reader.next());
+        assertFalse(reader.isBinary());
+        assertEquals(PacketType.DRIVETRAIN, reader.getType());
+        assertEquals(1, reader.getMalformed());
+    }
+
+    @Test
+    void logsOnlyTheFirstOfManyDrops() throws IOException {
+        byte[] frame = frames(new ManualDrivePacket(0.25, -0.5));
+        int length = BinaryFrame.HEADER_SIZE + 4;
+        frame[2] = 4;
+        byte[] data = new byte[length * 1000];
+        for (int i = 0; i < 1000; i++) {
+            System.arraycopy(frame, 0, data, i * length, length);
+        }
+
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+        try {
+            System.setOut(new PrintStream(log, true, StandardCharsets.UTF_8));
+            PacketReader reader = new PacketReader(new ByteArrayInputStream(data));
+            assertFalse(reader.next());
+            assertEquals(1000, reader.getMalformed());
+        } finally {
+            System.setOut(out);
+        }
+        assertEquals(1, log.toString(StandardCharsets.UTF_8).lines().count(), log.toString(StandardCharsets.UTF_8));
+    }
+}
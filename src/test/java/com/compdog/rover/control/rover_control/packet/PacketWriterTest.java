@@ -0,0 +1,62 @@
+package com.compdog.rover.control.rover_control.packet;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PacketWriterTest {
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final PacketWriter writer = new PacketWriter(out);
+
+    private void assertSameAsFormat(double left, double right) throws IOException {
+        out.reset();
+        writer.write(new ManualDrivePacket(left, right));
+        assertEquals(String.format(Locale.ROOT, "MDRIVE:%f|%f\n", left, right), out.toString(StandardCharsets.US_ASCII),
+                () -> "left " + left + ", right " + right);
+    }
+
+    @Test
+    void motorRangeMatchesFormat() throws IOException {
+        Random random = new Random(6);
+        for (int i = 0; i < 200_000; i++) {
+            assertSameAsFormat(random.nextDouble() * 2 - 1, random.nextDouble() * 2 - 1);
+        }
+    }
+
+    @Test
+    void largeValuesMatchFormat() throws IOException {
+        Random random = new Random(7);
+        for (int i = 0; i < 20_000; i++) {
+            assertSameAsFormat((random.nextDouble() - 0.5) * 2e9, (random.nextDouble() - 0.5) * 1e12);
+        }
+    }
+
+    /* Values whose seventh fraction digit is a 5, where rounding half up and the binary value disagree */
+    @Test
+    void tiesMatchFormat() throws IOException {
+        for (int i = -100_000; i <= 100_000; i++) {
+            double tie = (i + 0.5) / 1e6;
+            assertSameAsFormat(tie, Math.nextUp(tie));
+            assertSameAsFormat(Math.nextDown(tie), -tie);
+        }
+    }
+
+    @Test
+    void specialValuesMatchFormat() throws IOException {
+        double[] values = {
+                0, -0.0, 1, -1, 0.5, 1e-7, -1e-7, 5e-7, -5e-7, 4.9999999e-7, 0.9999995, -0.9999995,
+                Double.MIN_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE, 999_999_999.9999995, 1e9,
+                Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY
+        };
+        for (double value : values) {
+            assertSameAsFormat(value, value);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.compdog.rover.control.rover_control.sim;
+
+import com.compdog.rover.control.rover_control.Client;
+import com.compdog.rover.control.rover_control.ExecutionMode;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Checks what connecting many blocking {@link Client}s costs in platform threads per {@link ExecutionMode}.<br>
+ * A client has a socket thread and a timeout loop, the shared mode moves the timeout loops onto the one
+ * shared scheduler thread and the virtual mode needs no platform thread per client at all.
+ */
+class ClientFootprintTest {
+
+    private static final int ROVERS = 50;
+
+    /**
+     * @return Platform threads added while all clients were connected
+     */
+    private static int measureThreads(ExecutionMode mode) throws IOException, InterruptedException {
+        // The shared scheduler thread is started once for the JVM, not per client
+        ExecutionMode.getSharedScheduler().schedule(() -> { }, 0, TimeUnit.MILLISECONDS);
+
+        try (RoverSimulator simulator = new RoverSimulator(0)) {
+            simulator.setTelemetryRate(10);
+
+            int threadsBefore = platformThreads();
+            List<Client> clients = new ArrayList<>();
+            try {
+                for (int i = 0; i < ROVERS; i++) {
+                    Client client = new Client("127.0.0.1", simulator.getPort(), mode);
+                    clients.add(client);
+                    client.Start();
+                }
+
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+                while (connected(clients) < ROVERS && System.nanoTime() < deadline) {
+                    Thread.sleep(10);
+                }
+                assertEquals(ROVERS, connected(clients));
+
+                return platformThreads() - threadsBefore;
+            } finally {
+                // Socket threads only notice on their next line, stopping all first overlaps those waits
+                for (Client client : clients) {
+                    client.Stop();
+                }
+                for (Client client : clients) {
+                    client.Dispose();
+                }
+
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+                while (platformThreads() > threadsBefore && System.nanoTime() < deadline) {
+                    Thread.sleep(10);
+                }
+                assertTrue(platformThreads() <= threadsBefore, "Disposed clients left threads behind");
+            }
+        }
+    }
+
+    private static int connected(List<Client> clients) {
+        int connected = 0;
+        for (Client client : clients) {
+            if (client.IsConnected())
+                connected++;
+        }
+        return connected;
+    }
+
+    /* Virtual threads are not listed */
+    private static int platformThreads() {
+        return Thread.getAllStackTraces().size();
+    }
+
+    @Test
+    void platformModeRunsTwoThreadsPerClient() throws IOException, InterruptedException {
+        int added = measureThreads(ExecutionMode.PLATFORM);
+        assertTrue(added >= 2 * ROVERS, "Added " + added + " threads");
+    }
+
+    @Test
+    void sharedModeRunsOneThreadPerClient() throws IOException, InterruptedException {
+        int added = measureThreads(ExecutionMode.SHARED);
+        assertTrue(added >= ROVERS && added < 2 * ROVERS, "Added " + added + " threads");
+    }
+
+    @Test
+    void virtualModeRunsNoThreadPerClient() throws IOException, InterruptedException {
+        assumeTrue(ExecutionMode.isVirtualAvailable(), "Virtual threads need Java 21");
+        int added = measureThreads(ExecutionMode.VIRTUAL);
+        assertTrue(added < ROVERS, "Added " + added + " threads");
+    }
+}
@@ -0,0 +1,74 @@
+package com.compdog.rover.control.rover_control.sim;
+
+import com.compdog.rover.control.rover_control.AbstractClient;
+import com.compdog.rover.control.rover_control.Client;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Receive intervals and the receive timeout of the blocking {@link Client} against a {@link RoverSimulator}
+ */
+class ClientWatchdogTest {
+
+    private static void await(Client client, long millis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        while (!client.IsConnected() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(client.IsConnected(), "Client did not connect");
+    }
+
+    /* DRIVE and WHISKR arrive back to back every 5 ms, a sampled interval would read 10 ms or more */
+    @Test
+    void reportsEveryLineInterval() throws IOException, InterruptedException {
+        try (RoverSimulator simulator = new RoverSimulator(0)) {
+            simulator.setTelemetryRate(200);
+
+            Client client = new Client("127.0.0.1", simulator.getPort());
+            long[] average = {-1};
+            client.addConnectionUpdateListener((statusChanged, avg, gap) -> {
+                if (!statusChanged)
+                    average[0] = avg;
+            });
+
+            try {
+                client.Start();
+                await(client, 10_000);
+                Thread.sleep(2000);
+
+                long avg = average[0];
+                assertTrue(avg >= 1 && avg <= 5, "Average interval " + avg + " ms");
+            } finally {
+                client.Stop();
+                client.Dispose();
+            }
+        }
+    }
+
+    @Test
+    void silentRoverTimesOut() throws IOException, InterruptedException {
+        RoverSimulator simulator = new RoverSimulator(0);
+        simulator.setTelemetryRate(0.01);
+
+        Client client = new Client("127.0.0.1", simulator.getPort());
+        try {
+            client.Start();
+            await(client, 10_000);
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(15);
+            while (client.getConnections() < 2 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(client.getConnections() >= 2, "Client never timed out and reconnected");
+        } finally {
+            // Closed first, the socket thread only notices Dispose once its read returns
+            simulator.close();
+            client.Stop();
+            client.Dispose();
+        }
+    }
+}
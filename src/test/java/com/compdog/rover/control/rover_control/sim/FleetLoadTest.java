@@ -0,0 +1,127 @@
+package com.compdog.rover.control.rover_control.sim;
+
+import com.compdog.rover.control.rover_control.AbstractClient;
+import com.compdog.rover.control.rover_control.Client;
+import com.compdog.rover.control.rover_control.ExecutionMode;
+import com.compdog.rover.control.rover_control.FleetManager;
+import com.compdog.rover.control.rover_control.packet.DrivetrainPacket;
+import com.compdog.rover.control.rover_control.packet.HealthPacket;
+import com.compdog.rover.control.rover_control.packet.ManualDrivePacket;
+import com.compdog.rover.control.rover_control.packet.PacketType;
+import com.compdog.rover.control.rover_control.packet.WhiskersPacket;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Connects many clients to a local {@link RoverSimulator} and checks every one of them keeps receiving
+ * telemetry and answering pings.<br>
+ * The nio engine shares the io threads between all rovers through a {@link FleetManager},
+ * the blocking engine starts one {@link Client} per rover.
+ */
+class FleetLoadTest {
+
+    private static final int ROVERS = 16;
+    private static final double RATE = 50;
+    private static final int SECONDS = 2;
+
+    private static void assertFleetKeepsUp(@Nullable FleetManager fleet, boolean binary, double disconnectEvery)
+            throws IOException, InterruptedException {
+        try (RoverSimulator simulator = new RoverSimulator(0)) {
+            simulator.setTelemetryRate(RATE);
+            simulator.setDisconnectInterval(disconnectEvery);
+
+            List<AbstractClient> clients = new ArrayList<>();
+            List<LongAdder> packets = new ArrayList<>();
+            for (int i = 0; i < ROVERS; i++) {
+                AbstractClient client = fleet == null ?
+                        new Client("127.0.0.1", simulator.getPort(), ExecutionMode.PLATFORM) :
+                        fleet.addRover("Rover " + i, "127.0.0.1", simulator.getPort()).getClient();
+                LongAdder counter = new LongAdder();
+                client.setBinaryProtocol(binary);
+                client.addUpdateListener(new AbstractClient.UpdatedListener() {
+                    @Override
+                    public void updated(DrivetrainPacket packet) {
+                        counter.increment();
+                    }
+
+                    @Override
+                    public void updated(HealthPacket packet) {
+                        counter.increment();
+                    }
+
+                    @Override
+                    public void updated(WhiskersPacket packet) {
+                        counter.increment();
+                    }
+                });
+                clients.add(client);
+                packets.add(counter);
+            }
+
+            try {
+                for (AbstractClient client : clients) {
+                    client.Start();
+                }
+
+                long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(SECONDS);
+                int tick = 0;
+                while (System.nanoTime() < end) {
+                    Thread.sleep(100);
+                    for (AbstractClient client : clients) {
+                        client.Ping();
+                    }
+                    // Keep the first rover busy on the driver connection as well
+                    clients.get(0).SendPacket(new ManualDrivePacket(Math.sin(tick), Math.cos(tick++)), true);
+                }
+
+                // Each rover streams DRIVE and WHISKERS, allow a slow start and the reconnects
+                long expected = (long) (RATE * SECONDS / 2);
+                for (int i = 0; i < ROVERS; i++) {
+                    AbstractClient client = clients.get(i);
+                    assertTrue(packets.get(i).sum() >= expected, "Rover " + i + " received " + packets.get(i).sum());
+                    assertTrue(client.getMetrics().getRoundTrip().getCount() > 0, "Rover " + i + " answered no ping");
+                    assertTrue(client.getMetrics().getInterArrival(PacketType.DRIVETRAIN).getCount() > 0);
+                }
+                assertTrue(simulator.getCommandsReceived() > 0);
+                if (disconnectEvery > 0)
+                    assertTrue(simulator.getDisconnects() > 0);
+            } finally {
+                if (fleet != null) {
+                    fleet.Dispose();
+                } else {
+                    for (AbstractClient client : clients) {
+                        client.Dispose();
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void blockingClientsKeepUp() throws IOException, InterruptedException {
+        assertFleetKeepsUp(null, false, 0);
+    }
+
+    @Test
+    void nioFleetKeepsUp() throws IOException, InterruptedException {
+        assertFleetKeepsUp(new FleetManager(2), false, 0);
+    }
+
+    @Test
+    void nioFleetKeepsUpWithBinaryFrames() throws IOException, InterruptedException {
+        assertFleetKeepsUp(new FleetManager(2), true, 0);
+    }
+
+    @Test
+    void nioFleetReconnects() throws IOException, InterruptedException {
+        assertFleetKeepsUp(new FleetManager(2), false, 0.5);
+    }
+}
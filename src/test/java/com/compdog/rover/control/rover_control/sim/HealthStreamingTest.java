@@ -0,0 +1,156 @@
+package com.compdog.rover.control.rover_control.sim;
+
+import com.compdog.rover.control.rover_control.AbstractClient;
+import com.compdog.rover.control.rover_control.Client;
+import com.compdog.rover.control.rover_control.CommandScheduler;
+import com.compdog.rover.control.rover_control.packet.DrivetrainPacket;
+import com.compdog.rover.control.rover_control.packet.HealthPacket;
+import com.compdog.rover.control.rover_control.packet.PacketType;
+import com.compdog.rover.control.rover_control.packet.WhiskersPacket;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares polled and pushed health on a {@link RoverSimulator} reporting fixed health.<br>
+ * Other telemetry is slowed down to almost nothing so the health traffic is what gets measured. Polling
+ * follows the same fallback as MainController, polls are skipped while health is pushed.
+ */
+class HealthStreamingTest {
+
+    private static final double POLL_RATE = 5;
+    private static final int INTERVAL = 100;
+    private static final int HEARTBEAT = 500;
+    private static final int SECONDS = 3;
+
+    private final HealthPacket health = new HealthPacket();
+    private final LongAdder frames = new LongAdder();
+    private volatile double seenTemp = Double.NaN;
+
+    private RoverSimulator simulator;
+    private CommandScheduler scheduler;
+    private Client client;
+
+    @BeforeEach
+    void connect() throws IOException {
+        health.temp = 40;
+        health.memoryUsed = 96L * 1024 * 1024;
+        health.memoryTotal = 512L * 1024 * 1024;
+
+        simulator = new RoverSimulator(0);
+        simulator.setTelemetryRate(0.01);
+        simulator.setHealth(health);
+        scheduler = new CommandScheduler();
+
+        client = new Client("127.0.0.1", simulator.getPort());
+        client.addUpdateListener(new AbstractClient.UpdatedListener() {
+            @Override
+            public void updated(DrivetrainPacket packet) {
+            }
+
+            @Override
+            public void updated(HealthPacket packet) {
+                frames.increment();
+                seenTemp = packet.temp;
+            }
+
+            @Override
+            public void updated(WhiskersPacket packet) {
+            }
+        });
+        scheduler.schedule("GETHEALTH", POLL_RATE, () -> {
+            if (!client.isHealthStreaming())
+                client.RequestHealth();
+        });
+    }
+
+    @AfterEach
+    void disconnect() {
+        client.Stop();
+        client.Dispose();
+        scheduler.close();
+        simulator.close();
+    }
+
+    private static void await(BooleanSupplier condition, long millis, String message) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, message);
+            Thread.sleep(10);
+        }
+    }
+
+    private long requests() {
+        return client.getMetrics().getSend(PacketType.REQUEST_HEALTH).getCount();
+    }
+
+    /**
+     * @return HEALTH frames received within the measured seconds, after the handshake settled
+     */
+    private long countFrames() throws InterruptedException {
+        client.Start();
+        await(client::IsConnected, 10_000, "Client did not connect");
+        Thread.sleep(1000);
+
+        long before = frames.sum();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(SECONDS));
+        return frames.sum() - before;
+    }
+
+    @Test
+    void pushingSendsLessThanPolling() throws InterruptedException {
+        long polled = countFrames();
+        client.Stop();
+
+        frames.reset();
+        client.setHealthStreaming(INTERVAL, HEARTBEAT);
+        long requestsBefore = requests();
+        long pushedBefore = simulator.getHealthPushed();
+        long pushed = countFrames();
+
+        assertTrue(polled >= POLL_RATE * SECONDS / 2, "Polled " + polled + " frames");
+        assertTrue(pushed > 0, "Nothing was pushed");
+        assertTrue(pushed < polled, "Pushed " + pushed + " frames, polled " + polled);
+        assertTrue(simulator.getHealthPushed() - pushedBefore < polled);
+        // Fixed health only goes out with the heartbeat, every other check is suppressed
+        assertTrue(simulator.getHealthSuppressed() > 0);
+        assertTrue(client.isHealthStreaming());
+        // Only the first poll before the stream arrived, if any
+        assertTrue(requests() - requestsBefore <= 1, "Polled " + (requests() - requestsBefore) + " times while streaming");
+    }
+
+    @Test
+    void changesArePushedBeforeTheHeartbeat() throws InterruptedException {
+        client.setHealthStreaming(INTERVAL, HEARTBEAT * 10);
+        client.Start();
+        await(client::isHealthStreaming, 10_000, "Health was not pushed");
+
+        health.temp = 45;
+        simulator.setHealth(health);
+        await(() -> seenTemp == 45, HEARTBEAT * 2, "Change was not pushed");
+    }
+
+    @Test
+    void fallsBackToPollingWhenTheRoverStopsPushing() throws InterruptedException {
+        client.setHealthStreaming(INTERVAL, HEARTBEAT);
+        client.Start();
+        await(client::isHealthStreaming, 10_000, "Health was not pushed");
+
+        simulator.setHealthStreaming(false);
+        await(() -> !client.isHealthStreaming(), HEARTBEAT * 4, "Still streaming after the rover stopped pushing");
+
+        long requestsBefore = requests();
+        long framesBefore = frames.sum();
+        await(() -> requests() - requestsBefore >= 2 && frames.sum() > framesBefore, 5000, "Polling did not resume");
+
+        simulator.setHealthStreaming(true);
+        await(client::isHealthStreaming, HEARTBEAT * 4, "Streaming did not resume");
+    }
+}
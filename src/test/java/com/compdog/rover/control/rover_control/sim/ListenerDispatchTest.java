@@ -0,0 +1,170 @@
+package com.compdog.rover.control.rover_control.sim;
+
+import com.compdog.rover.control.rover_control.AbstractClient;
+import com.compdog.rover.control.rover_control.AsyncUpdateListener;
+import com.compdog.rover.control.rover_control.Client;
+import com.compdog.rover.control.rover_control.packet.DrivetrainPacket;
+import com.compdog.rover.control.rover_control.packet.HealthPacket;
+import com.compdog.rover.control.rover_control.packet.PacketType;
+import com.compdog.rover.control.rover_control.packet.WhiskersPacket;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Feeds a {@link RoverSimulator} into a listener that is slower than the telemetry, once called on the
+ * receiving thread and once through an {@link AsyncUpdateListener} for every backpressure policy.<br>
+ * The listener keeps up with half the DRIVE rate, so called directly it slows down reading, and
+ * asynchronously the backpressure decides between losing packets and slowing down reading again.
+ */
+class ListenerDispatchTest {
+
+    private static final double RATE = 200;
+    private static final int SECONDS = 2;
+    private static final long LISTENER_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final int CAPACITY = 64;
+
+    /* Read within the measured seconds, fewer than this means the listener held up the receiving thread */
+    private static final double FULL_RATE = RATE * SECONDS * 0.8;
+
+    private static class Result {
+        long read;
+        long seen;
+        long dispatchP50;
+        @Nullable AsyncUpdateListener async;
+    }
+
+    private static Result run(@Nullable AsyncUpdateListener.Backpressure backpressure) throws IOException, InterruptedException {
+        try (RoverSimulator simulator = new RoverSimulator(0)) {
+            simulator.setTelemetryRate(RATE);
+
+            LongAdder read = new LongAdder();
+            LongAdder seen = new LongAdder();
+
+            AbstractClient.UpdatedListener slow = new AbstractClient.UpdatedListener() {
+                @Override
+                public void updated(DrivetrainPacket packet) {
+                    seen.increment();
+                    // Busy, like a listener doing real work, parking would hand the core to the reader
+                    long end = System.nanoTime() + LISTENER_NANOS;
+                    while (System.nanoTime() < end) {
+                        Thread.onSpinWait();
+                    }
+                }
+
+                @Override
+                public void updated(HealthPacket packet) {
+                }
+
+                @Override
+                public void updated(WhiskersPacket packet) {
+                }
+            };
+
+            Client client = new Client("127.0.0.1", simulator.getPort());
+            client.addUpdateListener(new AbstractClient.UpdatedListener() {
+                @Override
+                public void updated(DrivetrainPacket packet) {
+                    read.increment();
+                }
+
+                @Override
+                public void updated(HealthPacket packet) {
+                }
+
+                @Override
+                public void updated(WhiskersPacket packet) {
+                }
+            });
+
+            Result result = new Result();
+            if (backpressure == null)
+                client.addUpdateListener(slow);
+            else
+                result.async = client.addUpdateListener(slow, backpressure, CAPACITY);
+
+            try {
+                client.Start();
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+                while (!client.IsConnected() && System.nanoTime() < deadline) {
+                    Thread.sleep(10);
+                }
+                assertTrue(client.IsConnected());
+
+                // Skip the handshake, and for BLOCK the time until its queue first fills up
+                Thread.sleep(500);
+                long readBefore = read.sum();
+                long seenBefore = seen.sum();
+                Thread.sleep(TimeUnit.SECONDS.toMillis(SECONDS));
+                result.read = read.sum() - readBefore;
+                result.seen = seen.sum() - seenBefore;
+                result.dispatchP50 = client.getMetrics().getDispatch(PacketType.DRIVETRAIN).snapshot().getP50();
+            } finally {
+                client.Stop();
+                // The socket thread may still be inside the slow listener
+                LockSupport.parkNanos(LISTENER_NANOS * 2);
+                if (result.async != null && backpressure != AsyncUpdateListener.Backpressure.BLOCK) {
+                    client.removeUpdateListener(result.async);
+                    result.async.close();
+                }
+                client.Dispose();
+            }
+            return result;
+        }
+    }
+
+    private static void assertListenerKeptUp(Result result) {
+        assertTrue(result.seen <= RATE * SECONDS * 0.6, "Listener saw " + result.seen);
+    }
+
+    @Test
+    void slowListenerSlowsDownReading() throws IOException, InterruptedException {
+        Result result = run(null);
+        assertListenerKeptUp(result);
+        assertTrue(result.read < FULL_RATE, "Read " + result.read + " DRIVE");
+    }
+
+    @Test
+    void dropOldestKeepsReadingAndDrops() throws IOException, InterruptedException {
+        Result result = run(AsyncUpdateListener.Backpressure.DROP_OLDEST);
+        assertTrue(result.read >= FULL_RATE, "Read " + result.read + " DRIVE");
+        assertListenerKeptUp(result);
+        assertTrue(result.async.getDropped() > 0);
+        assertTrue(result.dispatchP50 < LISTENER_NANOS / 10, "Dispatch took " + result.dispatchP50 + " ns");
+    }
+
+    @Test
+    void latestOnlyKeepsReadingAndDrops() throws IOException, InterruptedException {
+        Result result = run(AsyncUpdateListener.Backpressure.LATEST_ONLY);
+        assertTrue(result.read >= FULL_RATE, "Read " + result.read + " DRIVE");
+        assertListenerKeptUp(result);
+        assertTrue(result.async.getDropped() > 0);
+        assertTrue(result.dispatchP50 < LISTENER_NANOS / 10, "Dispatch took " + result.dispatchP50 + " ns");
+    }
+
+    @Test
+    void blockDeliversEverything() throws IOException, InterruptedException {
+        Result result = run(AsyncUpdateListener.Backpressure.BLOCK);
+        AsyncUpdateListener async = result.async;
+        try {
+            assertTrue(result.read < FULL_RATE, "Read " + result.read + " DRIVE");
+            assertTrue(async.getBlocked() > 0);
+
+            // The queue drains after the client stopped
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (async.getDelivered() < async.getOffered() && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(async.getOffered(), async.getDelivered());
+            assertEquals(0, async.getDropped());
+        } finally {
+            async.close();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.compdog.rover.control.rover_control.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void reportsValuesWithinPrecision() {
+        for (long value = 1; value < LatencyHistogram.HIGHEST_TRACKABLE; value = value * 3 + 1) {
+            LatencyHistogram histogram = new LatencyHistogram();
+            histogram.record(value);
+            histogram.record(value * 2);
+
+            long p50 = histogram.snapshot().getP50();
+            assertTrue(p50 >= value && p50 <= value + value / 16, "p50 " + p50 + " of " + value);
+        }
+    }
+
+    @Test
+    void clampsValuesAboveTheRange() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        long minute = TimeUnit.MINUTES.toNanos(1);
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(5));
+        histogram.record(minute * 10);
+        histogram.record(Long.MAX_VALUE);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(3, snapshot.getCount());
+        assertEquals(Long.MAX_VALUE, snapshot.getMax());
+        assertEquals(Long.MAX_VALUE, snapshot.getValueAtPercentile(100));
+        assertTrue(snapshot.getValueAtPercentile(60) >= LatencyHistogram.HIGHEST_TRACKABLE / 2);
+    }
+}
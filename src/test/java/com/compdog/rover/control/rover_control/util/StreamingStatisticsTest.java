@@ -0,0 +1,119 @@
+package com.compdog.rover.control.rover_control.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.function.DoubleSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingStatisticsTest {
+
+    private static final int[] WINDOWS = {1, 7, 64, 1000};
+
+    /* Statistics of the last window samples of the stream, computed the slow way */
+    private static void assertMatchesWindows(StreamingStatistics statistics, double[] stream, int length) {
+        for (int i = 0; i < WINDOWS.length; i++) {
+            int count = Math.min(length, WINDOWS[i]);
+            assertEquals(count, statistics.getCount(i));
+
+            double sum = 0, min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+            for (int j = length - count; j < length; j++) {
+                sum += stream[j];
+                min = Math.min(min, stream[j]);
+                max = Math.max(max, stream[j]);
+            }
+            double mean = sum / count;
+            double squares = 0;
+            for (int j = length - count; j < length; j++) {
+                squares += (stream[j] - mean) * (stream[j] - mean);
+            }
+            double variance = squares / count;
+
+            String at = "window " + WINDOWS[i] + " after " + length + " samples";
+            double scale = Math.max(1, Math.abs(mean));
+            assertEquals(mean, statistics.getMean(i), scale * 1e-12, at);
+            assertEquals(sum, statistics.getSum(i), scale * count * 1e-12, at);
+            assertEquals(variance, statistics.getVariance(i), Math.max(variance, 1) * 1e-6, at);
+            assertEquals(min, statistics.getMin(i), at);
+            assertEquals(max, statistics.getMax(i), at);
+            assertEquals(max - min, statistics.getRange(i), at);
+        }
+    }
+
+    private static void assertMatchesStream(DoubleSupplier source, int length) {
+        StreamingStatistics statistics = new StreamingStatistics(WINDOWS);
+        double[] stream = new double[length];
+        for (int i = 0; i < length; i++) {
+            stream[i] = source.getAsDouble();
+            statistics.push(stream[i]);
+            // Every sample while the windows fill and turn over, then now and then
+            if (i < 2100 || i % 97 == 0)
+                assertMatchesWindows(statistics, stream, i + 1);
+        }
+        assertEquals(length, statistics.getTotal());
+        assertEquals(stream[length - 1], statistics.getLast());
+    }
+
+    @Test
+    void motorValuesMatchNaiveWindows() {
+        Random random = new Random(16);
+        assertMatchesStream(() -> random.nextDouble() * 2 - 1, 20_000);
+    }
+
+    /* Intervals around 10 ms in nanoseconds, the variance must survive the large mean */
+    @Test
+    void nanosecondIntervalsKeepTheirVariance() {
+        Random random = new Random(17);
+        assertMatchesStream(() -> 10_000_000 + Math.round(random.nextGaussian() * 500), 20_000);
+    }
+
+    /* Runs of equal and monotonic samples exercise the min and max deques */
+    @Test
+    void monotonicRunsMatchNaiveWindows() {
+        Random random = new Random(18);
+        double[] value = {0};
+        assertMatchesStream(() -> {
+            int mode = random.nextInt(3);
+            value[0] += mode == 0 ? 0 : mode == 1 ? 1 : -1;
+            return value[0];
+        }, 20_000);
+    }
+
+    @Test
+    void emptyWindows() {
+        StreamingStatistics statistics = new StreamingStatistics(WINDOWS);
+        statistics.push(3);
+        statistics.reset();
+
+        assertEquals(0, statistics.getTotal());
+        assertEquals(0, statistics.getCount());
+        assertEquals(0, statistics.getMean());
+        assertEquals(0, statistics.getVariance());
+        assertEquals(0, statistics.getRange());
+        assertTrue(Double.isNaN(statistics.getMin()));
+        assertTrue(Double.isNaN(statistics.getMax()));
+        assertTrue(Double.isNaN(statistics.getLast()));
+        assertThrows(IndexOutOfBoundsException.class, () -> statistics.at(0));
+    }
+
+    @Test
+    void atIndexesTheLargestWindow() {
+        StreamingStatistics statistics = new StreamingStatistics(3, 5);
+        for (int i = 0; i < 12; i++) {
+            statistics.push(i);
+        }
+        for (int i = 0; i < 5; i++) {
+            assertEquals(7 + i, statistics.at(i));
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> statistics.at(5));
+        assertEquals(10, statistics.getMean(0));
+        assertEquals(9, statistics.getMean(1));
+    }
+
+    @Test
+    void rejectsInvalidWindows() {
+        assertThrows(IllegalArgumentException.class, StreamingStatistics::new);
+        assertThrows(IllegalArgumentException.class, () -> new StreamingStatistics(4, 0));
+    }
+}